@@ -0,0 +1,207 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import com.mx_wj.networkHelper.network.easy.EasyPacket;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 不启动游戏，把 {@link PacketCapture} 录制的流量重新交给注册时使用的解码器（以及可选的处理逻辑），用于在本地分析真实的负载。
+ * <p>
+ * 用法：{@code ./gradlew replay -Preplay="<录制目录或分段文件> [--speed <倍数>] [--inbound] [--handlers]"}
+ * <ul>
+ * <li>{@code --speed}: 按原始时间间隔的几倍速回放，默认 1；0 表示不等待，尽快回放。</li>
+ * <li>{@code --inbound}: 只回放接收到的数据包；默认发出的数据包也会被解码，相当于在接收方重放。</li>
+ * <li>{@code --handlers}: 解码后调用 {@link IPacket#execute}，上下文为 {@code null}，需要上下文或游戏世界的处理逻辑会失败并被计数。</li>
+ * </ul>
+ * 数据包类按录制中的类名加载，因此它们必须在 JMH 源码集的类路径上。结束时按数据包类型输出数量、字节数和解码耗时。
+ * <p>
+ * 发出的、逐个接收方编码的数据包（{@link com.mx_wj.networkHelper.network.easy.DeltaSync} 和
+ * {@link com.mx_wj.networkHelper.network.easy.Dictionary}）混合了多个接收方的快照和字典，无法用一个接收方的状态解码，会被跳过。
+ * 其他无法解码的记录（例如字典定义在录制开始之前就已经发出）会被计数并跳过，不会中断回放。
+ */
+public final class CaptureReplay {
+
+    private final double speed;
+    private final boolean inboundOnly;
+    private final boolean handlers;
+    private final Map<PacketCapture.Definition, RegisteredPacket<?>> types = new HashMap<>();
+    private final Map<RegisteredPacket<?>, long[]> handlerFailures = new HashMap<>();
+    private final Map<RegisteredPacket<?>, long[]> decodeFailures = new HashMap<>();
+
+    private long firstNanos = -1;
+    private long startNanos;
+    private long replayed;
+    private long skipped;
+    private long skippedPerRecipient;
+
+    private CaptureReplay(double speed, boolean inboundOnly, boolean handlers) {
+        this.speed = speed;
+        this.inboundOnly = inboundOnly;
+        this.handlers = handlers;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path capture = null;
+        double speed = 1;
+        boolean inboundOnly = false;
+        boolean handlers = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed" -> speed = Double.parseDouble(args[++i]);
+                case "--inbound" -> inboundOnly = true;
+                case "--handlers" -> handlers = true;
+                case "" -> {}
+                default -> capture = Path.of(args[i]);
+            }
+        }
+        if (capture == null) {
+            System.err.println("Usage: CaptureReplay <capture directory or segment> [--speed <factor>] [--inbound] [--handlers]");
+            System.exit(1);
+        }
+        CaptureReplay replay = new CaptureReplay(speed, inboundOnly, handlers);
+        for (Path segment : PacketCapture.segments(capture)) {
+            System.out.println("Replaying " + segment);
+            PacketCapture.read(segment, replay::replay);
+        }
+        replay.printSummary();
+    }
+
+    private void replay(PacketCapture.Packet record) {
+        if (inboundOnly && !record.inbound()) {
+            return;
+        }
+        RegisteredPacket<?> type;
+        if (types.containsKey(record.definition())) {
+            type = types.get(record.definition());
+        } else {
+            // 加载失败时也记下 null，避免对同一个类的每条记录都重试并输出原因。
+            type = register(record.definition());
+            types.put(record.definition(), type);
+        }
+        if (type == null) {
+            skipped++;
+            return;
+        }
+        if (!record.inbound() && type.perRecipient()) {
+            skippedPerRecipient++;
+            return;
+        }
+        waitUntil(record.nanos());
+        IPacket packet;
+        try {
+            packet = type.decode(new FriendlyByteBuf(Unpooled.wrappedBuffer(record.payload())));
+        } catch (Throwable t) {
+            long[] failures = decodeFailures.computeIfAbsent(type, t2 -> new long[1]);
+            if (failures[0]++ == 0) {
+                System.err.println("Could not decode " + type.packetClass().getName() + ", skipping such records: " + t);
+            }
+            return;
+        }
+        if (handlers) {
+            long start = System.nanoTime();
+            try {
+                packet.execute(null);
+            } catch (Throwable t) {
+                handlerFailures.computeIfAbsent(type, t2 -> new long[1])[0]++;
+            }
+            type.stats().recordHandler(0, System.nanoTime() - start);
+        }
+        type.release(packet);
+        replayed++;
+    }
+
+    /**
+     * 按回放速度等到录制中的时间点。
+     */
+    private void waitUntil(long nanos) {
+        if (firstNanos < 0) {
+            firstNanos = nanos;
+            startNanos = System.nanoTime();
+        }
+        if (speed <= 0) {
+            return;
+        }
+        long target = startNanos + (long) ((nanos - firstNanos) / speed);
+        long remaining;
+        while ((remaining = target - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * 按录制中的数据包类型定义创建编解码器。
+     *
+     * @return 注册信息；如果类不存在或不是数据包，则返回 {@code null}。
+     */
+    private static RegisteredPacket<?> register(PacketCapture.Definition definition) {
+        Class<? extends IPacket> packetClass = loadPacketClass(definition.className());
+        return packetClass == null ? null : register(definition.modID(), packetClass, definition.packetId());
+    }
+
+    /**
+     * 按类名加载一个数据包类。
+     *
+     * @return 数据包类；如果类不存在或不是数据包，则输出原因并返回 {@code null}。
+     */
+    @SuppressWarnings("unchecked")
+    static Class<? extends IPacket> loadPacketClass(String className) {
+        try {
+            Class<?> type = Class.forName(className);
+            if (!IPacket.class.isAssignableFrom(type) || !type.isAnnotationPresent(PacketInfo.class)) {
+                System.err.println("Skipping " + className + ": not a registered packet class");
+                return null;
+            }
+            return (Class<? extends IPacket>) type;
+        } catch (ClassNotFoundException e) {
+            System.err.println("Skipping " + className + ": class not found on the classpath");
+            return null;
+        }
+    }
+
+    /**
+     * 创建与 {@link PacketManager} 注册时相同的编解码器。
+     */
+    static <T extends IPacket> RegisteredPacket<T> register(String modID, Class<T> packetClass, int id) {
+        if (EasyPacket.class.isAssignableFrom(packetClass)) {
+            EasyPacket.prepareCodec(packetClass.asSubclass(EasyPacket.class));
+        }
+        return new RegisteredPacket<>(modID, packetClass, id, packetClass.getAnnotation(PacketInfo.class), PacketManager.createDecoder(packetClass));
+    }
+
+    private void printSummary() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf(Locale.ROOT, "Replayed %d packets in %.2f s, skipped %d of unknown classes and %d outbound per-recipient packets%n",
+                replayed, seconds, skipped, skippedPerRecipient);
+        List<RegisteredPacket<?>> sorted = new ArrayList<>(types.values());
+        sorted.removeIf(type -> type == null);
+        sorted.sort(Comparator.comparingLong((RegisteredPacket<?> type) -> type.stats().getDecodeNanos()).reversed());
+        for (RegisteredPacket<?> type : sorted) {
+            PacketStats stats = type.stats();
+            long count = stats.getReceivedPackets();
+            System.out.printf(Locale.ROOT, "  %-40s %8d packets %12d bytes, decode avg %8.0f ns p99 %8d ns",
+                    type.packetClass().getSimpleName(), count, stats.getReceivedBytes(),
+                    count == 0 ? 0.0 : (double) stats.getDecodeNanos() / count, stats.getDecodeP99Nanos());
+            long[] undecodable = decodeFailures.get(type);
+            if (undecodable != null) {
+                System.out.printf(Locale.ROOT, ", %d undecodable", undecodable[0]);
+            }
+            if (handlers) {
+                long[] failures = handlerFailures.get(type);
+                System.out.printf(Locale.ROOT, ", handler p99 %8d ns, %d failed", stats.getHandlerP99Nanos(), failures == null ? 0 : failures[0]);
+            }
+            System.out.println();
+        }
+    }
+}
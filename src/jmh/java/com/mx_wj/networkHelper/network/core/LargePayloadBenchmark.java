@@ -0,0 +1,190 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketCompression;
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import com.mx_wj.networkHelper.network.core.info.PacketExecution;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import com.mx_wj.networkHelper.network.core.info.PacketPriority;
+import com.mx_wj.networkHelper.network.core.info.RateLimit;
+import com.mx_wj.networkHelper.network.easy.EasyPacket;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.annotation.Annotation;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大负载（约 256 KiB 的 {@code byte[]} 或 {@link CompoundTag}）在各种压缩方式下的编解码吞吐量。
+ * 负载是可压缩的，与区块、结构等真实数据相近。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargePayloadBenchmark {
+
+    private static final int PAYLOAD_BYTES = 256 * 1024;
+
+    @Param({"bytes", "nbt"})
+    public String payload;
+
+    @Param({"NONE", "SNAPPY", "DEFLATE"})
+    public PacketCompression compression;
+
+    @Param({"heap", "direct"})
+    public String buffer;
+
+    private IPacket instance;
+    private RegisteredPacket<?> registered;
+    private FriendlyByteBuf out;
+    private FriendlyByteBuf encoded;
+
+    public static class BytesPacket extends EasyPacket {
+        private byte[] data;
+
+        public BytesPacket() {
+        }
+
+        public BytesPacket(FriendlyByteBuf buf) {
+            super(buf);
+        }
+
+        @Override
+        public void process(NetworkEvent.Context context) {
+        }
+    }
+
+    public static class NbtPacket extends EasyPacket {
+        private CompoundTag tag;
+
+        public NbtPacket() {
+        }
+
+        public NbtPacket(FriendlyByteBuf buf) {
+            super(buf);
+        }
+
+        @Override
+        public void process(NetworkEvent.Context context) {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        PacketInfo info = info(compression);
+        if (payload.equals("bytes")) {
+            BytesPacket packet = new BytesPacket();
+            packet.data = new byte[PAYLOAD_BYTES];
+            for (int i = 0; i < packet.data.length; i++) {
+                packet.data[i] = (byte) random.nextInt(16);
+            }
+            instance = packet;
+            registered = new RegisteredPacket<>("benchmark", BytesPacket.class, 0, info, BytesPacket::new);
+        } else {
+            NbtPacket packet = new NbtPacket();
+            packet.tag = new CompoundTag();
+            ListTag entries = new ListTag();
+            // 每个条目编码后大约 64 字节。
+            for (int i = 0; i < PAYLOAD_BYTES / 64; i++) {
+                CompoundTag entry = new CompoundTag();
+                entry.putInt("x", random.nextInt(16));
+                entry.putInt("y", random.nextInt(256));
+                entry.putInt("z", random.nextInt(16));
+                entry.putString("id", "minecraft:stone_" + random.nextInt(8));
+                entries.add(entry);
+            }
+            packet.tag.put("entries", entries);
+            instance = packet;
+            registered = new RegisteredPacket<>("benchmark", NbtPacket.class, 0, info, NbtPacket::new);
+        }
+        out = allocate();
+        encoded = allocate();
+        registered.encode(instance, encoded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        encoded.release();
+    }
+
+    private FriendlyByteBuf allocate() {
+        return new FriendlyByteBuf(buffer.equals("heap") ? Unpooled.buffer(PAYLOAD_BYTES * 2) : Unpooled.directBuffer(PAYLOAD_BYTES * 2));
+    }
+
+    @Benchmark
+    public FriendlyByteBuf encode() {
+        out.clear();
+        registered.encode(instance, out);
+        return out;
+    }
+
+    @Benchmark
+    public IPacket decode() {
+        encoded.readerIndex(0);
+        return registered.decode(encoded);
+    }
+
+    /**
+     * 只用于取得 {@link PacketInfo} 中其余属性的默认值。
+     */
+    @PacketInfo(direction = PacketDirection.SERVER_TO_CLIENT)
+    private static final class Defaults {
+    }
+
+    /**
+     * 压缩方式是注解属性，因此为每种压缩方式构造一个注解实例，而不是为每种组合各写一个数据包类。
+     */
+    private static PacketInfo info(PacketCompression compression) {
+        return new PacketInfo() {
+            @Override
+            public PacketDirection direction() {
+                return PacketDirection.SERVER_TO_CLIENT;
+            }
+
+            @Override
+            public PacketExecution execution() {
+                return PacketExecution.MAIN_THREAD;
+            }
+
+            @Override
+            public PacketCompression compression() {
+                return compression;
+            }
+
+            @Override
+            public int compressionThreshold() {
+                return 256;
+            }
+
+            @Override
+            public RateLimit rateLimit() {
+                return Defaults.class.getAnnotation(PacketInfo.class).rateLimit();
+            }
+
+            @Override
+            public PacketPriority priority() {
+                return Defaults.class.getAnnotation(PacketInfo.class).priority();
+            }
+
+            @Override
+            public boolean coalesce() {
+                return false;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return PacketInfo.class;
+            }
+        };
+    }
+}
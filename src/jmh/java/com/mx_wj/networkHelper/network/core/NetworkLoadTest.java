@@ -0,0 +1,417 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.ExamplePacket;
+import com.mx_wj.networkHelper.network.ExamplePacket2;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import com.mx_wj.networkHelper.network.core.info.PacketExecution;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.PacketFlow;
+import net.minecraft.resources.ResourceLocation;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 不启动游戏、不需要网络的多连接负载测试，用于观察数百个玩家同时收发时数据包的分发行为。
+ * <p>
+ * 用法：{@code ./gradlew loadtest -Ploadtest="[--connections <数量>] [--rate <每个连接每秒的数据包数>] [--seconds <秒>] [--warmup <秒>]
+ * [--threads <线程数>] [--capture <录制>] [--packets <类名,...>] [--handlers | --work <微秒>] [--budget <毫秒>]"}
+ * <p>
+ * 每个模拟的连接是一个 Netty {@link EmbeddedChannel}。发送线程以目标速率调用 {@link ModChannel#encodeFrame}，
+ * 帧经过长度前缀编码器写出后，原样交给同一个通道的帧解码器，再像 {@link ModChannel#receive} 一样读出ID、检查方向并解码，
+ * 最后交给游戏中使用的 {@link PacketManager#dispatch}，按数据包的 {@link PacketExecution} 分发处理逻辑：
+ * <ul>
+ * <li>{@code NETWORK_THREAD}: 在发送线程（即模拟的网络线程）上直接执行；</li>
+ * <li>{@code WORKER_POOL}: 交给真实的 {@link PacketWorkerPool}，已满时退回主线程；</li>
+ * <li>{@code MAIN_THREAD}: 服务端收到的数据包进入真实的 {@link PacketHandlerQueue}，按每个连接排队，
+ * 每 50 毫秒（一个 tick）在 {@code --budget} 毫秒（默认 10，与配置的默认值相同）的预算内执行；
+ * 客户端收到的数据包进入一个模拟的客户端主线程队列，每个 tick 执行其中的所有任务。</li>
+ * </ul>
+ * 默认发送 {@code ExamplePacket} 和 {@code ExamplePacket2}；指定 {@code --capture} 时，使用录制中每种数据包的第一个实例
+ * （见 {@link PacketCapture}），可以再用 {@code --packets} 按类名筛选。
+ * <p>
+ * 数据包自己的处理逻辑需要游戏世界，因此默认只执行一个空的处理逻辑，{@code --work} 可以让它忙等指定的微秒数来模拟处理耗时；
+ * {@code --handlers} 会以 {@code null} 上下文调用 {@link IPacket#execute}，失败会被计数。
+ * <p>
+ * 预热结束后开始测量，最后按数据包类型输出吞吐量、处理逻辑的执行耗时以及从计划发送时间到处理完成的端到端延迟（P50/P99），
+ * 以及每个数据包的平均分配量。百分位数取自测量期间记录的所有样本，而不是 {@link LatencyHistogram} 的桶边界。端到端延迟从计划发送时间开始计算，发送线程落后时延迟也会如实增加。
+ * 分配量是测量期间所有线程分配的字节数之和除以处理的数据包数，包含 {@link EmbeddedChannel} 本身的开销，是一个上界。
+ */
+public final class NetworkLoadTest {
+
+    private static final long TICK_NANOS = 50_000_000L;
+
+    private final ModChannel channel = new ModChannel("loadtest", new ResourceLocation(NetworkHelperMod.MODID, "loadtest"), null);
+    private final List<Sample> samples = new ArrayList<>();
+    private final MainThreadQueue mainThread = new MainThreadQueue();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final Consumer<IPacket> handler;
+    private final long budgetNanos;
+    private volatile Result[] results = new Result[0];
+
+    /**
+     * 一种要发送的数据包，以及它的一个实例。所有发送都重新编码同一个实例。
+     */
+    private record Sample(RegisteredPacket<?> type, IPacket packet, boolean toClient) {}
+
+    /**
+     * 一种数据包在测量期间的结果。
+     */
+    private static final class Result {
+        private final LongAdder packets = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final Samples handler;
+        private final Samples endToEnd;
+
+        private Result(int expected) {
+            handler = new Samples(expected);
+            endToEnd = new Samples(expected);
+        }
+    }
+
+    /**
+     * 一种耗时在测量期间的所有样本，百分位数按最近秩从排序后的样本中取出。
+     * 数组按预计的样本数预先分配，测量期间很少扩容，不影响分配量的统计。
+     */
+    private static final class Samples {
+        private long[] values;
+        private int size;
+
+        private Samples(int expected) {
+            values = new long[Math.max(16, expected)];
+        }
+
+        private synchronized void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        /**
+         * @return 各个分位数上的样本（纳秒）；没有样本时为 0。
+         */
+        private synchronized long[] percentiles(double... quantiles) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            long[] result = new long[quantiles.length];
+            for (int i = 0; i < quantiles.length; i++) {
+                result[i] = size == 0 ? 0 : sorted[Math.max(0, (int) Math.ceil(quantiles[i] * size) - 1)];
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 模拟的客户端主线程任务队列。
+     */
+    private static final class MainThreadQueue extends ConcurrentLinkedQueue<Runnable> {
+        private void drain() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private NetworkLoadTest(Consumer<IPacket> handler, long budgetNanos) {
+        this.handler = handler;
+        this.budgetNanos = budgetNanos;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = 200;
+        double rate = 20;
+        int seconds = 10;
+        int warmup = 3;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path capture = null;
+        Set<String> packets = null;
+        boolean handlers = false;
+        long workNanos = 0;
+        long budgetNanos = 10_000_000L;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--connections" -> connections = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--capture" -> capture = Path.of(args[++i]);
+                case "--packets" -> packets = Set.of(args[++i].split(","));
+                case "--handlers" -> handlers = true;
+                case "--work" -> workNanos = (long) (Double.parseDouble(args[++i]) * 1000);
+                case "--budget" -> budgetNanos = (long) (Double.parseDouble(args[++i]) * 1_000_000);
+                case "" -> {}
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+                }
+            }
+        }
+        threads = Math.max(1, Math.min(threads, connections));
+
+        long work = workNanos;
+        Consumer<IPacket> handler = handlers ? packet -> packet.execute(null) : packet -> spin(work);
+        NetworkLoadTest test = new NetworkLoadTest(handler, budgetNanos);
+        if (capture == null) {
+            test.add(ExamplePacket.class, packets, type -> new ExamplePacket(42, "Hello World!"));
+            test.add(ExamplePacket2.class, packets, type -> new ExamplePacket2(42, "Hello World!"));
+        } else {
+            test.addFromCapture(capture, packets);
+        }
+        if (test.samples.isEmpty()) {
+            System.err.println("No packets to send");
+            System.exit(1);
+        }
+        test.run(connections, rate, seconds, warmup, threads);
+    }
+
+    private void add(Class<? extends IPacket> packetClass, Set<String> filter, Function<RegisteredPacket<?>, IPacket> instance) {
+        if (filter != null && !filter.contains(packetClass.getSimpleName()) && !filter.contains(packetClass.getName())) {
+            return;
+        }
+        RegisteredPacket<?> type = CaptureReplay.register(channel.modID(), packetClass, channel.idLimit());
+        channel.add(type);
+        samples.add(new Sample(type, instance.apply(type), type.info().direction() == PacketDirection.SERVER_TO_CLIENT));
+    }
+
+    /**
+     * 从录制中取出每种数据包的第一个实例。
+     */
+    private void addFromCapture(Path capture, Set<String> filter) throws IOException {
+        Set<String> seen = new HashSet<>();
+        for (Path segment : PacketCapture.segments(capture)) {
+            PacketCapture.read(segment, record -> {
+                if (!seen.add(record.definition().className())) {
+                    return;
+                }
+                Class<? extends IPacket> packetClass = CaptureReplay.loadPacketClass(record.definition().className());
+                if (packetClass != null) {
+                    add(packetClass, filter, type -> type.decode(new FriendlyByteBuf(Unpooled.wrappedBuffer(record.payload()))));
+                }
+            });
+        }
+    }
+
+    private void run(int connections, double rate, int seconds, int warmup, int threads) throws InterruptedException {
+        System.out.printf(Locale.ROOT, "Load test: %d connections x %.1f packets/s for %d s (%d s warmup), %d sender threads, %d packet types%n",
+                connections, rate, seconds, warmup, threads, samples.size());
+
+        List<List<SimulatedConnection>> slices = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            slices.add(new ArrayList<>());
+        }
+        for (int i = 0; i < connections; i++) {
+            slices.get(i % threads).add(new SimulatedConnection());
+        }
+
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LoadTest Main");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            PacketHandlerQueue.drain(budgetNanos);
+            mainThread.drain();
+        }, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            List<SimulatedConnection> slice = slices.get(i);
+            Thread sender = new Thread(() -> drive(slice, rate * slice.size(), start, end), "LoadTest Sender #" + (i + 1));
+            sender.start();
+            senders.add(sender);
+        }
+
+        long remaining;
+        while ((remaining = measureStart - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+        Result[] measured = new Result[samples.size()];
+        int expected = (int) Math.min(Integer.MAX_VALUE - 8, (long) (connections * rate * seconds * 1.1 / samples.size()));
+        for (int i = 0; i < measured.length; i++) {
+            measured[i] = new Result(expected);
+        }
+        long allocatedBefore = allocatedBytes();
+        results = measured;
+
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        long measureEnd = System.nanoTime();
+        // 等待已经发出的数据包处理完。
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TICK_NANOS);
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        ticker.shutdownNow();
+        for (List<SimulatedConnection> slice : slices) {
+            for (SimulatedConnection connection : slice) {
+                connection.wire.finishAndReleaseAll();
+            }
+        }
+        printSummary(measured, connections * rate, (measureEnd - measureStart) / 1e9, allocated);
+    }
+
+    /**
+     * 在一个发送线程上以固定间隔轮流向每个连接发送数据包。
+     *
+     * @param rate 这个线程的总发送速率。
+     */
+    private void drive(List<SimulatedConnection> connections, double rate, long start, long end) {
+        long interval = (long) (1e9 / rate);
+        long next = start;
+        for (long i = 0; next < end; i++, next += interval) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            SimulatedConnection connection = connections.get((int) (i % connections.size()));
+            Sample sample = samples.get((int) ((i / connections.size()) % samples.size()));
+            connection.send(sample, next);
+        }
+    }
+
+    /**
+     * 一个模拟的连接。帧在调用线程上同步地穿过整个管道，因此每个连接只能由一个发送线程使用。
+     * 管道的末端是一个真实的 {@link net.minecraft.network.Connection}，服务端收到的数据包以它为键进入 {@link PacketHandlerQueue}，
+     * 测试结束关闭管道后它也随之断开。
+     */
+    private final class SimulatedConnection extends ChannelInboundHandlerAdapter {
+        private final net.minecraft.network.Connection endpoint = new net.minecraft.network.Connection(PacketFlow.SERVERBOUND);
+        private final EmbeddedChannel wire = new EmbeddedChannel(new LengthFieldBasedFrameDecoder(1 << 21, 0, 3, 0, 3), new LengthFieldPrepender(3), this, endpoint);
+        private boolean toClient;
+        private long scheduled;
+
+        private void send(Sample sample, long scheduled) {
+            inFlight.incrementAndGet();
+            this.toClient = sample.toClient();
+            this.scheduled = scheduled;
+            Result[] current = results;
+            FriendlyByteBuf frame = channel.encodeFrame(sample.packet());
+            wire.writeOutbound(frame);
+            ByteBuf out;
+            while ((out = wire.readOutbound()) != null) {
+                if (current.length > 0) {
+                    current[sample.type().id() - ModChannel.FIRST_PACKET_ID].bytes.add(out.readableBytes());
+                }
+                wire.writeInbound(out);
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            try {
+                FriendlyByteBuf payload = new FriendlyByteBuf(buf);
+                RegisteredPacket<?> type = channel.accept(payload.readVarInt(), toClient);
+                if (type == null) {
+                    inFlight.decrementAndGet();
+                    return;
+                }
+                IPacket packet = type.decode(payload);
+                long sentAt = scheduled;
+                PacketManager.dispatch(type, packet, toClient ? null : endpoint, mainThread::add, () -> handle(type, packet, sentAt));
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    /**
+     * 由 {@link PacketManager#dispatch} 在选定的线程上调用的处理逻辑，数据包之后由它归还。处理逻辑的异常只计数，不再向外抛出。
+     */
+    private void handle(RegisteredPacket<?> type, IPacket packet, long scheduled) {
+        Result[] current = results;
+        Result result = current.length > 0 ? current[type.id() - ModChannel.FIRST_PACKET_ID] : null;
+        long start = System.nanoTime();
+        try {
+            handler.accept(packet);
+        } catch (Throwable t) {
+            if (result != null) {
+                result.failures.increment();
+            }
+        } finally {
+            long finished = System.nanoTime();
+            if (result != null) {
+                result.packets.increment();
+                result.handler.record(finished - start);
+                result.endToEnd.record(finished - scheduled);
+            }
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void spin(long nanos) {
+        if (nanos > 0) {
+            long until = System.nanoTime() + nanos;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * @return 所有存活线程到目前为止分配的字节数之和。
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    private void printSummary(Result[] measured, double target, double seconds, long allocated) {
+        long packets = 0, bytes = 0, failures = 0;
+        for (Result result : measured) {
+            packets += result.packets.sum();
+            bytes += result.bytes.sum();
+            failures += result.failures.sum();
+        }
+        System.out.printf(Locale.ROOT, "Throughput: %.1f packets/s (target %.1f), %.1f KiB/s framed, %d handler failures, %d still in flight%n",
+                packets / seconds, target, bytes / seconds / 1024, failures, inFlight.get());
+        System.out.printf(Locale.ROOT, "Allocation: %.0f bytes per packet%n", packets == 0 ? 0.0 : (double) allocated / packets);
+        for (int i = 0; i < measured.length; i++) {
+            Result result = measured[i];
+            long[] handlerNanos = result.handler.percentiles(0.5, 0.99);
+            long[] endToEndNanos = result.endToEnd.percentiles(0.5, 0.99);
+            System.out.printf(Locale.ROOT, "  %-40s %-14s %10.1f packets/s, handler p50 %8.1f µs p99 %8.1f µs, end-to-end p50 %8.1f µs p99 %8.1f µs%n",
+                    samples.get(i).type().packetClass().getSimpleName(), samples.get(i).type().info().execution(),
+                    result.packets.sum() / seconds,
+                    handlerNanos[0] / 1e3, handlerNanos[1] / 1e3, endToEndNanos[0] / 1e3, endToEndNanos[1] / 1e3);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.ExamplePacket;
+import com.mx_wj.networkHelper.network.ExamplePacket2;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 完整的数据包编解码路径：{@link RegisteredPacket} 的编码与解码包装（包括统计），
+ * 以及解码时创建数据包实例的方式。
+ * <ul>
+ * <li>{@code handwritten}: 手写 {@code encode} 和解码构造函数的 {@link ExamplePacket}；</li>
+ * <li>{@code easy}: 字段相同的 EasyPacket {@link ExamplePacket2}。</li>
+ * </ul>
+ * 解码器可以是 {@link ASMUtil#createDecoder} 生成的，也可以是直接调用构造函数的 lambda，用于衡量生成解码器的开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PacketCodecBenchmark {
+
+    @Param({"handwritten", "easy"})
+    public String packet;
+
+    @Param({"asm", "lambda"})
+    public String decoder;
+
+    @Param({"heap", "direct"})
+    public String buffer;
+
+    private IPacket instance;
+    private RegisteredPacket<?> registered;
+    private FriendlyByteBuf out;
+    private FriendlyByteBuf encoded;
+
+    @Setup
+    public void setup() {
+        boolean asm = decoder.equals("asm");
+        if (packet.equals("handwritten")) {
+            instance = new ExamplePacket(42, "Hello World!");
+            registered = register(ExamplePacket.class, asm ? ASMUtil.createDecoder(ExamplePacket.class) : ExamplePacket::new);
+        } else {
+            instance = new ExamplePacket2(42, "Hello World!");
+            registered = register(ExamplePacket2.class, asm ? ASMUtil.createDecoder(ExamplePacket2.class) : ExamplePacket2::new);
+        }
+        out = allocate();
+        encoded = allocate();
+        registered.encode(instance, encoded);
+    }
+
+    private static <T extends IPacket> RegisteredPacket<T> register(Class<T> type, Function<FriendlyByteBuf, T> decoder) {
+        return new RegisteredPacket<>("benchmark", type, 0, type.getAnnotation(PacketInfo.class), decoder);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        encoded.release();
+    }
+
+    private FriendlyByteBuf allocate() {
+        return new FriendlyByteBuf(buffer.equals("heap") ? Unpooled.buffer(256) : Unpooled.directBuffer(256));
+    }
+
+    @Benchmark
+    public FriendlyByteBuf encode() {
+        out.clear();
+        registered.encode(instance, out);
+        return out;
+    }
+
+    @Benchmark
+    public IPacket decode() {
+        encoded.readerIndex(0);
+        return registered.decode(encoded);
+    }
+}
@@ -0,0 +1,137 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import com.mx_wj.networkHelper.network.easy.AllTypesPacket;
+import com.mx_wj.networkHelper.network.easy.EasyPacket;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 接收一个数据包的完整周期：通过 {@link RegisteredPacket} 解码，执行完毕后归还。
+ * <ul>
+ * <li>{@code new}: {@link ASMUtil#createDecoder} 生成的解码器，每次创建新实例；</li>
+ * <li>{@code pooled}: {@link PacketPool}，复用回收的实例。</li>
+ * </ul>
+ * 需要关注的是 {@code -prof gc} 输出的 {@code gc.alloc.rate.norm}。{@code input} 只有标量字段，
+ * 启用实例池后应该完全不分配；{@code allTypes} 中的字符串、集合等引用类型字段每次仍会创建新值。
+ * <p>
+ * 每次调用解码一批数据包，再按 {@code releaseOn} 归还：
+ * <ul>
+ * <li>{@code same}: 在解码的线程上归还，总是命中线程本地缓存；</li>
+ * <li>{@code worker}: 在 {@link PacketWorkerPool} 的一个任务中归还，与 {@code WORKER_POOL} 数据包的实际流向相同，
+ * 实例经由共享池回到解码线程（Java 21 起是虚拟线程）。</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PooledDecodeBenchmark {
+
+    @Param({"input", "allTypes"})
+    public String packet;
+
+    @Param({"new", "pooled"})
+    public String mode;
+
+    @Param({"same", "worker"})
+    public String releaseOn;
+
+    private static final int BATCH = 32;
+
+    private RegisteredPacket<?> registered;
+    private FriendlyByteBuf encoded;
+    private final IPacket[] decoded = new IPacket[BATCH];
+
+    /**
+     * 一个典型的每 tick 发送的输入数据包。
+     */
+    @PacketInfo(direction = PacketDirection.CLIENT_TO_SERVER)
+    public static class InputPacket extends EasyPacket {
+        private float forward;
+        private float strafe;
+        private float yaw;
+        private float pitch;
+        private int flags;
+
+        public InputPacket() {
+        }
+
+        public InputPacket(FriendlyByteBuf buf) {
+            super(buf);
+        }
+
+        @Override
+        public void process(NetworkEvent.Context context) {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        IPacket instance;
+        if (packet.equals("input")) {
+            InputPacket input = new InputPacket();
+            input.forward = 1;
+            input.strafe = -0.5f;
+            input.yaw = 123.4f;
+            input.pitch = -12.5f;
+            input.flags = 0b101;
+            instance = input;
+            registered = register(InputPacket.class);
+        } else {
+            instance = AllTypesPacket.sample();
+            registered = register(AllTypesPacket.class);
+        }
+        encoded = new FriendlyByteBuf(Unpooled.buffer(256));
+        registered.encode(instance, encoded);
+    }
+
+    private <T extends IPacket> RegisteredPacket<T> register(Class<T> type) {
+        Function<FriendlyByteBuf, T> decoder = mode.equals("pooled") ? new PacketPool<>(type, 64) : ASMUtil.createDecoder(type);
+        return new RegisteredPacket<>("benchmark", type, 0, type.getAnnotation(PacketInfo.class), decoder);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoded.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decodeAndRelease() throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            encoded.readerIndex(0);
+            decoded[i] = registered.decode(encoded);
+        }
+        if (releaseOn.equals("same")) {
+            releaseAll();
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        Runnable release = () -> {
+            releaseAll();
+            done.countDown();
+        };
+        if (!PacketWorkerPool.tryExecute(release)) {
+            release.run();
+        }
+        done.await();
+    }
+
+    private void releaseAll() {
+        for (int i = 0; i < BATCH; i++) {
+            registered.release(decoded[i]);
+            decoded[i] = null;
+        }
+    }
+}
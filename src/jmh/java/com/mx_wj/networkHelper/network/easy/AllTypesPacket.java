@@ -0,0 +1,122 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 基准测试用的数据包，覆盖 EasyPacket 支持的所有字段类型。
+ * <p>
+ * {@code ItemStack} 除外：它的类初始化需要原版注册表，而基准测试不启动游戏。
+ */
+@PacketInfo(direction = PacketDirection.SERVER_TO_CLIENT)
+public class AllTypesPacket extends EasyPacket {
+
+    public enum Mode { IDLE, RUNNING, BLOCKED }
+
+    public record Slot(@VarInt int index, @Quantized(bits = 8, min = 0, max = 1) float fill) {}
+
+    @EasyValue
+    public static class Owner {
+        private UUID id;
+        @Nullable
+        private String name;
+
+        private Owner() {}
+
+        Owner(UUID id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private int intValue;
+    private long longValue;
+    private float floatValue;
+    private double doubleValue;
+    private boolean booleanValue;
+    @VarInt
+    private int varInt;
+    @ZigZag
+    private long zigZag;
+    @Unsigned(bits = 16)
+    private int unsigned;
+    @Quantized(bits = 16, min = -64, max = 64)
+    private double quantized;
+    private Integer boxedInt;
+    private String string;
+    @Nullable
+    private String missing;
+    private byte[] bytes;
+    private int[] ints;
+    private long[] longs;
+    private float[] floats;
+    private short[] shorts;
+    private CompoundTag tag;
+    private BlockPos pos;
+    private ResourceLocation id;
+    private Component component;
+    private UUID uuid;
+    private List<String> names;
+    private Map<String, Integer> counts;
+    private Optional<BlockPos> target;
+    private Mode mode;
+    private Slot[] slots;
+    private Owner owner;
+
+    public AllTypesPacket() {
+    }
+
+    public AllTypesPacket(FriendlyByteBuf buf) {
+        super(buf);
+    }
+
+    public static AllTypesPacket sample() {
+        AllTypesPacket packet = new AllTypesPacket();
+        packet.intValue = 123456;
+        packet.longValue = 9_876_543_210L;
+        packet.floatValue = 1.5f;
+        packet.doubleValue = Math.PI;
+        packet.booleanValue = true;
+        packet.varInt = 300;
+        packet.zigZag = -42;
+        packet.unsigned = 60000;
+        packet.quantized = 12.25;
+        packet.boxedInt = 7;
+        packet.string = "Hello World!";
+        packet.bytes = new byte[64];
+        packet.ints = new int[]{1, 2, 3, 4, 5, 6, 7, 8};
+        packet.longs = new long[]{1L, 2L, 3L, 4L};
+        packet.floats = new float[]{0.25f, 0.5f, 0.75f, 1f};
+        packet.shorts = new short[]{1, 2, 3, 4};
+        packet.tag = new CompoundTag();
+        packet.tag.putString("owner", "benchmark");
+        packet.tag.putInt("energy", 1000);
+        packet.pos = new BlockPos(100, 64, -200);
+        packet.id = new ResourceLocation("networkhelper", "benchmark");
+        packet.component = Component.literal("Benchmark");
+        packet.uuid = new UUID(1L, 2L);
+        packet.names = List.of("alpha", "beta", "gamma");
+        packet.counts = new LinkedHashMap<>(Map.of("alpha", 1, "beta", 2));
+        packet.target = Optional.of(new BlockPos(1, 2, 3));
+        packet.mode = Mode.RUNNING;
+        packet.slots = new Slot[]{new Slot(0, 0.5f), new Slot(1, 1f)};
+        packet.owner = new Owner(new UUID(3L, 4L), "Steve");
+        return packet;
+    }
+
+    @Override
+    public void process(NetworkEvent.Context context) {
+    }
+}
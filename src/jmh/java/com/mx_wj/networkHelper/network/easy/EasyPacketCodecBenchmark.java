@@ -0,0 +1,77 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import com.mx_wj.networkHelper.network.ExamplePacket2;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较 ASM 生成的 EasyPacket 编解码器和基于 VarHandle 的反射编解码器。
+ * <p>
+ * 解码时复用同一个数据包实例，只测量字段的读取；包括创建实例在内的完整解码路径见
+ * {@code com.mx_wj.networkHelper.network.core.PacketCodecBenchmark}。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EasyPacketCodecBenchmark {
+
+    @Param({"generated", "reflective"})
+    public String codec;
+
+    @Param({"heap", "direct"})
+    public String buffer;
+
+    @Param({"example", "allTypes"})
+    public String packet;
+
+    private EasyPacket instance;
+    private EasyPacketCodec impl;
+    private FriendlyByteBuf out;
+    private FriendlyByteBuf encoded;
+
+    @Setup
+    public void setup() {
+        instance = packet.equals("example") ? new ExamplePacket2(42, "Hello World!") : AllTypesPacket.sample();
+        if (codec.equals("generated")) {
+            impl = EasyPacket.getCodec(instance.getClass());
+            if (!impl.getClass().isHidden()) {
+                throw new IllegalStateException("Codec generation failed for " + instance.getClass().getName());
+            }
+        } else {
+            impl = EasyPacket.createReflectiveCodec(instance.getClass());
+        }
+        out = allocate();
+        encoded = allocate();
+        impl.encode(instance, encoded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        encoded.release();
+    }
+
+    private FriendlyByteBuf allocate() {
+        return new FriendlyByteBuf(buffer.equals("heap") ? Unpooled.buffer(1024) : Unpooled.directBuffer(1024));
+    }
+
+    @Benchmark
+    public FriendlyByteBuf encode() {
+        out.clear();
+        impl.encode(instance, out);
+        return out;
+    }
+
+    @Benchmark
+    public EasyPacket decode() {
+        encoded.readerIndex(0);
+        impl.decode(instance, encoded);
+        return instance;
+    }
+}
@@ -0,0 +1,156 @@
+package com.mx_wj.networkHelper;
+
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mx_wj.networkHelper.network.core.PacketCapture;
+import com.mx_wj.networkHelper.network.core.PacketHandlerQueue;
+import com.mx_wj.networkHelper.network.core.PacketMetrics;
+import com.mx_wj.networkHelper.network.core.PacketStats;
+import com.mx_wj.networkHelper.network.core.PacketStreamer;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.SharedSuggestionProvider;
+import net.minecraft.network.chat.Component;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@code /networkhelper} 命令，用于在游戏内查看网络统计。
+ * <p>
+ * {@code /networkhelper stats [modid]} 按模组列出每个数据包类型最近 10 秒的平均收发速率，
+ * 以及处理逻辑的排队等待时间和执行时间的 P99。
+ * <p>
+ * {@code /networkhelper capture start|stop} 开始或停止录制网络流量（见 {@link PacketCapture}），录制保存在游戏目录的
+ * {@code networkhelper/captures} 下。
+ * <p>
+ * 所有子命令都需要 2 级权限。
+ */
+public final class NetworkHelperCommand {
+
+    /**
+     * 速率取最近多少秒的平均值。
+     */
+    private static final int RATE_SECONDS = 10;
+
+    /**
+     * 一个数据包类型在某一时刻的速率。速率由采样线程在后台不断更新，因此先读出一次，汇总、排序和输出都使用同一份数值。
+     */
+    private record Rates(PacketStats packet, double sent, double sentBytes, double received, double receivedBytes) {
+        private static Rates of(PacketStats packet) {
+            return new Rates(packet,
+                    packet.rate(PacketStats.Rate.SENT, RATE_SECONDS), packet.rate(PacketStats.Rate.ENCODED_BYTES, RATE_SECONDS),
+                    packet.rate(PacketStats.Rate.RECEIVED, RATE_SECONDS), packet.rate(PacketStats.Rate.RECEIVED_BYTES, RATE_SECONDS));
+        }
+
+        private double totalBytes() {
+            return sentBytes + receivedBytes;
+        }
+    }
+
+    private NetworkHelperCommand() {}
+
+    public static void register(RegisterCommandsEvent event) {
+        event.getDispatcher().register(Commands.literal("networkhelper")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("stats")
+                        .executes(context -> showStats(context.getSource(), null))
+                        .then(Commands.argument("modid", StringArgumentType.word())
+                                .suggests((context, builder) -> SharedSuggestionProvider.suggest(PacketMetrics.getChannels(), builder))
+                                .executes(context -> showStats(context.getSource(), StringArgumentType.getString(context, "modid")))))
+                .then(Commands.literal("capture")
+                        .then(Commands.literal("start").executes(context -> startCapture(context.getSource())))
+                        .then(Commands.literal("stop").executes(context -> stopCapture(context.getSource())))));
+    }
+
+    private static int startCapture(CommandSourceStack source) {
+        Path directory;
+        try {
+            directory = PacketCapture.start(FMLPaths.GAMEDIR.get().resolve("networkhelper/captures"));
+        } catch (IOException | IllegalStateException e) {
+            source.sendFailure(Component.literal("Could not start capture: " + e.getMessage()));
+            return 0;
+        }
+        source.sendSuccess(() -> Component.literal("Capturing network traffic to " + directory), true);
+        return 1;
+    }
+
+    private static int stopCapture(CommandSourceStack source) {
+        Path directory = PacketCapture.stop();
+        if (directory == null) {
+            source.sendFailure(Component.literal("No capture is running"));
+            return 0;
+        }
+        source.sendSuccess(() -> Component.literal("Saved network capture to " + directory), true);
+        return 1;
+    }
+
+    private static int showStats(CommandSourceStack source, String modID) {
+        List<String> channels = modID == null ? PacketMetrics.getChannels() : List.of(modID);
+        source.sendSuccess(() -> Component.literal(String.format(Locale.ROOT, "Network stats (%ds average), handler queue: %d, pending fragments: %s",
+                RATE_SECONDS, PacketHandlerQueue.getQueueDepth(), formatBytes(PacketStreamer.getPendingBytes()))).withStyle(ChatFormatting.GOLD), false);
+        int shown = 0;
+        for (String channel : channels) {
+            List<PacketStats> stats = PacketMetrics.getChannel(channel);
+            if (stats.isEmpty()) {
+                source.sendFailure(Component.literal("No packets are registered for mod '" + channel + "'"));
+                continue;
+            }
+            List<Rates> rates = new ArrayList<>(stats.size());
+            double sent = 0, sentBytes = 0, received = 0, receivedBytes = 0;
+            for (PacketStats packet : stats) {
+                Rates rate = Rates.of(packet);
+                rates.add(rate);
+                sent += rate.sent();
+                sentBytes += rate.sentBytes();
+                received += rate.received();
+                receivedBytes += rate.receivedBytes();
+            }
+            String header = String.format(Locale.ROOT, "[%s] out %.1f/s %s/s, in %.1f/s %s/s",
+                    channel, sent, formatBytes(sentBytes), received, formatBytes(receivedBytes));
+            source.sendSuccess(() -> Component.literal(header).withStyle(ChatFormatting.YELLOW), false);
+
+            // 按字节速率从高到低列出有流量的数据包类型。
+            rates.sort(Comparator.comparingDouble(Rates::totalBytes).reversed());
+            for (Rates rate : rates) {
+                PacketStats packet = rate.packet();
+                if (packet.getEncodedPackets() == 0 && packet.getReceivedPackets() == 0) {
+                    continue;
+                }
+                String line = String.format(Locale.ROOT, "  %s: out %.1f/s %s/s, in %.1f/s %s/s, wait p99 %s, handler p99 %s",
+                        packet.packetType().getSimpleName(),
+                        rate.sent(), formatBytes(rate.sentBytes()), rate.received(), formatBytes(rate.receivedBytes()),
+                        formatNanos(packet.getQueueWaitP99Nanos()), formatNanos(packet.getHandlerP99Nanos()));
+                source.sendSuccess(() -> Component.literal(line), false);
+                shown++;
+            }
+        }
+        return shown;
+    }
+
+    private static String formatBytes(double bytes) {
+        if (bytes < 1024) {
+            return String.format(Locale.ROOT, "%.0f B", bytes);
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024);
+        }
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024 * 1024));
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format(Locale.ROOT, "%.1f µs", nanos / 1e3);
+        }
+        return String.format(Locale.ROOT, "%.1f ms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,89 @@
+package com.mx_wj.networkHelper;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+
+/**
+ * Network Helper 的通用配置，对应 {@code config/networkhelper-common.toml}。
+ */
+public final class NetworkHelperConfig {
+    public static final ForgeConfigSpec SPEC;
+
+    /**
+     * 服务端每 tick 用于执行主线程数据包处理逻辑的时间预算（毫秒）。
+     */
+    public static final ForgeConfigSpec.DoubleValue HANDLER_BUDGET_MILLIS;
+
+    /**
+     * 编码后超过这个大小（字节）的数据包会被分片发送。
+     */
+    public static final ForgeConfigSpec.IntValue FRAGMENT_THRESHOLD;
+
+    /**
+     * 每个分片的最大大小（字节）。
+     */
+    public static final ForgeConfigSpec.IntValue FRAGMENT_SIZE;
+
+    /**
+     * 每个连接每 tick 最多写出的分片字节数。
+     */
+    public static final ForgeConfigSpec.IntValue FRAGMENT_WINDOW_BYTES;
+
+    /**
+     * 每个连接每 tick 的出站预算中，保留给低优先级数据的份额。
+     */
+    public static final ForgeConfigSpec.DoubleValue BULK_SHARE;
+
+    /**
+     * 每个连接、每个通道和优先级的字符串字典最多记住的字符串数量。
+     */
+    public static final ForgeConfigSpec.IntValue DICTIONARY_SIZE;
+
+    /**
+     * 请求在没有指定超时时间时等待响应的最长时间（毫秒）。
+     */
+    public static final ForgeConfigSpec.IntValue REQUEST_TIMEOUT_MILLIS;
+
+    static {
+        ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
+
+        builder.comment("Settings for packets received by the server").push("inbound");
+        HANDLER_BUDGET_MILLIS = builder
+                .comment("Time budget in milliseconds per server tick for running main-thread packet handlers.",
+                        "Handlers that do not fit into the budget are carried over to the next tick.",
+                        "At least one handler is always run per tick.")
+                .defineInRange("handlerBudgetMillis", 10.0, 0.0, 1000.0);
+        builder.pop();
+
+        builder.comment("Settings for packets sent by the server").push("outbound");
+        FRAGMENT_THRESHOLD = builder
+                .comment("Packets whose encoded size exceeds this many bytes are split into fragments",
+                        "and streamed to the client over the following ticks.")
+                .defineInRange("fragmentThreshold", 256 * 1024, 1024, 1_000_000);
+        FRAGMENT_SIZE = builder
+                .comment("Maximum size in bytes of a single fragment.")
+                .defineInRange("fragmentSize", 32 * 1024, 1024, 1_000_000);
+        FRAGMENT_WINDOW_BYTES = builder
+                .comment("Maximum number of fragment bytes written to one connection per server tick.",
+                        "Nothing is written while the connection's outbound buffer is full.")
+                .defineInRange("fragmentWindowBytes", 256 * 1024, 1024, 64 * 1024 * 1024);
+        BULK_SHARE = builder
+                .comment("Share of fragmentWindowBytes reserved for LOW priority packets while any are queued.",
+                        "Higher priorities use the rest first; whatever they leave over also goes to LOW priority packets.")
+                .defineInRange("bulkShare", 0.25, 0.0, 1.0);
+        DICTIONARY_SIZE = builder
+                .comment("Maximum number of strings remembered per connection, channel and priority for @Dictionary fields.",
+                        "When full, the least recently used string is replaced. Changes apply to new connections.")
+                .defineInRange("dictionarySize", 1024, 16, 65536);
+        builder.pop();
+
+        builder.comment("Settings for request/response calls").push("requests");
+        REQUEST_TIMEOUT_MILLIS = builder
+                .comment("Default time in milliseconds to wait for the response to a request before failing it.")
+                .defineInRange("timeoutMillis", 10_000, 1, 600_000);
+        builder.pop();
+
+        SPEC = builder.build();
+    }
+
+    private NetworkHelperConfig() {}
+}
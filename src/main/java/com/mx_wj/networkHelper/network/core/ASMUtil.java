@@ -1,14 +1,25 @@
 package com.mx_wj.networkHelper.network.core;
 
 import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.easy.EasyFieldSerializers;
+import com.mx_wj.networkHelper.network.easy.EasyPacket;
+import com.mx_wj.networkHelper.network.easy.EasyPacketCodec;
+import com.mx_wj.networkHelper.network.easy.EasyValueCodec;
 import net.minecraft.network.FriendlyByteBuf;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * ASM 工具类 (V8 - 终极优化版)
@@ -73,6 +84,312 @@ public final class ASMUtil {
         }
     }
 
+    /**
+     * 生成一个调用数据包类公共无参构造函数的 {@link Supplier}，用于为实例池创建新实例。
+     *
+     * @param packetClass 数据包类
+     * @return 生成的工厂实例
+     * @throws IllegalArgumentException 如果数据包类没有公共的无参构造函数
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends IPacket> Supplier<T> createFactory(Class<T> packetClass) {
+        try {
+            packetClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Pooled packet class " + packetClass.getSimpleName() + " must have a public no-argument constructor.", e);
+        }
+        try {
+            final String packetClassName = Type.getInternalName(packetClass);
+            final String factoryClassName = packetClassName + "$$Factory";
+
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, factoryClassName, null, "java/lang/Object", new String[]{"java/util/function/Supplier"});
+
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(1, 1);
+            mv.visitEnd();
+
+            // get() { return new YourPacket(); }
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "get", "()Ljava/lang/Object;", null, null);
+            mv.visitCode();
+            mv.visitTypeInsn(Opcodes.NEW, packetClassName);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, packetClassName, "<init>", "()V", false);
+            mv.visitInsn(Opcodes.ARETURN);
+            mv.visitMaxs(2, 1);
+            mv.visitEnd();
+
+            cw.visitEnd();
+
+            Class<?> factoryImplClass = new DynamicClassLoader().defineClass(factoryClassName.replace('/', '.'), cw.toByteArray());
+            return (Supplier<T>) factoryImplClass.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create factory for packet: " + packetClass.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * 为一个 {@link EasyPacket} 子类生成专用的字段编解码器。
+     * <p>
+     * 生成的类以 NESTMATE 隐藏类的形式定义在数据包类所在的嵌套组中，因此可以直接使用
+     * GETFIELD / PUTFIELD 访问私有字段。标量字段的读写被展开为一次对 {@link EasyFieldSerializers}
+     * 中强类型静态方法的调用，没有装箱，也没有类型判断分支；集合、记录等复合类型的字段则调用
+     * 构造时传入的 {@link EasyValueCodec} 数组中对应的编解码器。
+     * <p>
+     * 如果有 {@code @Nullable} 字段，编码结果以一个 VarLong 空值位图开头，为 {@code null} 的字段不写入任何内容。
+     *
+     * @param packetClass 数据包类
+     * @param lookup      对数据包类拥有完全访问权限的 Lookup，用于定义隐藏类
+     * @param fields      要序列化的字段，顺序即为线上的字段顺序
+     * @return 生成的编解码器实例
+     * @throws IllegalArgumentException 如果某个字段是 final 的或其类型不受支持
+     */
+    public static EasyPacketCodec createEasyCodec(Class<? extends EasyPacket> packetClass, MethodHandles.Lookup lookup, List<Field> fields) {
+        final String packetClassName = Type.getInternalName(packetClass);
+        final String codecClassName = packetClassName + "$$EasyCodec";
+        final String friendlyByteBufName = Type.getInternalName(FriendlyByteBuf.class);
+        final String codecMethodDesc = "(L" + Type.getInternalName(EasyPacket.class) + ";L" + friendlyByteBufName + ";)V";
+
+        // 预先解析每个字段对应的读写方法，任何不受支持的字段都会让生成直接失败，由调用方回退到反射实现。
+        EasyFieldSerializers.FieldEncoding[] encodings = new EasyFieldSerializers.FieldEncoding[fields.size()];
+        EasyValueCodec<?>[] codecs = new EasyValueCodec<?>[fields.size()];
+        int[] nullBits = new int[fields.size()];
+        int nullable = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (Modifier.isFinal(field.getModifiers())) {
+                throw new IllegalArgumentException("Field " + field.getName() + " of " + packetClass.getSimpleName() + " must not be final.");
+            }
+            encodings[i] = EasyFieldSerializers.encodingOf(field);
+            codecs[i] = encodings[i].codec();
+            nullBits[i] = encodings[i].nullable() ? nullable++ : -1;
+        }
+        if (nullable > EasyFieldSerializers.MAX_NULLABLE_FIELDS) {
+            throw new IllegalArgumentException("At most " + EasyFieldSerializers.MAX_NULLABLE_FIELDS + " @Nullable fields are supported per packet, but " + packetClass.getSimpleName() + " has " + nullable);
+        }
+        EasyCodecGenerator generator = new EasyCodecGenerator(codecClassName, packetClassName, fields, encodings, nullBits, nullable > 0);
+
+        try {
+            // --- 开始 ASM 字节码生成 ---
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, codecClassName, null, "java/lang/Object", new String[]{Type.getInternalName(EasyPacketCodec.class)});
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "codecs", CODEC_ARRAY_DESC, null, null).visitEnd();
+
+            // <init>(EasyValueCodec[]): this.codecs = codecs
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + CODEC_ARRAY_DESC + ")V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, codecClassName, "codecs", CODEC_ARRAY_DESC);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(2, 2);
+            mv.visitEnd();
+
+            // encode(EasyPacket, FriendlyByteBuf): EasyFieldSerializers.writeXxx(buf, packet.field) 逐字段展开
+            generator.emitEncode(cw, codecMethodDesc, false);
+            // encode(EasyPacket, FriendlyByteBuf, int[]): 同上，并记录空值位图之后以及每个字段之后的写索引
+            generator.emitEncode(cw, codecMethodDesc.replace(")V", "[I)V"), true);
+            // decode(EasyPacket, FriendlyByteBuf): packet.field = EasyFieldSerializers.readXxx(buf) 逐字段展开
+            generator.emitDecode(cw, codecMethodDesc);
+
+            cw.visitEnd();
+            // --- ASM 字节码生成结束 ---
+
+            MethodHandles.Lookup codecLookup = lookup.defineHiddenClass(cw.toByteArray(), true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            return (EasyPacketCodec) codecLookup.findConstructor(codecLookup.lookupClass(), MethodType.methodType(void.class, EasyValueCodec[].class)).invoke(codecs);
+        } catch (Throwable t) {
+            throw new RuntimeException("Failed to create codec for packet: " + packetClass.getSimpleName(), t);
+        }
+    }
+
+    private static final String CODEC_ARRAY_DESC = "[" + Type.getDescriptor(EasyValueCodec.class);
+
+    /**
+     * {@link #createEasyCodec} 的方法体生成逻辑。
+     */
+    private record EasyCodecGenerator(String codecClassName, String packetClassName, List<Field> fields,
+                                      EasyFieldSerializers.FieldEncoding[] encodings, int[] nullBits, boolean hasNullable) {
+
+        private static final String SERIALIZERS = Type.getInternalName(EasyFieldSerializers.class);
+        private static final String FRIENDLY_BYTE_BUF = Type.getInternalName(FriendlyByteBuf.class);
+        private static final String VALUE_CODEC = Type.getInternalName(EasyValueCodec.class);
+
+        void emitEncode(ClassWriter cw, String desc, boolean recordEnds) {
+            // 局部变量: 0 = this, 1 = packet, 2 = buf, [3 = fieldEnds], 之后是强转后的 packet 和空值位图 (long)
+            int packetSlot = recordEnds ? 4 : 3;
+            int nullsSlot = packetSlot + 1;
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "encode", desc, null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, packetClassName);
+            mv.visitVarInsn(Opcodes.ASTORE, packetSlot);
+
+            if (hasNullable) {
+                // long nulls = 0; if (packet.field == null) nulls |= 1L << bit; ...; writeNullBits(buf, nulls)
+                mv.visitInsn(Opcodes.LCONST_0);
+                mv.visitVarInsn(Opcodes.LSTORE, nullsSlot);
+                for (int i = 0; i < fields.size(); i++) {
+                    if (nullBits[i] < 0) {
+                        continue;
+                    }
+                    Label nonNull = new Label();
+                    getField(mv, packetSlot, i);
+                    mv.visitJumpInsn(Opcodes.IFNONNULL, nonNull);
+                    mv.visitVarInsn(Opcodes.LLOAD, nullsSlot);
+                    mv.visitLdcInsn(1L << nullBits[i]);
+                    mv.visitInsn(Opcodes.LOR);
+                    mv.visitVarInsn(Opcodes.LSTORE, nullsSlot);
+                    mv.visitLabel(nonNull);
+                }
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitVarInsn(Opcodes.LLOAD, nullsSlot);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, SERIALIZERS, "writeNullBits", "(L" + FRIENDLY_BYTE_BUF + ";J)V", false);
+            }
+            if (recordEnds) {
+                recordEnd(mv, 0);
+            }
+
+            for (int i = 0; i < fields.size(); i++) {
+                Label skip = null;
+                if (nullBits[i] >= 0) {
+                    skip = new Label();
+                    testNullBit(mv, nullsSlot, i);
+                    mv.visitJumpInsn(Opcodes.IFNE, skip);
+                }
+                EasyFieldSerializers.FieldEncoding encoding = encodings[i];
+                if (encoding.codec() != null) {
+                    // this.codecs[i].write(buf, packet.field)
+                    loadCodec(mv, i);
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    getField(mv, packetSlot, i);
+                    mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, VALUE_CODEC, "write", "(L" + FRIENDLY_BYTE_BUF + ";Ljava/lang/Object;)V", true);
+                } else {
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    getField(mv, packetSlot, i);
+                    pushArgs(mv, encoding.args());
+                    Method writer = encoding.writer();
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, SERIALIZERS, writer.getName(), Type.getMethodDescriptor(writer), false);
+                }
+                if (skip != null) {
+                    mv.visitLabel(skip);
+                }
+                if (recordEnds) {
+                    recordEnd(mv, i + 1);
+                }
+            }
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        void emitDecode(ClassWriter cw, String desc) {
+            // 局部变量: 0 = this, 1 = packet, 2 = buf, 3 = 强转后的 packet, 4 = 空值位图 (long)
+            int packetSlot = 3;
+            int nullsSlot = 4;
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "decode", desc, null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, packetClassName);
+            mv.visitVarInsn(Opcodes.ASTORE, packetSlot);
+            if (hasNullable) {
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, SERIALIZERS, "readNullBits", "(L" + FRIENDLY_BYTE_BUF + ";)J", false);
+                mv.visitVarInsn(Opcodes.LSTORE, nullsSlot);
+            }
+
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                String fieldDesc = Type.getDescriptor(field.getType());
+                Label read = null;
+                Label done = null;
+                if (nullBits[i] >= 0) {
+                    // if (nulls & bit) != 0: packet.field = null
+                    read = new Label();
+                    done = new Label();
+                    testNullBit(mv, nullsSlot, i);
+                    mv.visitJumpInsn(Opcodes.IFEQ, read);
+                    mv.visitVarInsn(Opcodes.ALOAD, packetSlot);
+                    mv.visitInsn(Opcodes.ACONST_NULL);
+                    mv.visitFieldInsn(Opcodes.PUTFIELD, packetClassName, field.getName(), fieldDesc);
+                    mv.visitJumpInsn(Opcodes.GOTO, done);
+                    mv.visitLabel(read);
+                }
+                EasyFieldSerializers.FieldEncoding encoding = encodings[i];
+                mv.visitVarInsn(Opcodes.ALOAD, packetSlot);
+                if (encoding.codec() != null) {
+                    // packet.field = (FieldType) this.codecs[i].read(buf)
+                    loadCodec(mv, i);
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, VALUE_CODEC, "read", "(L" + FRIENDLY_BYTE_BUF + ";)Ljava/lang/Object;", true);
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(field.getType()));
+                } else {
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    pushArgs(mv, encoding.args());
+                    Method reader = encoding.reader();
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, SERIALIZERS, reader.getName(), Type.getMethodDescriptor(reader), false);
+                }
+                mv.visitFieldInsn(Opcodes.PUTFIELD, packetClassName, field.getName(), fieldDesc);
+                if (done != null) {
+                    mv.visitLabel(done);
+                }
+            }
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private void getField(MethodVisitor mv, int packetSlot, int index) {
+            Field field = fields.get(index);
+            mv.visitVarInsn(Opcodes.ALOAD, packetSlot);
+            mv.visitFieldInsn(Opcodes.GETFIELD, packetClassName, field.getName(), Type.getDescriptor(field.getType()));
+        }
+
+        private void loadCodec(MethodVisitor mv, int index) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, codecClassName, "codecs", CODEC_ARRAY_DESC);
+            mv.visitLdcInsn(index);
+            mv.visitInsn(Opcodes.AALOAD);
+        }
+
+        /**
+         * 压入 {@code (nulls & (1L << bit)) != 0 ? 非零 : 0}，之后跟 IFNE / IFEQ。
+         */
+        private void testNullBit(MethodVisitor mv, int nullsSlot, int index) {
+            mv.visitVarInsn(Opcodes.LLOAD, nullsSlot);
+            mv.visitLdcInsn(1L << nullBits[index]);
+            mv.visitInsn(Opcodes.LAND);
+            mv.visitInsn(Opcodes.LCONST_0);
+            mv.visitInsn(Opcodes.LCMP);
+        }
+
+        /**
+         * fieldEnds[index] = buf.writerIndex()
+         */
+        private static void recordEnd(MethodVisitor mv, int index) {
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitLdcInsn(index);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            // writerIndex 是 Netty 的方法，不受 Minecraft 混淆映射影响，可以在生成的字节码中直接调用。
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "io/netty/buffer/ByteBuf", "writerIndex", "()I", false);
+            mv.visitInsn(Opcodes.IASTORE);
+        }
+    }
+
+    /**
+     * 把紧凑编码注解中的常量参数压入操作数栈。
+     */
+    private static void pushArgs(MethodVisitor mv, Object[] args) {
+        for (Object arg : args) {
+            mv.visitLdcInsn(arg);
+        }
+    }
+
     private static class DynamicClassLoader extends ClassLoader {
         public DynamicClassLoader() {
             super(FriendlyByteBuf.class.getClassLoader());
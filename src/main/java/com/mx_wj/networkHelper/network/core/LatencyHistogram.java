@@ -0,0 +1,69 @@
+package com.mx_wj.networkHelper.network.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 2 的幂为桶边界的耗时直方图。
+ * <p>
+ * 第 {@code i} 个桶记录 {@code [2^(i-1), 2^i)} 纳秒内的样本，记录一次只需要一次 {@link LongAdder#increment()}，
+ * 可以在多个线程上并发调用。百分位数只精确到桶的上界，用于观察数量级已经足够。
+ */
+final class LatencyHistogram {
+
+    /**
+     * 最后一个桶收纳所有超过 {@code 2^46} 纳秒（约 19 小时）的样本。
+     */
+    private static final int BUCKETS = 48;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        int bucket = nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        buckets[bucket].increment();
+        totalNanos.add(Math.max(nanos, 0));
+    }
+
+    long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @param quantile 介于 0 和 1 之间的分位数，例如 0.99。
+     * @return 该分位数所在桶的上界（纳秒）；没有样本时返回 0。
+     */
+    long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return (1L << i) - 1;
+            }
+        }
+        return (1L << (BUCKETS - 1)) - 1;
+    }
+}
@@ -0,0 +1,260 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mojang.datafixers.util.Pair;
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.IRequest;
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.network.NetworkDirection;
+import net.minecraftforge.network.NetworkEvent;
+import net.minecraftforge.network.event.EventNetworkChannel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 一个模组的网络通道，以及在其上注册的所有数据包。
+ * <p>
+ * 通道建立在 Forge 的 {@link EventNetworkChannel} 之上，自定义负载的内容就是一个“帧”：
+ * {@code [VarInt 数据包ID][数据包内容]}。与 {@code SimpleChannel} 的单字节判别符不同，VarInt ID 没有数量上限，
+ * 前 128 个ID仍然只占一个字节。ID {@link PacketBundle#BUNDLE_ID}、{@link PacketFragment#FRAGMENT_ID}、
+ * {@link PacketRequests#REQUEST_ID} 和 {@link PacketRequests#RESPONSE_ID} 保留给批量帧、分片、请求和响应，
+ * 数据包的ID从 {@link #FIRST_PACKET_ID} 开始。
+ * <p>
+ * 数据包既按类索引（用于发送），也按ID索引在一个数组中（用于接收），因此分发一个负载只需要一次数组访问。
+ */
+final class ModChannel {
+
+    /**
+     * 第一个数据包的ID，更小的ID是保留的控制消息。
+     */
+    static final int FIRST_PACKET_ID = 4;
+
+    private final String modID;
+    private final ResourceLocation name;
+    private final EventNetworkChannel eventChannel;
+    private final Map<Class<?>, RegisteredPacket<?>> byClass = new HashMap<>();
+    private final List<RegisteredPacket<?>> byId = new ArrayList<>();
+
+    ModChannel(String modID, ResourceLocation name, EventNetworkChannel eventChannel) {
+        this.modID = modID;
+        this.name = name;
+        this.eventChannel = eventChannel;
+    }
+
+    String modID() {
+        return modID;
+    }
+
+    ResourceLocation name() {
+        return name;
+    }
+
+    EventNetworkChannel eventChannel() {
+        return eventChannel;
+    }
+
+    /**
+     * 记录一个已注册的数据包。数据包必须按ID从 {@link #FIRST_PACKET_ID} 开始依次注册。
+     */
+    void add(RegisteredPacket<?> packet) {
+        if (packet.id() != idLimit()) {
+            throw new IllegalStateException("Packets must be added in ID order, expected " + idLimit() + " but got " + packet.id());
+        }
+        byId.add(packet);
+        byClass.put(packet.packetClass(), packet);
+    }
+
+    /**
+     * @return 该通道上已注册的数据包数量。
+     */
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * @return 比所有数据包ID都大的最小值，可以用作按ID索引的数组的长度。
+     */
+    int idLimit() {
+        return FIRST_PACKET_ID + byId.size();
+    }
+
+    /**
+     * @return 该通道上的所有数据包，按ID排序。
+     */
+    List<RegisteredPacket<?>> packets() {
+        return byId;
+    }
+
+    /**
+     * 根据数据包实例找到它的注册信息。
+     *
+     * @throws IllegalArgumentException 如果该数据包类没有在这个通道上注册。
+     */
+    RegisteredPacket<?> get(IPacket packet) {
+        RegisteredPacket<?> registered = byClass.get(packet.getClass());
+        if (registered == null) {
+            throw new IllegalArgumentException("Packet " + packet.getClass().getName() + " is not registered on channel " + name);
+        }
+        return registered;
+    }
+
+    /**
+     * 根据ID找到数据包的注册信息。
+     *
+     * @return 注册信息；如果ID无效或是保留的控制消息ID，则返回 {@code null}。
+     */
+    RegisteredPacket<?> get(int id) {
+        int index = id - FIRST_PACKET_ID;
+        return index >= 0 && index < byId.size() ? byId.get(index) : null;
+    }
+
+    /**
+     * 将数据包编码为一个独立的帧：{@code [VarInt 数据包ID][数据包内容]}。
+     * 编码结果可以被复制到多个目标中，调用方不会修改它的读索引。
+     */
+    FriendlyByteBuf encodeFrame(IPacket packet) {
+        RegisteredPacket<?> registered = get(packet);
+        FriendlyByteBuf frame = new FriendlyByteBuf(Unpooled.buffer());
+        frame.writeVarInt(registered.id());
+        registered.encode(packet, frame);
+        return frame;
+    }
+
+    /**
+     * 把一个负载（帧、批量帧或分片）包装为发往客户端的原版自定义负载数据包。不会修改负载的读索引，
+     * 因此同一个负载可以包装多次，包装出的数据包也可以发送给多个连接。
+     */
+    Packet<?> toClientPacket(ByteBuf payload) {
+        return NetworkDirection.PLAY_TO_CLIENT.buildPacket(Pair.of(new FriendlyByteBuf(payload.duplicate()), 0), name).getThis();
+    }
+
+    /**
+     * 把一个帧包装为发往服务端的原版自定义负载数据包。
+     */
+    Packet<?> toServerPacket(ByteBuf payload) {
+        return NetworkDirection.PLAY_TO_SERVER.buildPacket(Pair.of(new FriendlyByteBuf(payload.duplicate()), 0), name).getThis();
+    }
+
+    /**
+     * 在不移动读索引的情况下读取负载所携带的数据包的ID。请求会被展开，返回其中的数据包的ID。
+     *
+     * @return 数据包ID；如果负载不是以完整的 VarInt 开头，则返回 -1。
+     */
+    static int peekPacketId(ByteBuf payload) {
+        ByteBuf peek = payload.duplicate();
+        int id = readVarInt(peek);
+        if (id == PacketRequests.REQUEST_ID && readVarInt(peek) != -1) {
+            id = readVarInt(peek);
+        }
+        return id;
+    }
+
+    /**
+     * @return 读出的 VarInt；如果缓冲区中没有一个完整的 VarInt，则返回 -1。
+     */
+    private static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buf.isReadable()) {
+                return -1;
+            }
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 根据ID找到收到的数据包的注册信息，并检查它是否可以在这个方向上被接收。
+     *
+     * @param toClient 数据包是否是由服务端发往客户端的。
+     * @return 注册信息；如果数据包声明的方向不允许，则记录警告并返回 {@code null}。
+     * @throws IllegalStateException 如果ID不属于任何已注册的数据包。
+     */
+    RegisteredPacket<?> accept(int id, boolean toClient) {
+        RegisteredPacket<?> type = get(id);
+        if (type == null) {
+            throw new IllegalStateException("Unknown packet id " + id + " on channel " + name);
+        }
+        if (type.info().direction() == (toClient ? PacketDirection.CLIENT_TO_SERVER : PacketDirection.SERVER_TO_CLIENT)) {
+            NetworkHelperMod.LOGGER.warn("Dropping {} received in the wrong direction on channel {}", type.packetClass().getSimpleName(), name);
+            return null;
+        }
+        return type;
+    }
+
+    /**
+     * {@link EventNetworkChannel} 的监听器，在网络线程上解码并分发收到的负载。
+     * 数据包（包括请求和响应中携带的数据包）只有在它声明的方向上才会被接受；批量帧和分片只能由服务端发出。
+     */
+    void receive(NetworkEvent event) {
+        FriendlyByteBuf payload = event.getPayload();
+        NetworkEvent.Context context = event.getSource().get();
+        NetworkDirection direction = context.getDirection();
+        if (payload == null || (direction != NetworkDirection.PLAY_TO_SERVER && direction != NetworkDirection.PLAY_TO_CLIENT)) {
+            return;
+        }
+        context.setPacketHandled(true);
+        receive(payload, direction == NetworkDirection.PLAY_TO_CLIENT, event.getSource(), true);
+    }
+
+    /**
+     * 分发一个负载。分片拼装出的负载也经过这里，它可以是普通数据包、批量帧、请求或响应，但不能再是分片。
+     *
+     * @param fragments 是否接受分片，拼装出的负载中为 {@code false}。
+     */
+    private void receive(FriendlyByteBuf payload, boolean toClient, Supplier<NetworkEvent.Context> source, boolean fragments) {
+        int id = payload.readVarInt();
+        switch (id) {
+            case PacketBundle.BUNDLE_ID, PacketFragment.FRAGMENT_ID -> {
+                if (!toClient) {
+                    NetworkHelperMod.LOGGER.warn("Dropping control message {} sent by a client on channel {}", id, name);
+                } else if (id == PacketBundle.BUNDLE_ID) {
+                    PacketBundle.handle(PacketBundle.decode(payload, this), source);
+                } else if (!fragments) {
+                    throw new IllegalStateException("Fragment nested in a fragmented payload on channel " + name);
+                } else {
+                    ByteBuf reassembled = PacketFragment.decode(payload, this);
+                    if (reassembled != null) {
+                        try {
+                            receive(new FriendlyByteBuf(reassembled), true, source, false);
+                        } finally {
+                            reassembled.release();
+                        }
+                    }
+                }
+            }
+            case PacketRequests.REQUEST_ID -> {
+                int requestId = payload.readVarInt();
+                RegisteredPacket<?> type = accept(payload.readVarInt(), toClient);
+                if (type == null) {
+                    return;
+                }
+                if (!IRequest.class.isAssignableFrom(type.packetClass())) {
+                    NetworkHelperMod.LOGGER.warn("Dropping {} sent as a request on channel {}, it does not implement IRequest", type.packetClass().getSimpleName(), name);
+                    return;
+                }
+                PacketManager.handleRequest(this, type, (IRequest<?>) type.decode(payload), requestId, source);
+            }
+            case PacketRequests.RESPONSE_ID -> PacketRequests.receive(this, payload, source.get());
+            default -> {
+                RegisteredPacket<?> type = accept(id, toClient);
+                if (type != null) {
+                    PacketManager.handlePacket(type, type.decode(payload), source);
+                }
+            }
+        }
+    }
+}
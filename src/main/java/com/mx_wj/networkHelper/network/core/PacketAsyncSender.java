@@ -0,0 +1,230 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketPriority;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务端的异步发送路径，数据包在 {@link PacketWorkerPool} 上编码，而不是在调用线程上。
+ * <p>
+ * 每个目标连接有一个按发送顺序排列的等待队列。异步发送在调用时就占好队列中的位置，编码完成后，
+ * 队列头部所有已经编码好的帧按顺序交给 {@link PacketSender#dispatch}。队列不为空时，同一个连接上的同步发送也排在队列末尾，
+ * 因此无论数据包以哪种方式发出，也无论编码的快慢，同一个线程发往同一个连接的数据包总是按调用顺序写出。
+ * <p>
+ * 一个数据包只编码一次，由它的所有目标连接共享。内容取决于接收方的数据包（见 {@link RegisteredPacket#perRecipient()}）
+ * 仍然在调用线程上逐个编码，而且是在持有目标连接队列锁的同时占位并编码的，见 {@link #sendFor}。
+ * <p>
+ * 所有方法都是线程安全的。
+ */
+final class PacketAsyncSender {
+
+    private static final Map<Connection, Outbound> outbound = new ConcurrentHashMap<>();
+
+    /**
+     * 一个连接的等待队列。队列清空后会被标记为已关闭，之后的同步发送不再需要排队。
+     */
+    private static final class Outbound {
+        private final ArrayDeque<Slot> slots = new ArrayDeque<>();
+        private boolean closed;
+    }
+
+    /**
+     * 等待队列中的一个位置。{@link #done} 为 {@code true} 后，{@link #frame} 为 {@code null} 表示编码失败。
+     */
+    private static final class Slot {
+        private final ModChannel channel;
+        private final PacketPriority priority;
+        private final boolean batching;
+        private FriendlyByteBuf frame;
+        private boolean done;
+        /**
+         * 逐个接收方编码的帧所属的数据包类型，帧最终没有发出时用它丢弃接收方的快照和字典。
+         */
+        private RegisteredPacket<?> perRecipient;
+
+        private Slot(ModChannel channel, PacketPriority priority, boolean batching) {
+            this.channel = channel;
+            this.priority = priority;
+            this.batching = batching;
+        }
+    }
+
+    private PacketAsyncSender() {}
+
+    /**
+     * 把一个数据包异步地发送给一组玩家。调用方把数据包的所有权交给了这个方法，在返回的 {@code CompletableFuture} 完成之前不能再修改它。
+     *
+     * @return 帧交给所有目标连接之后完成的 {@code CompletableFuture}；编码失败时以异常完成。
+     */
+    static CompletableFuture<Void> sendToPlayers(ModChannel channel, IPacket packet, Collection<ServerPlayer> players) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (players.isEmpty()) {
+            result.complete(null);
+            return result;
+        }
+        RegisteredPacket<?> registered = channel.get(packet);
+        PacketPriority priority = registered.info().priority();
+        boolean batching = PacketSender.batching(channel, priority);
+        registered.stats().recordSent(players.size());
+
+        if (registered.perRecipient()) {
+            try {
+                for (ServerPlayer player : players) {
+                    sendFor(player.connection.connection, channel, packet, priority, batching);
+                }
+                result.complete(null);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        List<Connection> connections = new ArrayList<>(players.size());
+        List<Slot> slots = new ArrayList<>(players.size());
+        for (ServerPlayer player : players) {
+            Connection connection = player.connection.connection;
+            connections.add(connection);
+            slots.add(reserve(connection, channel, priority, batching));
+        }
+
+        Runnable encode = () -> {
+            try {
+                FriendlyByteBuf frame = channel.encodeFrame(packet);
+                for (Slot slot : slots) {
+                    slot.frame = frame;
+                }
+                result.complete(null);
+            } catch (RuntimeException e) {
+                NetworkHelperMod.LOGGER.error("Error while encoding packet {} for an asynchronous send", registered.packetClass().getSimpleName(), e);
+                result.completeExceptionally(e);
+            } finally {
+                complete(connections, slots);
+            }
+        };
+        if (!PacketWorkerPool.tryExecute(encode)) {
+            // 工作线程池已满，在调用线程上编码，顺序仍然由队列保证。
+            encode.run();
+        }
+        return result;
+    }
+
+    /**
+     * 如果连接上还有等待编码的异步发送，把一个已编码的帧排在它们之后。
+     *
+     * @return 如果帧已加入队列则返回 {@code true}；否则调用方应按普通方式发送它。
+     */
+    static boolean enqueueEncoded(Connection connection, ModChannel channel, FriendlyByteBuf frame, PacketPriority priority, boolean batching) {
+        if (outbound.isEmpty()) {
+            return false;
+        }
+        Outbound queue = outbound.get(connection);
+        if (queue == null) {
+            return false;
+        }
+        synchronized (queue) {
+            if (queue.closed) {
+                return false;
+            }
+            Slot slot = new Slot(channel, priority, batching);
+            slot.frame = frame;
+            slot.done = true;
+            queue.slots.add(slot);
+            return true;
+        }
+    }
+
+    /**
+     * 为一个接收方编码内容取决于接收方的数据包，并把帧排在连接的等待队列中。
+     * <p>
+     * 编码会更新这个接收方的快照和字典，接收方必须按同样的顺序收到这些帧。因此占位和编码都在持有队列锁的情况下完成：
+     * 多个线程同时发往同一个连接时，编码的顺序就是帧在队列中的顺序，也就是写出的顺序。
+     * 队列中没有等待编码的异步发送时，帧会在锁内立即写出，队列随即被移除。
+     *
+     * @throws RuntimeException 如果编码失败；这时不会写出任何内容。
+     */
+    static void sendFor(Connection connection, ModChannel channel, IPacket packet, PacketPriority priority, boolean batching) {
+        while (true) {
+            Outbound queue = outbound.computeIfAbsent(connection, c -> new Outbound());
+            synchronized (queue) {
+                if (queue.closed) {
+                    continue;
+                }
+                Slot slot = new Slot(channel, priority, batching);
+                slot.perRecipient = channel.get(packet);
+                queue.slots.add(slot);
+                try {
+                    slot.frame = PacketSender.encodeFor(channel, packet, connection);
+                } finally {
+                    slot.done = true;
+                    drain(connection, queue);
+                }
+                return;
+            }
+        }
+    }
+
+    private static Slot reserve(Connection connection, ModChannel channel, PacketPriority priority, boolean batching) {
+        Slot slot = new Slot(channel, priority, batching);
+        while (true) {
+            Outbound queue = outbound.computeIfAbsent(connection, c -> new Outbound());
+            synchronized (queue) {
+                if (queue.closed) {
+                    // 这个队列刚好清空并被移除了，重新获取一个新的。
+                    continue;
+                }
+                queue.slots.add(slot);
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * 把这些位置标记为已完成，并写出每个连接队列头部已经完成的帧。
+     */
+    private static void complete(List<Connection> connections, List<Slot> slots) {
+        for (int i = 0; i < slots.size(); i++) {
+            Connection connection = connections.get(i);
+            Outbound queue = outbound.get(connection);
+            synchronized (queue) {
+                slots.get(i).done = true;
+                drain(connection, queue);
+            }
+        }
+    }
+
+    /**
+     * 必须在持有 queue 锁的情况下调用。在锁内写出，这样之后加入队列的同步发送不会越过正在写出的帧。
+     */
+    private static void drain(Connection connection, Outbound queue) {
+        Slot head;
+        while ((head = queue.slots.peek()) != null && head.done) {
+            queue.slots.poll();
+            if (head.frame != null && connection.isConnected()) {
+                try {
+                    PacketSender.dispatch(connection, head.channel, head.frame, head.priority, head.batching);
+                } catch (RuntimeException e) {
+                    // 一个帧被拒绝不能让队列停住，否则这个连接之后的所有数据包都不会再写出。
+                    NetworkHelperMod.LOGGER.error("Error while sending a queued packet on channel {}", head.channel.name(), e);
+                    if (head.perRecipient != null) {
+                        head.perRecipient.discardRecipientState(connection);
+                    }
+                }
+            }
+        }
+        if (queue.slots.isEmpty()) {
+            queue.closed = true;
+            outbound.remove(connection, queue);
+        }
+    }
+}
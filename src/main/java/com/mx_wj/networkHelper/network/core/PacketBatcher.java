@@ -0,0 +1,114 @@
+package com.mx_wj.networkHelper.network.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.Connection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务端的每 tick 批量发送器。
+ * <p>
+ * 对启用了批量模式的通道，发往同一个连接的数据包会先被追加到一个 {@link PacketBundle} 主体中，
+ * 在服务端 tick 结束时作为一个自定义负载一次性发出。这样每个连接每个通道每 tick 只需要一次
+ * Netty 管线遍历和一次刷新，而不是每个数据包一次。
+ * <p>
+ * 所有方法都是线程安全的，可以在任意线程上追加数据包。
+ */
+final class PacketBatcher {
+
+    /**
+     * 单个批量帧主体的上限。原版对服务端发往客户端的自定义负载限制为 1 MiB，这里留出一些余量。
+     */
+    static final int MAX_BUNDLE_BYTES = 1_000_000;
+
+    private static final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+
+    private record Key(Connection connection, ModChannel channel) {}
+
+    /**
+     * 一个尚未发出的批量帧。发出后会被标记为已关闭，之后的追加会创建新的批量帧。
+     */
+    private static final class Pending {
+        private final ByteBuf body = Unpooled.buffer();
+        private int count;
+        private boolean closed;
+    }
+
+    private PacketBatcher() {}
+
+    /**
+     * 把一个已编码的帧加入该连接在本 tick 的批量帧中。
+     * 帧的读索引不会被修改，因此同一个帧可以被加入多个连接。
+     *
+     * @param connection 目标连接。
+     * @param channel    数据包所属的通道。
+     * @param frame      由 {@link ModChannel#encodeFrame} 编码的帧。
+     * @return 如果帧已加入批量帧则返回 {@code true}；如果帧过大不适合合并，则先发出已经排队的部分以保持顺序，
+     *         然后返回 {@code false}，调用方应立即单独发送它。
+     */
+    static boolean enqueue(Connection connection, ModChannel channel, ByteBuf frame) {
+        // 3 字节长度前缀 + 帧内容
+        int frameSize = frame.readableBytes() + 3;
+        Key key = new Key(connection, channel);
+        if (frameSize > MAX_BUNDLE_BYTES) {
+            flush(key);
+            return false;
+        }
+        while (true) {
+            Pending bundle = pending.computeIfAbsent(key, k -> new Pending());
+            synchronized (bundle) {
+                if (bundle.closed) {
+                    // 这个批量帧刚好被另一个线程发出了，重新获取一个新的。
+                    continue;
+                }
+                if (bundle.body.readableBytes() + frameSize > MAX_BUNDLE_BYTES) {
+                    closeAndSend(key, bundle);
+                    continue;
+                }
+                PacketBundle.writeFrame(bundle.body, frame);
+                bundle.count++;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 发出所有排队中的批量帧，在服务端 tick 结束时调用。
+     */
+    static void flushAll() {
+        for (Key key : pending.keySet()) {
+            flush(key);
+        }
+    }
+
+    private static void flush(Key key) {
+        Pending bundle = pending.get(key);
+        if (bundle != null) {
+            synchronized (bundle) {
+                if (!bundle.closed) {
+                    closeAndSend(key, bundle);
+                }
+            }
+        }
+    }
+
+    /**
+     * 必须在持有 bundle 锁的情况下调用。
+     */
+    private static void closeAndSend(Key key, Pending bundle) {
+        bundle.closed = true;
+        pending.remove(key, bundle);
+        if (bundle.count > 0) {
+            send(key, bundle.count, bundle.body);
+        }
+    }
+
+    private static void send(Key key, int count, ByteBuf body) {
+        if (!key.connection().isConnected()) {
+            return;
+        }
+        key.connection().send(key.channel().toClientPacket(PacketBundle.toPayload(count, body)));
+    }
+}
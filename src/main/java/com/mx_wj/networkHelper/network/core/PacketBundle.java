@@ -0,0 +1,88 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 批量帧：把同一个 tick 内发往同一个连接、同一个通道的多个数据包合并为一个自定义负载。
+ * <p>
+ * 线上格式为 {@code [VarInt BUNDLE_ID][VarInt 数量]} 之后紧跟若干个 {@code [3 字节长度][帧]}，
+ * 其中每个帧都是 {@link ModChannel#encodeFrame} 的输出。接收方按顺序拆分并分发每个数据包。
+ */
+final class PacketBundle {
+
+    /**
+     * 批量帧在 {@link ModChannel} 上占用的保留ID。
+     */
+    static final int BUNDLE_ID = 0;
+
+    private final List<Decoded> packets;
+
+    private record Decoded(RegisteredPacket<?> type, IPacket packet) {}
+
+    private PacketBundle(List<Decoded> packets) {
+        this.packets = packets;
+    }
+
+    /**
+     * 向批量帧的主体中追加一个帧，不会修改帧的读索引，因此同一个帧可以追加到多个批量帧中。
+     */
+    static void writeFrame(ByteBuf body, ByteBuf frame) {
+        body.writeMedium(frame.readableBytes());
+        body.writeBytes(frame, frame.readerIndex(), frame.readableBytes());
+    }
+
+    /**
+     * 把批量帧编码为一个完整的负载。主体不会被复制，也不会修改它的读索引。
+     *
+     * @param count 主体中的帧数量。
+     * @param body  由 {@link #writeFrame} 依次写入的主体。
+     */
+    static ByteBuf toPayload(int count, ByteBuf body) {
+        FriendlyByteBuf header = new FriendlyByteBuf(Unpooled.buffer(10, 10));
+        header.writeVarInt(BUNDLE_ID);
+        header.writeVarInt(count);
+        return Unpooled.wrappedBuffer(header, body.duplicate());
+    }
+
+    /**
+     * 在网络线程上拆分批量帧并解码其中的每一个数据包。负载开头的ID已经被读取。
+     */
+    static PacketBundle decode(FriendlyByteBuf buf, ModChannel channel) {
+        int count = buf.readVarInt();
+        List<Decoded> packets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            FriendlyByteBuf frame = new FriendlyByteBuf(buf.readSlice(buf.readUnsignedMedium()));
+            int id = frame.readVarInt();
+            RegisteredPacket<?> type = channel.get(id);
+            if (type == null) {
+                throw new IllegalStateException("Unknown packet id " + id + " in bundle on channel " + channel.name());
+            }
+            packets.add(new Decoded(type, type.decode(frame)));
+        }
+        return new PacketBundle(packets);
+    }
+
+    /**
+     * 按原始顺序分发批量帧中的所有数据包。
+     */
+    static void handle(PacketBundle bundle, Supplier<NetworkEvent.Context> context) {
+        for (Decoded decoded : bundle.packets) {
+            if (decoded.type().info().direction() == PacketDirection.CLIENT_TO_SERVER) {
+                NetworkHelperMod.LOGGER.error("Dropping client-bound bundle entry {}, it is registered as CLIENT_TO_SERVER.", decoded.type().packetClass().getSimpleName());
+                decoded.type().release(decoded.packet());
+                continue;
+            }
+            PacketManager.handlePacket(decoded.type(), decoded.packet(), context);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.easy.EasyUnsafeHacks;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 网络流量录制，用于在本地重现玩家报告的网络问题。
+ * <p>
+ * 录制开启后，{@link RegisteredPacket} 的编码和解码包装会把每个数据包的原始负载（压缩后的线上字节，不含数据包ID）连同时间戳一起
+ * 追加到一组内存映射的分段文件中。每个分段固定为 {@code -Dnetworkhelper.capture.segmentMiB}（默认 64）MiB，写满后换到下一个分段，
+ * 最多保留 {@code -Dnetworkhelper.capture.maxSegments}（默认 16）个分段，更早的会被删除。没有录制时，热路径上只多一次 volatile 读。
+ * 广播的数据包只编码一次，因此也只记录一次。
+ * <p>
+ * 每个分段都是自包含的，格式为：
+ * <pre>
+ * [int 魔数 "NHCP"][short 版本][long 录制开始时的 Unix 毫秒时间]
+ * 之后是若干条记录，以一个 0 字节结束：
+ * [byte 1][VarInt 定义序号][UTF 模组ID][VarInt 数据包ID][UTF 类名]                     数据包类型定义，在分段中第一次出现前写入
+ * [byte 2][long 距离录制开始的纳秒数][byte 0 接收 / 1 发送][VarInt 定义序号][int 长度][负载]   一个数据包
+ * </pre>
+ * 录制的文件可以用 JMH 源码集中的 {@code CaptureReplay} 离线回放，见 README。
+ */
+public final class PacketCapture {
+
+    static final int MAGIC = 0x4E484350;
+    static final short VERSION = 1;
+    static final String EXTENSION = ".nhcap";
+
+    private static final byte END = 0;
+    private static final byte DEFINITION = 1;
+    private static final byte PACKET = 2;
+
+    private static final int HEADER_BYTES = 4 + 2 + 8;
+    /**
+     * 数据包记录除负载以外的最大长度。
+     */
+    private static final int PACKET_HEADER_BYTES = 1 + 8 + 1 + 5 + 4;
+
+    private static final int SEGMENT_BYTES = Integer.getInteger("networkhelper.capture.segmentMiB", 64) * 1024 * 1024;
+    private static final int MAX_SEGMENTS = Integer.getInteger("networkhelper.capture.maxSegments", 16);
+
+    private static final AtomicReference<Recorder> recorder = new AtomicReference<>();
+
+    /**
+     * 录制文件中的一个数据包类型。
+     */
+    record Definition(String modID, int packetId, String className) {}
+
+    /**
+     * 录制文件中的一个数据包。
+     *
+     * @param nanos      距离录制开始的纳秒数。
+     * @param inbound    是接收到的数据包还是发出的数据包。
+     * @param definition 数据包类型。
+     * @param payload    原始负载，只在回调期间有效。
+     */
+    record Packet(long nanos, boolean inbound, Definition definition, ByteBuffer payload) {}
+
+    private PacketCapture() {}
+
+    /**
+     * 开始录制。每次录制使用 directory 下一个以开始时间命名的新目录。
+     *
+     * @param directory 存放录制的目录。
+     * @return 本次录制的目录。
+     * @throws IllegalStateException 如果已经在录制。
+     * @throws IOException           如果无法创建第一个分段。
+     */
+    public static synchronized Path start(Path directory) throws IOException {
+        Recorder current = recorder.get();
+        if (current != null) {
+            throw new IllegalStateException("A capture is already running in " + current.directory);
+        }
+        Path captureDirectory = directory.resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(captureDirectory);
+        recorder.set(new Recorder(captureDirectory));
+        NetworkHelperMod.LOGGER.info("Started capturing network traffic to {}", captureDirectory);
+        return captureDirectory;
+    }
+
+    /**
+     * 停止录制。
+     *
+     * @return 刚结束的录制的目录；如果没有在录制，则返回 {@code null}。
+     */
+    public static synchronized Path stop() {
+        Recorder current = recorder.getAndSet(null);
+        if (current == null) {
+            return null;
+        }
+        current.close();
+        return current.directory;
+    }
+
+    /**
+     * @return 是否正在录制。
+     */
+    public static boolean isRecording() {
+        return recorder.get() != null;
+    }
+
+    /**
+     * 如果正在录制，追加一个数据包的原始负载。不会修改缓冲区的读写索引。
+     */
+    static void record(RegisteredPacket<?> type, boolean inbound, ByteBuf buf, int index, int length) {
+        Recorder current = recorder.get();
+        if (current != null) {
+            current.append(type, inbound, buf, index, length);
+        }
+    }
+
+    /**
+     * 追加写入当前分段的录制器。所有写入都在 this 锁内进行，只需要一次内存复制。
+     */
+    private static final class Recorder {
+        private final Path directory;
+        private final long startNanos = System.nanoTime();
+        private final long startMillis = System.currentTimeMillis();
+        private final ArrayDeque<Path> segments = new ArrayDeque<>();
+        /**
+         * 超出数量上限、但还没能删除的旧分段，每次换分段时重试。
+         */
+        private final List<Path> undeleted = new ArrayList<>();
+        /**
+         * 当前分段中已经写入定义的数据包类型及其序号。
+         */
+        private final Map<RegisteredPacket<?>, Integer> definitions = new IdentityHashMap<>();
+        private FileChannel file;
+        private MappedByteBuffer buffer;
+        private int nextSegment;
+        private long packets;
+        private long dropped;
+        private boolean closed;
+
+        private Recorder(Path directory) throws IOException {
+            this.directory = directory;
+            rotate();
+        }
+
+        private synchronized void append(RegisteredPacket<?> type, boolean inbound, ByteBuf buf, int index, int length) {
+            if (closed) {
+                return;
+            }
+            try {
+                Integer definition = definitions.get(type);
+                byte[] definitionRecord = definition == null ? definitionRecord(type, definitions.size()) : null;
+                int size = PACKET_HEADER_BYTES + length + (definitionRecord == null ? 0 : definitionRecord.length);
+                // 末尾留出结束标记的一个字节。
+                if (size + 1 > buffer.remaining()) {
+                    // 新的分段中总是要先写入这个类型的定义。
+                    definitionRecord = definitionRecord(type, 0);
+                    if (HEADER_BYTES + PACKET_HEADER_BYTES + length + definitionRecord.length + 1 > SEGMENT_BYTES) {
+                        dropped++;
+                        return;
+                    }
+                    rotate();
+                    definition = null;
+                }
+                if (definition == null) {
+                    definition = definitions.size();
+                    definitions.put(type, definition);
+                    buffer.put(definitionRecord);
+                }
+                buffer.put(PACKET);
+                buffer.putLong(System.nanoTime() - startNanos);
+                buffer.put(inbound ? (byte) 0 : (byte) 1);
+                putVarInt(buffer, definition);
+                buffer.putInt(length);
+                buffer.limit(buffer.position() + length);
+                buf.getBytes(index, buffer);
+                buffer.limit(buffer.capacity());
+                packets++;
+            } catch (IOException | RuntimeException e) {
+                NetworkHelperMod.LOGGER.error("Error while capturing network traffic, stopping the capture", e);
+                closed = true;
+                recorder.compareAndSet(this, null);
+                closeSegment();
+            }
+        }
+
+        private static byte[] definitionRecord(RegisteredPacket<?> type, int definition) {
+            FriendlyByteBuf record = new FriendlyByteBuf(Unpooled.buffer());
+            record.writeByte(DEFINITION);
+            record.writeVarInt(definition);
+            record.writeUtf(type.modID());
+            record.writeVarInt(type.id());
+            record.writeUtf(type.packetClass().getName());
+            byte[] bytes = new byte[record.readableBytes()];
+            record.readBytes(bytes);
+            return bytes;
+        }
+
+        /**
+         * 结束当前分段，开始一个新的分段。超出数量上限的旧分段会被删除。
+         */
+        private void rotate() throws IOException {
+            closeSegment();
+            Path path = directory.resolve(String.format("segment-%05d%s", nextSegment++, EXTENSION));
+            file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putLong(startMillis);
+            definitions.clear();
+            segments.add(path);
+            while (segments.size() > MAX_SEGMENTS) {
+                undeleted.add(segments.poll());
+            }
+            // 旧分段在关闭时已经解除映射；如果没能解除（Windows 上仍被映射的文件无法删除），留到下一次重试。
+            undeleted.removeIf(Recorder::delete);
+        }
+
+        private static boolean delete(Path segment) {
+            try {
+                Files.deleteIfExists(segment);
+                return true;
+            } catch (IOException e) {
+                NetworkHelperMod.LOGGER.warn("Could not delete old capture segment {}, retrying on the next rotation", segment, e);
+                return false;
+            }
+        }
+
+        private void closeSegment() {
+            if (file == null) {
+                return;
+            }
+            try {
+                // 映射的文件总是写满整个分段，未写入的部分都是 0，即结束标记。
+                buffer.force();
+                file.close();
+            } catch (IOException e) {
+                NetworkHelperMod.LOGGER.warn("Could not close capture segment", e);
+            }
+            // 立即解除映射，而不是等到 GC 回收缓冲区，这样超出上限的分段才能被删除。所有写入都在 this 锁内，之后不会再访问它。
+            EasyUnsafeHacks.invokeCleaner(buffer);
+            file = null;
+            buffer = null;
+        }
+
+        private synchronized void close() {
+            if (!closed) {
+                closed = true;
+                closeSegment();
+            }
+            NetworkHelperMod.LOGGER.info("Stopped capturing network traffic to {}: {} packets, {} dropped", directory, packets, dropped);
+        }
+    }
+
+    /**
+     * 列出一次录制的所有分段，按写入顺序排列。
+     *
+     * @param path 一个分段文件，或者一次录制的目录。
+     */
+    static List<Path> segments(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).sorted().toList();
+        }
+    }
+
+    /**
+     * 按顺序读出一个分段中的所有数据包。
+     *
+     * @throws IOException 如果文件不是录制分段。
+     */
+    static void read(Path segment, Consumer<Packet> consumer) throws IOException {
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException(segment + " is not a network capture segment");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException(segment + " has unsupported capture version " + version);
+            }
+            buffer.getLong();
+            FriendlyByteBuf reader = new FriendlyByteBuf(Unpooled.wrappedBuffer(buffer));
+            List<Definition> definitions = new ArrayList<>();
+            while (reader.isReadable()) {
+                byte type = reader.readByte();
+                if (type == END) {
+                    break;
+                }
+                if (type == DEFINITION) {
+                    int index = reader.readVarInt();
+                    Definition definition = new Definition(reader.readUtf(), reader.readVarInt(), reader.readUtf());
+                    definitions.add(index, definition);
+                } else if (type == PACKET) {
+                    long nanos = reader.readLong();
+                    boolean inbound = reader.readByte() == 0;
+                    Definition definition = definitions.get(reader.readVarInt());
+                    int length = reader.readInt();
+                    consumer.accept(new Packet(nanos, inbound, definition, reader.nioBuffer(reader.readerIndex(), length)));
+                    reader.skipBytes(length);
+                } else {
+                    throw new IOException("Corrupt record type " + type + " in " + segment);
+                }
+            }
+        }
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,119 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import com.mx_wj.networkHelper.network.core.info.PacketPriority;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务端的每 tick 合并器，用于启用了 {@link PacketInfo#coalesce()} 的数据包。
+ * <p>
+ * 这类数据包在发送时不编码，只是按连接记录下来：同一个连接上通道、类和 {@link IPacket#coalescingKey()} 都相同的数据包会替换掉
+ * 还没有发出的那一个，并计入 {@link PacketStats#getCoalescedPackets()}。服务端 tick 结束时，剩下的数据包按第一次加入的顺序编码，
+ * 再交给 {@link PacketSender#dispatch}，因此仍然遵守优先级、分片和批量发送的规则。
+ * <p>
+ * 广播给多个玩家的同一个数据包实例只编码一次。所有方法都是线程安全的。
+ */
+final class PacketCoalescer {
+
+    private static final Map<Connection, Pending> pending = new ConcurrentHashMap<>();
+
+    private record Key(ModChannel channel, Class<?> type, Object key) {}
+
+    private record Entry(ModChannel channel, RegisteredPacket<?> registered, IPacket packet) {}
+
+    /**
+     * 一个连接在本 tick 内等待发出的数据包。发出后会被标记为已关闭，之后的数据包会创建新的记录。
+     */
+    private static final class Pending {
+        private final Map<Key, Entry> packets = new LinkedHashMap<>();
+        private boolean closed;
+    }
+
+    private PacketCoalescer() {}
+
+    /**
+     * 把一个数据包加入每个目标连接在本 tick 的合并表中。数据包在 tick 结束时才会被编码，在此之前调用方不能再修改它。
+     */
+    static void enqueue(ModChannel channel, RegisteredPacket<?> registered, IPacket packet, Collection<ServerPlayer> players) {
+        Key key = new Key(channel, registered.packetClass(), packet.coalescingKey());
+        Entry entry = new Entry(channel, registered, packet);
+        for (ServerPlayer player : players) {
+            Connection connection = player.connection.connection;
+            while (true) {
+                Pending packets = pending.computeIfAbsent(connection, c -> new Pending());
+                synchronized (packets) {
+                    if (packets.closed) {
+                        // 这张表刚好被发出了，重新获取一个新的。
+                        continue;
+                    }
+                    // 替换时保留原来的位置，之后发出的顺序以第一次加入为准。
+                    if (packets.packets.put(key, entry) != null) {
+                        registered.stats().recordCoalesced();
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 编码并发出所有连接上合并后的数据包，在服务端 tick 结束时调用。
+     */
+    static void flushAll() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<IPacket, FriendlyByteBuf> frames = new IdentityHashMap<>();
+        for (Map.Entry<Connection, Pending> entry : pending.entrySet()) {
+            Connection connection = entry.getKey();
+            Pending packets = entry.getValue();
+            synchronized (packets) {
+                if (packets.closed) {
+                    continue;
+                }
+                packets.closed = true;
+                pending.remove(connection, packets);
+            }
+            if (!connection.isConnected()) {
+                continue;
+            }
+            for (Entry packet : packets.packets.values()) {
+                send(connection, packet, frames);
+            }
+        }
+    }
+
+    private static void send(Connection connection, Entry entry, Map<IPacket, FriendlyByteBuf> frames) {
+        RegisteredPacket<?> registered = entry.registered();
+        ModChannel channel = entry.channel();
+        PacketPriority priority = registered.info().priority();
+        boolean batching = PacketSender.batching(channel, priority);
+        FriendlyByteBuf frame;
+        try {
+            if (registered.perRecipient()) {
+                PacketAsyncSender.sendFor(connection, channel, entry.packet(), priority, batching);
+                registered.stats().recordSent(1);
+                return;
+            }
+            frame = frames.computeIfAbsent(entry.packet(), channel::encodeFrame);
+        } catch (RuntimeException e) {
+            // 一个数据包编码失败不应该影响本 tick 的其他数据包。
+            NetworkHelperMod.LOGGER.error("Error while encoding coalesced packet {}", registered.packetClass().getSimpleName(), e);
+            return;
+        }
+        registered.stats().recordSent(1);
+        if (!PacketAsyncSender.enqueueEncoded(connection, channel, frame, priority, batching)) {
+            PacketSender.dispatch(connection, channel, frame, priority, batching);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.core.info.PacketCompression;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 数据包负载的压缩与解压，以及相关的字节统计。
+ * <p>
+ * 由 {@link RegisteredPacket} 的编解码包装调用。启用压缩的数据包在线上的格式为
+ * {@code [VarInt 原始长度][数据]}：原始长度为 0 表示数据未被压缩，否则数据是按 {@link PacketCompression} 压缩后的结果。
+ */
+public final class PacketCompressor {
+
+    /**
+     * 解压后允许的最大长度，与原版对压缩数据包的限制相同，用于防止解压炸弹。
+     */
+    static final int MAX_UNCOMPRESSED_LENGTH = 8 * 1024 * 1024;
+
+    /**
+     * Snappy 的块大小。Snappy 的回溯偏移量最多为 16 位，因此按块独立压缩。
+     */
+    private static final int SNAPPY_BLOCK = 32 * 1024;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private static final LongAdder sentBytesBefore = new LongAdder();
+    private static final LongAdder sentBytesAfter = new LongAdder();
+    private static final LongAdder receivedBytesBefore = new LongAdder();
+    private static final LongAdder receivedBytesAfter = new LongAdder();
+
+    private PacketCompressor() {}
+
+    /**
+     * 压缩 {@code in} 中的所有可读字节。
+     *
+     * @return 压缩后的数据。
+     */
+    static ByteBuf compress(PacketCompression compression, ByteBuf in) {
+        ByteBuf out = Unpooled.buffer(in.readableBytes() / 2 + 16);
+        switch (compression) {
+            case DEFLATE -> deflate(in, out);
+            case SNAPPY -> snappyEncode(in, out);
+            case NONE -> out.writeBytes(in, in.readerIndex(), in.readableBytes());
+        }
+        return out;
+    }
+
+    /**
+     * 解压 {@code in} 中的所有可读字节。
+     *
+     * @param length 原始长度。
+     * @return 解压后的数据，长度一定等于 {@code length}。
+     */
+    static ByteBuf decompress(PacketCompression compression, ByteBuf in, int length) {
+        if (length < 0 || length > MAX_UNCOMPRESSED_LENGTH) {
+            throw new IllegalStateException("Badly compressed packet - size of " + length + " is larger than protocol maximum of " + MAX_UNCOMPRESSED_LENGTH);
+        }
+        ByteBuf out = switch (compression) {
+            case DEFLATE -> inflate(in, length);
+            case SNAPPY -> snappyDecode(in, length);
+            case NONE -> in.readBytes(length);
+        };
+        if (out.readableBytes() != length) {
+            throw new IllegalStateException("Badly compressed packet - expected " + length + " bytes but got " + out.readableBytes());
+        }
+        return out;
+    }
+
+    static void recordSent(int before, int after) {
+        sentBytesBefore.add(before);
+        sentBytesAfter.add(after);
+    }
+
+    static void recordReceived(int before, int after) {
+        receivedBytesBefore.add(before);
+        receivedBytesAfter.add(after);
+    }
+
+    private static void deflate(ByteBuf in, ByteBuf out) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        byte[] input = new byte[in.readableBytes()];
+        in.getBytes(in.readerIndex(), input);
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.writeBytes(chunk, 0, n);
+        }
+    }
+
+    private static ByteBuf inflate(ByteBuf in, int length) {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        byte[] input = new byte[in.readableBytes()];
+        in.readBytes(input);
+        inflater.setInput(input);
+        byte[] output = new byte[length];
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int read = inflater.inflate(output, n, length - n);
+                if (read == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += read;
+            }
+            return Unpooled.wrappedBuffer(output, 0, n);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Badly compressed packet", e);
+        }
+    }
+
+    private static void snappyEncode(ByteBuf in, ByteBuf out) {
+        Snappy snappy = new Snappy();
+        int base = in.readerIndex();
+        int length = in.readableBytes();
+        for (int offset = 0; offset < length; offset += SNAPPY_BLOCK) {
+            int blockLength = Math.min(SNAPPY_BLOCK, length - offset);
+            // 每个块前写入 3 字节的压缩后长度，解压时据此切分。
+            int lengthIndex = out.writerIndex();
+            out.writeMedium(0);
+            snappy.encode(in.slice(base + offset, blockLength), out, blockLength);
+            snappy.reset();
+            out.setMedium(lengthIndex, out.writerIndex() - lengthIndex - 3);
+        }
+    }
+
+    private static ByteBuf snappyDecode(ByteBuf in, int length) {
+        Snappy snappy = new Snappy();
+        ByteBuf out = Unpooled.buffer(length);
+        while (in.isReadable()) {
+            ByteBuf block = in.readSlice(in.readUnsignedMedium());
+            // 块开头是 Snappy 的 VarInt 长度前缀。Netty 会按它预分配输出空间，因此必须先检查它，防止恶意数据耗尽内存。
+            int blockLength = new FriendlyByteBuf(block.duplicate()).readVarInt();
+            if (blockLength < 0 || blockLength > SNAPPY_BLOCK) {
+                throw new IllegalStateException("Badly compressed packet - block size of " + blockLength + " is invalid");
+            }
+            snappy.decode(block, out);
+            snappy.reset();
+            if (out.readableBytes() > length) {
+                break;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return 发送的、启用了压缩的数据包在压缩前的总字节数。
+     */
+    public static long getSentBytesBeforeCompression() {
+        return sentBytesBefore.sum();
+    }
+
+    /**
+     * @return 发送的、启用了压缩的数据包在压缩后（即线上）的总字节数，包括长度标记。
+     */
+    public static long getSentBytesAfterCompression() {
+        return sentBytesAfter.sum();
+    }
+
+    /**
+     * @return 接收的、启用了压缩的数据包在解压前（即线上）的总字节数，包括长度标记。
+     */
+    public static long getReceivedBytesBeforeDecompression() {
+        return receivedBytesBefore.sum();
+    }
+
+    /**
+     * @return 接收的、启用了压缩的数据包在解压后的总字节数。
+     */
+    public static long getReceivedBytesAfterDecompression() {
+        return receivedBytesAfter.sum();
+    }
+}
@@ -0,0 +1,117 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分片：一个超过 {@link com.mx_wj.networkHelper.NetworkHelperConfig#FRAGMENT_THRESHOLD} 的帧被拆分后的一部分。
+ * <p>
+ * 线上格式为 {@code [VarInt FRAGMENT_ID][VarInt 序号][序号为 0 时: VarInt 帧总长度][数据]}。
+ * 同一个连接、同一个通道上的分片由 {@link PacketStreamer} 按顺序逐个帧发出，不会交错，
+ * 因此接收方每个通道只需要一个正在拼装的缓冲区。被拆分的可以是任何负载：普通数据包的帧、请求或响应，
+ * 拼装完成后由 {@link ModChannel} 像一个单独收到的负载一样分发。
+ */
+final class PacketFragment {
+
+    /**
+     * 分片在 {@link ModChannel} 上占用的保留ID。
+     */
+    static final int FRAGMENT_ID = 1;
+
+    /**
+     * 一个分片传输的帧的最大总长度。接收方会按声明的总长度预先分配缓冲区，因此必须限制它。
+     */
+    static final int MAX_FRAME_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * 接收方每个通道正在拼装的帧。
+     */
+    private static final Map<ModChannel, Reassembly> incoming = new ConcurrentHashMap<>();
+
+    private static final class Reassembly {
+        private final ByteBuf buffer;
+        private int nextIndex;
+
+        private Reassembly(ByteBuf buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private PacketFragment() {}
+
+    /**
+     * 把一个分片编码为一个完整的负载。分片数据会被复制，之后调用方不再需要它。
+     *
+     * @param index       分片在帧中的序号，从 0 开始。
+     * @param frameLength 整个帧的长度。
+     * @param data        这个分片携带的数据，不会修改它的读索引。
+     */
+    static ByteBuf toPayload(int index, int frameLength, ByteBuf data) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer(data.readableBytes() + 15));
+        buf.writeVarInt(FRAGMENT_ID);
+        buf.writeVarInt(index);
+        if (index == 0) {
+            buf.writeVarInt(frameLength);
+        }
+        buf.writeBytes(data, data.readerIndex(), data.readableBytes());
+        return buf;
+    }
+
+    /**
+     * 在网络线程上把分片追加到正在拼装的负载中。负载开头的ID已经被读取。
+     *
+     * @return 拼装完成的负载，调用方分发后负责释放它；负载还不完整时返回 {@code null}。
+     */
+    static ByteBuf decode(FriendlyByteBuf buf, ModChannel channel) {
+        int index = buf.readVarInt();
+        Reassembly reassembly;
+        if (index == 0) {
+            int frameLength = buf.readVarInt();
+            if (frameLength <= 0 || frameLength > MAX_FRAME_BYTES) {
+                throw new IllegalStateException("Invalid fragmented frame length " + frameLength + " on channel " + channel.name());
+            }
+            reassembly = new Reassembly(PooledByteBufAllocator.DEFAULT.heapBuffer(frameLength, frameLength));
+            Reassembly previous = incoming.put(channel, reassembly);
+            if (previous != null) {
+                previous.buffer.release();
+                NetworkHelperMod.LOGGER.warn("Discarding an incomplete fragmented frame on channel {}", channel.name());
+            }
+        } else {
+            reassembly = incoming.get(channel);
+            if (reassembly == null || reassembly.nextIndex != index) {
+                throw new IllegalStateException("Unexpected fragment " + index + " on channel " + channel.name());
+            }
+        }
+        reassembly.nextIndex++;
+
+        if (buf.readableBytes() > reassembly.buffer.writableBytes()) {
+            incoming.remove(channel, reassembly);
+            reassembly.buffer.release();
+            throw new IllegalStateException("Fragment " + index + " overflows its frame on channel " + channel.name());
+        }
+        reassembly.buffer.writeBytes(buf);
+        if (reassembly.buffer.isWritable()) {
+            return null;
+        }
+        incoming.remove(channel, reassembly);
+        return reassembly.buffer;
+    }
+
+    /**
+     * 丢弃所有正在拼装的帧，在客户端断开连接时调用。
+     */
+    static void clearIncoming() {
+        for (ModChannel channel : incoming.keySet()) {
+            Reassembly reassembly = incoming.remove(channel);
+            if (reassembly != null) {
+                reassembly.buffer.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperConfig;
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import net.minecraft.network.Connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务端主线程数据包处理逻辑的专用队列。
+ * <p>
+ * 服务端收到的、需要在主线程上执行的数据包不再直接交给 {@code enqueueWork}，而是按发送方连接排队，
+ * 在每个服务端 tick 结束时，在 {@link NetworkHelperConfig#HANDLER_BUDGET_MILLIS} 的时间预算内以轮转的方式执行：
+ * 每一轮从每个玩家的队列中各取一个，直到预算用完或队列为空。
+ * 这样一个玩家的突发流量（例如批量的物品栏操作）只会推迟它自己的处理，而不会让整个 tick 超时。
+ * 预算内没有执行完的任务会留到下一个 tick。
+ */
+public final class PacketHandlerQueue {
+
+    private static final Map<Connection, Queue<Task>> queues = new ConcurrentHashMap<>();
+    private static final AtomicInteger depth = new AtomicInteger();
+    private static final LongAdder deferredTicks = new LongAdder();
+    private static final LongAdder deferredPackets = new LongAdder();
+
+    /**
+     * 每个 tick 轮转一次起始位置，避免总是同一个玩家排在最前面。
+     */
+    private static int rotation;
+
+    /**
+     * 一个排队中的处理任务。任务被丢弃时，数据包通过 {@code registered} 归还。
+     */
+    private record Task(RegisteredPacket<?> registered, IPacket packet, Runnable handler) {
+    }
+
+    private PacketHandlerQueue() {}
+
+    /**
+     * 把一个处理任务加入发送方连接的队列。可以在任意线程上调用。
+     *
+     * @param connection 发送方连接。
+     * @param registered 数据包的注册信息，任务因连接断开而被丢弃时用它归还数据包。
+     * @param packet     数据包实例。
+     * @param handler    要在主线程上执行的任务，它自己负责在执行完毕后归还数据包。
+     */
+    static void enqueue(Connection connection, RegisteredPacket<?> registered, IPacket packet, Runnable handler) {
+        Queue<Task> queue = queues.computeIfAbsent(connection, c -> new ConcurrentLinkedQueue<>());
+        depth.incrementAndGet();
+        queue.add(new Task(registered, packet, handler));
+        if (queues.get(connection) != queue) {
+            // 连接已经断开，drain 在我们取得队列之后移除了它，之后不会有人再执行这个队列。
+            discard(queue);
+        }
+    }
+
+    /**
+     * 丢弃一个已经移除的队列中的所有任务。逐个取出并计数，这样与 {@link #enqueue} 并发时每个任务也只会被计数和归还一次。
+     */
+    private static void discard(Queue<Task> queue) {
+        Task task;
+        while ((task = queue.poll()) != null) {
+            depth.decrementAndGet();
+            try {
+                task.registered().release(task.packet());
+            } catch (Throwable t) {
+                NetworkHelperMod.LOGGER.error("Error while releasing discarded packet {}", task.registered().packetClass().getSimpleName(), t);
+            }
+        }
+    }
+
+    /**
+     * 在配置的预算内执行排队中的任务。必须在服务端主线程上调用。
+     */
+    static void drain() {
+        if (depth.get() == 0) {
+            return;
+        }
+        drain((long) (NetworkHelperConfig.HANDLER_BUDGET_MILLIS.get() * 1_000_000L));
+    }
+
+    /**
+     * 在给定的预算内执行排队中的任务。必须在服务端主线程上调用；负载测试不加载配置，直接调用这个方法。
+     *
+     * @param budgetNanos 这个 tick 的时间预算（纳秒）。
+     */
+    static void drain(long budgetNanos) {
+        if (depth.get() == 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+
+        List<Queue<Task>> active = new ArrayList<>();
+        for (Map.Entry<Connection, Queue<Task>> entry : queues.entrySet()) {
+            if (!entry.getKey().isConnected()) {
+                // 玩家已经断开连接，丢弃它剩余的数据包。
+                Queue<Task> removed = queues.remove(entry.getKey());
+                if (removed != null) {
+                    discard(removed);
+                }
+            } else if (!entry.getValue().isEmpty()) {
+                active.add(entry.getValue());
+            }
+        }
+        if (active.isEmpty()) {
+            return;
+        }
+
+        int start = Math.floorMod(rotation++, active.size());
+        boolean ranAny = true;
+        boolean first = true;
+        while (ranAny) {
+            ranAny = false;
+            for (int i = 0; i < active.size(); i++) {
+                // 预算检查放在执行之前，但每个 tick 至少执行一个任务，保证队列总能向前推进。
+                if (!first && System.nanoTime() >= deadline) {
+                    defer();
+                    return;
+                }
+                Task task = active.get((start + i) % active.size()).poll();
+                if (task == null) {
+                    continue;
+                }
+                depth.decrementAndGet();
+                first = false;
+                ranAny = true;
+                try {
+                    task.handler().run();
+                } catch (Throwable t) {
+                    NetworkHelperMod.LOGGER.error("Error while executing queued packet handler", t);
+                }
+            }
+        }
+    }
+
+    private static void defer() {
+        deferredTicks.increment();
+        deferredPackets.add(depth.get());
+    }
+
+    /**
+     * @return 当前所有玩家队列中等待执行的任务总数。
+     */
+    public static int getQueueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return 因预算用完而有任务被推迟到下一个 tick 的 tick 数。
+     */
+    public static long getDeferredTicks() {
+        return deferredTicks.sum();
+    }
+
+    /**
+     * @return 被推迟到下一个 tick 的任务数的累计值。同一个任务被推迟多次时会被计算多次。
+     */
+    public static long getDeferredPackets() {
+        return deferredPackets.sum();
+    }
+}
@@ -0,0 +1,74 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import net.minecraftforge.forgespi.locating.IModFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 编译期生成的数据包索引的读取器。
+ * <p>
+ * 索引由 {@code PacketIndexProcessor} 注解处理器写入每个 JAR 的 {@link #INDEX_PATH}。
+ * 读取索引只需要解析一个文本文件，不会加载或初始化任何类，因此比扫描整个 JAR 的类快得多。
+ */
+public final class PacketIndex {
+
+    /**
+     * 索引文件在 JAR 中的路径。必须与注解处理器中的路径保持一致。
+     */
+    public static final String INDEX_PATH = "META-INF/networkhelper/packets.idx";
+
+    private PacketIndex() {}
+
+    /**
+     * 索引中的一条记录。
+     *
+     * @param stableId  稳定ID，即该类在按类名排序后的列表中的位置，与 {@link PacketManager} 分配数据包ID的顺序一致。
+     * @param className 数据包类的二进制名，可直接用于 {@link Class#forName(String)}。
+     * @param direction 数据包的传输方向。
+     *                  读取时用稳定ID和方向检查索引是否与编译出的类一致，见 {@link PacketScanner}。
+     */
+    public record Entry(int stableId, String className, PacketDirection direction) {}
+
+    /**
+     * 从模组文件中读取数据包索引。
+     *
+     * @param modFile 模组文件。
+     * @return 按稳定ID排序的索引记录；如果该 JAR 没有索引，则返回 {@code null}。
+     * @throws IOException 如果索引存在但无法读取或格式错误。
+     */
+    public static List<Entry> read(IModFile modFile) throws IOException {
+        Path path = modFile.findResource(INDEX_PATH);
+        if (path == null || !Files.exists(path)) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length != 3) {
+                    throw new IOException("Malformed packet index line: " + line);
+                }
+                try {
+                    entries.add(new Entry(Integer.parseInt(parts[0]), parts[1], PacketDirection.valueOf(parts[2])));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed packet index line: " + line, e);
+                }
+            }
+        }
+        entries.sort(Comparator.comparingInt(Entry::stableId));
+        return entries;
+    }
+}
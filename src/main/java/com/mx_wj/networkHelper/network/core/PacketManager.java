@@ -1,24 +1,49 @@
 package com.mx_wj.networkHelper.network.core;
 
+import com.mx_wj.networkHelper.NetworkHelperConfig;
 import com.mx_wj.networkHelper.NetworkHelperMod;
 import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.IRequest;
 import com.mx_wj.networkHelper.network.core.info.PacketDirection;
 import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import com.mx_wj.networkHelper.network.core.info.Pooled;
+import com.mx_wj.networkHelper.network.core.info.RateLimit;
+import com.mx_wj.networkHelper.network.easy.DeltaSync;
+import com.mx_wj.networkHelper.network.easy.EasyPacket;
+import com.mx_wj.networkHelper.network.easy.StringDictionary;
+import net.minecraft.network.Connection;
 import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.fml.LogicalSidedProvider;
 import net.minecraftforge.network.NetworkDirection;
+import net.minecraftforge.network.NetworkEvent;
 import net.minecraftforge.network.NetworkRegistry;
 import net.minecraftforge.network.PacketDistributor;
-import net.minecraftforge.network.simple.SimpleChannel;
+import net.minecraftforge.network.event.EventNetworkChannel;
+import net.minecraftforge.server.ServerLifecycleHooks;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 一个为 Forge 1.20.1 设计的、简化的、集中式的网络数据包管理器。
  * <p>
- * 这个管理器的设计初衷是能被多个模组同时使用。它封装了创建 {@link SimpleChannel} 和
+ * 这个管理器的设计初衷是能被多个模组同时使用。它封装了创建网络通道和
  * 注册单个数据包的繁琐样板代码。模组可以使用 {@link #addToRegister(String, Class)}
  * 方法将其数据包加入队列，然后只需调用一次 {@link #registerPackets()} 即可完成所有注册工作。
  */
@@ -31,14 +56,21 @@ public class PacketManager {
     private static final Map<String, List<Class<? extends IPacket>>> toRegisterPackets = new HashMap<>();
 
     /**
-     * 注册后，为每个模组ID缓存创建的 {@link SimpleChannel}。
+     * 注册后，为每个模组ID缓存创建的通道及其数据包表。
      */
-    private static final Map<String, SimpleChannel> channels = new HashMap<>();
+    private static final Map<String, ModChannel> channels = new HashMap<>();
 
     /**
      * 网络通道的协议版本号。Forge 使用它来确保客户端和服务端具有兼容的网络设置。
+     * 版本 2 起数据包ID是 VarInt，并按类名顺序分配；版本 3 增加了请求和响应。
      */
-    private static final String PROTOCOL_VERSION = "1";
+    /**
+     * 当前在线的玩家，由登录和登出事件维护，供 {@link #sendToAllPlayersAsync} 在任意线程上读取。
+     * 原版的在线玩家列表只能在服务端主线程上访问。
+     */
+    private static final Set<ServerPlayer> onlinePlayers = ConcurrentHashMap.newKeySet();
+
+    private static final String PROTOCOL_VERSION = "3";
 
     /**
      * 为特定的模组将一个数据包类添加到注册队列中。
@@ -54,117 +86,340 @@ public class PacketManager {
 
     /**
      * 注册所有通过 {@link #addToRegister} 添加到队列中的数据包。
-     * 此方法会遍历每个模组，为其创建一个专用的 {@link SimpleChannel}，
+     * 此方法会遍历每个模组，为其创建一个专用的 {@link EventNetworkChannel}，
      * 然后注册其队列中的所有数据包。
      * <p>
+     * 数据包ID按类名顺序分配，与 {@link PacketIndex} 中的稳定ID顺序一致，因此与调用 {@link #addToRegister} 的顺序无关，
+     * 客户端和服务端只要注册了同一组数据包，就会得到相同的ID。每个模组的数据包数量没有上限。
+     * <p>
      * 这个方法通常应该在模组加载过程中的某个时刻被调用一次，最好是在所有数据包都已入队之后。
      */
     public static void registerPackets() {
         for (Map.Entry<String, List<Class<? extends IPacket>>> entry : toRegisterPackets.entrySet()) {
             String modID = entry.getKey();
-            List<Class<? extends IPacket>> packetClasses = entry.getValue();
+            List<Class<? extends IPacket>> packetClasses = entry.getValue().stream()
+                    .distinct()
+                    .sorted(Comparator.comparing(Class::getName))
+                    .toList();
 
             // 为该模组创建一个新的通信通道。
-            SimpleChannel simpleChannel = NetworkRegistry.newSimpleChannel(
-                    new ResourceLocation(modID, "main"),
+            ResourceLocation channelName = new ResourceLocation(modID, "main");
+            EventNetworkChannel eventChannel = NetworkRegistry.newEventChannel(
+                    channelName,
                     () -> PROTOCOL_VERSION,
                     PROTOCOL_VERSION::equals, // 服务端接受连接时的版本检查
                     PROTOCOL_VERSION::equals  // 客户端接受连接时的版本检查
             );
 
-            channels.put(modID, simpleChannel);
+            ModChannel channel = new ModChannel(modID, channelName, eventChannel);
+            channels.put(modID, channel);
             NetworkHelperMod.LOGGER.info("Registering packets for mod '{}'...", modID);
 
-            int packetId = 0;
+            int packetId = ModChannel.FIRST_PACKET_ID;
             for (Class<? extends IPacket> packetClass : packetClasses) {
                 // 这里的泛型 <T> 会被编译器自动推断。
-                registerPacket(simpleChannel, packetClass, packetId);
+                registerPacket(channel, packetClass, packetId);
                 packetId++;
                 NetworkHelperMod.LOGGER.info(" -> Registered packet: {}", packetClass.getSimpleName());
             }
-            NetworkHelperMod.LOGGER.info("Finished registration for mod '{}'. Total packets: {}", modID, packetId);
+            PacketRateLimiter.register(channel);
+
+            // 所有负载（包括批量帧和分片）都由通道自己按ID分发。
+            eventChannel.addListener(channel::receive);
+            NetworkHelperMod.LOGGER.info("Finished registration for mod '{}'. Total packets: {}", modID, channel.size());
         }
     }
 
     /**
      * 处理单个数据包类的注册逻辑。
-     * 它会读取 {@link PacketInfo} 注解来确定网络方向，并据此注册数据包。
+     * 它会读取 {@link PacketInfo} 注解并检查其配置，然后把数据包加入通道。网络方向在接收时由 {@link ModChannel} 检查。
      *
-     * @param simpleChannel 要在其上注册数据包的通道。
-     * @param packetClass   要注册的数据包的类。
-     * @param packetId      此数据包在该通道上的唯一区分ID。
-     * @param <T>           数据包的类型，实现了 {@link IPacket} 接口。
+     * @param channel     要在其上注册数据包的通道。
+     * @param packetClass 要注册的数据包的类。
+     * @param packetId    此数据包在该通道上的唯一区分ID。
+     * @param <T>         数据包的类型，实现了 {@link IPacket} 接口。
      */
-    private static <T extends IPacket> void registerPacket(SimpleChannel simpleChannel, Class<T> packetClass, int packetId) {
+    private static <T extends IPacket> void registerPacket(ModChannel channel, Class<T> packetClass, int packetId) {
         PacketInfo info = packetClass.getAnnotation(PacketInfo.class);
         if (info == null) {
             throw new IllegalArgumentException("Packet class " + packetClass.getSimpleName() + " is missing the @PacketInfo annotation!");
         }
 
         PacketDirection direction = info.direction();
-        // 为了性能，解码器是使用 ASM 动态生成的。
-        Function<FriendlyByteBuf, T> decoder = ASMUtil.createDecoder(packetClass);
+        Function<FriendlyByteBuf, T> decoder = createDecoder(packetClass);
+        if (packetClass.isAnnotationPresent(DeltaSync.class)) {
+            if (!EasyPacket.class.isAssignableFrom(packetClass)) {
+                throw new IllegalArgumentException("@DeltaSync is only supported on EasyPacket subclasses, but " + packetClass.getSimpleName() + " is not one.");
+            }
+            if (direction != PacketDirection.SERVER_TO_CLIENT) {
+                throw new IllegalArgumentException("@DeltaSync packet " + packetClass.getSimpleName() + " must be SERVER_TO_CLIENT.");
+            }
+        }
+        if (EasyPacket.class.isAssignableFrom(packetClass) && StringDictionary.uses(packetClass)) {
+            if (direction != PacketDirection.SERVER_TO_CLIENT) {
+                throw new IllegalArgumentException("Packet " + packetClass.getSimpleName() + " has @Dictionary fields, but only SERVER_TO_CLIENT packets can use the dictionary.");
+            }
+            if (packetClass.isAnnotationPresent(DeltaSync.class)) {
+                throw new IllegalArgumentException("@DeltaSync packet " + packetClass.getSimpleName() + " cannot have @Dictionary fields.");
+            }
+        }
+        RateLimit rateLimit = info.rateLimit();
+        if ((rateLimit.packetsPerSecond() > 0 || rateLimit.bytesPerSecond() > 0) && direction == PacketDirection.SERVER_TO_CLIENT) {
+            throw new IllegalArgumentException("Packet " + packetClass.getSimpleName() + " has a rate limit, but it is never received by the server.");
+        }
+        if (info.coalesce() && direction == PacketDirection.CLIENT_TO_SERVER) {
+            throw new IllegalArgumentException("Packet " + packetClass.getSimpleName() + " enables coalescing, but it is never sent by the server.");
+        }
+        if (EasyPacket.class.isAssignableFrom(packetClass)) {
+            // EasyPacket 的字段编解码器同样在注册时生成，避免首次收发时的生成开销。
+            EasyPacket.prepareCodec(packetClass.asSubclass(EasyPacket.class));
+        }
+        RegisteredPacket<T> registered = new RegisteredPacket<>(channel.modID(), packetClass, packetId, info, decoder);
+        channel.add(registered);
+    }
+
+    /**
+     * 为一个数据包类创建解码器。为了性能，解码器是使用 ASM 动态生成的；
+     * 启用 {@link Pooled 实例池} 的数据包则由实例池解码，它会复用回收的实例。
+     */
+    static <T extends IPacket> Function<FriendlyByteBuf, T> createDecoder(Class<T> packetClass) {
+        Pooled pooled = packetClass.getAnnotation(Pooled.class);
+        return pooled != null ? new PacketPool<>(packetClass, pooled.capacity()) : ASMUtil.createDecoder(packetClass);
+    }
+
+    /**
+     * 处理一个接收到的数据包。普通数据包和批量帧中拆分出的数据包都经过这里。
+     * <p>
+     * 默认情况下，我们将数据包的执行逻辑放入任务队列，以确保它在主游戏线程上运行，
+     * 这对于与游戏世界的大多数交互来说是至关重要的（线程安全）。
+     * 声明为线程安全的数据包可以通过 {@link PacketInfo#execution()} 选择直接在网络线程上执行，
+     * 或者交给共享的工作线程池，从而不占用 tick 时间。
+     *
+     * @param registered 数据包的注册信息。
+     * @param packet     解码后的数据包。
+     * @param context    网络事件的上下文。
+     */
+    static void handlePacket(RegisteredPacket<?> registered, IPacket packet, Supplier<NetworkEvent.Context> context) {
+        NetworkEvent.Context ctx = context.get();
+        dispatch(registered, packet, sender(ctx), ctx::enqueueWork, () -> packet.execute(ctx));
+    }
 
-        switch (direction) {
-            case CLIENT_TO_SERVER ->
-                    registerInternal(simpleChannel, packetClass, packetId, decoder, Optional.of(NetworkDirection.PLAY_TO_SERVER));
+    /**
+     * 处理一个接收到的请求。请求与普通数据包一样在 {@link PacketInfo#execution()} 指定的线程上执行，
+     * 只是调用的是 {@link IRequest#respond}，并把响应发回请求方。
+     *
+     * @param channel    请求所在的通道，响应也从这里发出。
+     * @param registered 请求的注册信息。
+     * @param request    解码后的请求。
+     * @param requestId  请求方分配的关联ID。
+     * @param context    网络事件的上下文。
+     */
+    static void handleRequest(ModChannel channel, RegisteredPacket<?> registered, IRequest<?> request, int requestId, Supplier<NetworkEvent.Context> context) {
+        NetworkEvent.Context ctx = context.get();
+        dispatch(registered, request, sender(ctx), ctx::enqueueWork, () -> PacketRequests.respond(channel, request, requestId, ctx));
+    }
 
-            case SERVER_TO_CLIENT ->
-                    registerInternal(simpleChannel, packetClass, packetId, decoder, Optional.of(NetworkDirection.PLAY_TO_CLIENT));
+    /**
+     * @return 服务端收到数据包时的发送方连接；客户端收到数据包时返回 {@code null}。
+     */
+    private static Connection sender(NetworkEvent.Context ctx) {
+        return ctx.getDirection() == NetworkDirection.PLAY_TO_SERVER ? ctx.getNetworkManager() : null;
+    }
 
-            case BIDIRECTIONAL -> {
-                // 对于双向数据包，我们为两个方向都进行注册，使用相同的ID。
-                // Forge 的 SimpleChannel 支持这种做法，它会根据数据包的发送源来决定路由。
-                registerInternal(simpleChannel, packetClass, packetId, decoder, Optional.of(NetworkDirection.PLAY_TO_SERVER));
-                registerInternal(simpleChannel, packetClass, packetId, decoder, Optional.of(NetworkDirection.PLAY_TO_CLIENT));
+    /**
+     * 按 {@link PacketInfo#execution()} 分发一个数据包的处理逻辑。不依赖 {@link NetworkEvent}，
+     * 因此负载测试也通过这里分发，与游戏中走同样的线程选择、{@link PacketHandlerQueue} 和统计。
+     *
+     * @param registered 数据包的注册信息。
+     * @param packet     解码后的数据包，处理完毕后被归还。
+     * @param sender     服务端收到数据包时的发送方连接，主线程上的处理逻辑进入它在 {@link PacketHandlerQueue} 中的队列；
+     *                   客户端收到数据包时为 {@code null}。
+     * @param mainThread 客户端上把任务交给主线程的方式。
+     * @param handler    处理逻辑。
+     */
+    static void dispatch(RegisteredPacket<?> registered, IPacket packet, Connection sender, Executor mainThread, Runnable handler) {
+        long receivedAt = System.nanoTime();
+        switch (registered.info().execution()) {
+            case MAIN_THREAD -> executeOnMainThread(registered, packet, sender, mainThread, handler, receivedAt);
+            case NETWORK_THREAD -> {
+                try {
+                    execute(registered, packet, handler, receivedAt);
+                } catch (Throwable t) {
+                    NetworkHelperMod.LOGGER.error("Error while executing packet {} on the network thread", registered.packetClass().getSimpleName(), t);
+                }
             }
+            case WORKER_POOL -> {
+                if (!PacketWorkerPool.tryExecute(() -> execute(registered, packet, handler, receivedAt))) {
+                    // 工作线程池已满：这类数据包本身是线程安全的，退回到主线程执行总比丢弃它要好。
+                    NetworkHelperMod.LOGGER.warn("Packet worker pool is saturated, executing {} on the main thread instead.", registered.packetClass().getSimpleName());
+                    executeOnMainThread(registered, packet, sender, mainThread, handler, receivedAt);
+                }
+            }
+        }
+    }
+
+    /**
+     * 在主线程上执行数据包。服务端收到的数据包进入 {@link PacketHandlerQueue}，在每 tick 的时间预算内公平地执行；
+     * 客户端收到的数据包仍然交给 {@code enqueueWork}。
+     */
+    private static void executeOnMainThread(RegisteredPacket<?> registered, IPacket packet, Connection sender, Executor mainThread, Runnable handler, long receivedAt) {
+        if (sender != null) {
+            PacketHandlerQueue.enqueue(sender, registered, packet, () -> execute(registered, packet, handler, receivedAt));
+        } else {
+            mainThread.execute(() -> execute(registered, packet, handler, receivedAt));
+        }
+    }
+
+    /**
+     * 执行数据包的处理逻辑，并记录它在队列中等待的时间和执行耗时。执行完毕后，启用了实例池的数据包会被归还。
+     */
+    private static void execute(RegisteredPacket<?> registered, IPacket packet, Runnable handler, long receivedAt) {
+        long start = System.nanoTime();
+        try {
+            handler.run();
+        } finally {
+            registered.stats().recordHandler(start - receivedAt, System.nanoTime() - start);
+            registered.release(packet);
+        }
+    }
+
+    /**
+     * 为一个模组启用每 tick 批量发送。
+     * <p>
+     * 启用后，该模组通过 {@link #sendToPlayer}、{@link #sendToAllPlayers} 等服务端发送方法发出的数据包不会立即发出，
+     * 而是按连接缓存起来，在服务端 tick 结束时合并为一个批量帧发送。接收方会按原始顺序拆分并处理每个数据包。
+     * 这适用于每 tick 向每个玩家发送大量小数据包的场景。可以在数据包注册之前或之后调用。
+     *
+     * @param modID 模组ID。
+     */
+    public static void enableBatching(String modID) {
+        PacketSender.enableBatching(modID);
+    }
+
+    /**
+     * 服务端 tick 事件的监听器，由 {@link NetworkHelperMod} 注册到 Forge 事件总线上。
+     * 在 tick 结束时先在预算内执行排队中的数据包处理逻辑，再发出本 tick 内合并后的数据包和排队的所有批量帧，
+     * 这样处理逻辑中发出的回复也能赶上同一个批量帧。最后发出分片，它们总是排在同一个 tick 内更早加入批量帧的数据包之后。
+     *
+     * @param event 服务端 tick 事件。
+     */
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        PacketHandlerQueue.drain();
+        PacketCoalescer.flushAll();
+        PacketBatcher.flushAll();
+        PacketStreamer.drainAll();
+    }
+
+    /**
+     * 玩家登录事件的监听器，由 {@link NetworkHelperMod} 注册到 Forge 事件总线上。
+     * 如果有数据包启用了 {@link PacketInfo#rateLimit()}，为玩家的连接安装速率限制。
+     *
+     * @param event 玩家登录事件。
+     */
+    public static void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            PacketRateLimiter.install(player);
+            onlinePlayers.add(player);
+        }
+    }
+
+    /**
+     * 玩家登出事件的监听器，由 {@link NetworkHelperMod} 注册到 Forge 事件总线上。
+     * 发往该玩家、还在等待响应的请求以异常完成。
+     *
+     * @param event 玩家登出事件。
+     */
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            onlinePlayers.remove(player);
+            PacketRequests.failAll(player.connection.connection);
         }
     }
 
     /**
-     * 真正调用 Forge 的 {@link SimpleChannel#registerMessage} 的核心内部方法。
-     * 它封装了消息处理逻辑，以确保数据包在主游戏线程上被处理。
+     * 客户端断开连接事件的监听器，只会在客户端注册。丢弃所有尚未拼装完成的分片，
+     * 发往服务端、还在等待响应的请求以异常完成。
      *
-     * @param simpleChannel 要注册的通道。
-     * @param packetClass   数据包的类。
-     * @param packetId      此数据包的唯一ID。
-     * @param decoder       用于从缓冲区解码数据包的函数。
-     * @param direction     本次注册对应的网络方向。
-     * @param <T>           数据包的类型。
+     * @param event 客户端断开连接事件。
      */
-    private static <T extends IPacket> void registerInternal(SimpleChannel simpleChannel, Class<T> packetClass, int packetId, Function<FriendlyByteBuf, T> decoder, Optional<NetworkDirection> direction) {
-        simpleChannel.registerMessage(packetId,
-                packetClass,
-                IPacket::encode, // 编码方法引用
-                decoder,         // 解码方法引用
-                (packet, context) -> {
-                    // 这个 lambda 表达式（消费者）负责处理接收到的数据包。
-                    // 我们将数据包的执行逻辑放入任务队列，以确保它在主游戏线程上运行，
-                    // 这对于与游戏世界的大多数交互来说是至关重要的（线程安全）。
-                    context.get().enqueueWork(() -> packet.execute(context.get()));
-                    context.get().setPacketHandled(true);
-                },
-                direction
-        );
+    public static void onClientLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+        PacketFragment.clearIncoming();
+        PacketRequests.failAll(null);
     }
 
     /**
      * 从客户端向服务端发送一个数据包。
+     * 客户端发出的数据包不会被分片，编码后的大小受原版自定义负载 32767 字节的限制。
      *
      * @param modID  应使用哪个模组的通道。
      * @param packet 要发送的数据包实例。
      * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
      */
     public static void sendToServer(String modID, IPacket packet) {
-        SimpleChannel channel = getChannel(modID);
-        if (channel == null) {
-            throw new IllegalArgumentException("No channel found for modID: " + modID);
-        }
-        channel.sendToServer(packet);
+        ModChannel channel = requireChannel(modID);
+        channel.get(packet).stats().recordSent(1);
+        PacketDistributor.SERVER.noArg().send(channel.toServerPacket(channel.encodeFrame(packet)));
+    }
+
+    /**
+     * 从客户端向服务端发送一个请求，使用配置中的默认超时时间，并在客户端主线程上完成返回的 {@code CompletableFuture}。
+     *
+     * @see #sendRequest(String, IRequest, Duration, Executor)
+     */
+    public static <R extends IPacket> CompletableFuture<R> sendRequest(String modID, IRequest<R> request) {
+        return sendRequest(modID, request, defaultRequestTimeout(), LogicalSidedProvider.WORKQUEUE.get(LogicalSide.CLIENT));
+    }
+
+    /**
+     * 从客户端向服务端发送一个请求。请求立即发出，不需要等待之前的请求得到响应，
+     * 因此可以在同一个 tick 内连续发出多个请求，它们的响应可能以任意顺序到达。
+     * 与 {@link #sendToServer} 一样，编码后的大小受原版自定义负载 32767 字节的限制。
+     *
+     * @param modID    应使用哪个模组的通道。
+     * @param request  要发送的请求。
+     * @param timeout  等待响应的最长时间，超时后返回的 {@code CompletableFuture} 以 {@link java.util.concurrent.TimeoutException} 完成。
+     * @param executor 在哪个执行器上完成返回的 {@code CompletableFuture}。
+     * @return 收到响应时完成的 {@code CompletableFuture}。对方处理请求时抛出异常、连接断开时以 {@link IllegalStateException} 完成。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     */
+    public static <R extends IPacket> CompletableFuture<R> sendRequest(String modID, IRequest<R> request, Duration timeout, Executor executor) {
+        return PacketRequests.send(requireChannel(modID), null, request, timeout, executor);
+    }
+
+    /**
+     * 从服务端向一个特定的玩家发送一个请求，使用配置中的默认超时时间，并在服务端主线程上完成返回的 {@code CompletableFuture}。
+     *
+     * @see #sendRequest(String, ServerPlayer, IRequest, Duration, Executor)
+     */
+    public static <R extends IPacket> CompletableFuture<R> sendRequest(String modID, ServerPlayer player, IRequest<R> request) {
+        return sendRequest(modID, player, request, defaultRequestTimeout(), LogicalSidedProvider.WORKQUEUE.get(LogicalSide.SERVER));
+    }
+
+    /**
+     * 从服务端向一个特定的玩家发送一个请求。请求立即发出，不参与批量发送、分片和出站优先级调度。
+     *
+     * @param modID    应使用哪个模组的通道。
+     * @param player   接收请求的玩家。
+     * @param request  要发送的请求。
+     * @param timeout  等待响应的最长时间，超时后返回的 {@code CompletableFuture} 以 {@link java.util.concurrent.TimeoutException} 完成。
+     * @param executor 在哪个执行器上完成返回的 {@code CompletableFuture}。
+     * @return 收到响应时完成的 {@code CompletableFuture}。对方处理请求时抛出异常、玩家断开连接时以 {@link IllegalStateException} 完成。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     */
+    public static <R extends IPacket> CompletableFuture<R> sendRequest(String modID, ServerPlayer player, IRequest<R> request, Duration timeout, Executor executor) {
+        return PacketRequests.send(requireChannel(modID), player.connection.connection, request, timeout, executor);
+    }
+
+    private static Duration defaultRequestTimeout() {
+        return Duration.ofMillis(NetworkHelperConfig.REQUEST_TIMEOUT_MILLIS.get());
     }
 
     /**
      * 从服务端向一个特定的玩家发送数据包。
+     * 编码后超过分片阈值的数据包会在之后的几个 tick 内分片发出，见 {@link PacketStreamer}。
      *
      * @param modID  应使用哪个模组的通道。
      * @param player 接收数据包的玩家。
@@ -172,37 +427,149 @@ public class PacketManager {
      * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
      */
     public static void sendToPlayer(String modID, ServerPlayer player, IPacket packet) {
-        SimpleChannel channel = getChannel(modID);
-        if (channel == null) {
-            throw new IllegalArgumentException("No channel found for modID: " + modID);
-        }
-        channel.send(PacketDistributor.PLAYER.with(() -> player), packet);
+        PacketSender.sendToPlayers(requireChannel(modID), packet, List.of(player));
     }
 
     /**
      * 从服务端向所有当前连接的玩家广播一个数据包。
+     * 数据包只会被编码一次，然后发送给每个玩家。
      *
      * @param modID  应使用哪个模组的通道。
      * @param packet 要发送的数据包实例。
      * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
      */
     public static void sendToAllPlayers(String modID, IPacket packet) {
-        SimpleChannel channel = getChannel(modID);
-        if (channel == null) {
-            throw new IllegalArgumentException("No channel found for modID: " + modID);
+        PacketSender.sendToPlayers(requireChannel(modID), packet, ServerLifecycleHooks.getCurrentServer().getPlayerList().getPlayers());
+    }
+
+    /**
+     * 从服务端向一个特定的玩家异步发送数据包。可以在任意线程上调用。
+     * <p>
+     * 数据包在工作线程池上编码，不占用调用线程的时间，适合较大的 {@link EasyPacket}。调用后数据包实例就交给了发送过程，
+     * 在返回的 {@code CompletableFuture} 完成之前不能再修改它。发往同一个玩家的数据包（无论同步还是异步）总是按调用顺序写出。
+     *
+     * @param modID  应使用哪个模组的通道。
+     * @param player 接收数据包的玩家。
+     * @param packet 要发送的数据包实例。它不会被复制，在返回的 {@code CompletableFuture} 完成之前调用方不能再修改它，
+     *               否则编码时可能读到修改了一半的内容。
+     * @return 数据包编码完成并交给连接之后完成的 {@code CompletableFuture}；编码失败时以异常完成。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     */
+    public static CompletableFuture<Void> sendToPlayerAsync(String modID, ServerPlayer player, IPacket packet) {
+        return PacketAsyncSender.sendToPlayers(requireChannel(modID), packet, List.of(player));
+    }
+
+    /**
+     * 从服务端向所有当前连接的玩家异步广播数据包。数据包只会在工作线程池上编码一次。可以在任意线程上调用，
+     * 目标玩家是调用时已经完成登录、还没有登出的玩家。
+     *
+     * @param modID  应使用哪个模组的通道。
+     * @param packet 要发送的数据包实例。它不会被复制，在返回的 {@code CompletableFuture} 完成之前调用方不能再修改它，
+     *               否则编码时可能读到修改了一半的内容。
+     * @return 数据包编码完成并交给所有连接之后完成的 {@code CompletableFuture}；编码失败时以异常完成。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     * @see #sendToPlayerAsync
+     */
+    public static CompletableFuture<Void> sendToAllPlayersAsync(String modID, IPacket packet) {
+        return PacketAsyncSender.sendToPlayers(requireChannel(modID), packet, List.copyOf(onlinePlayers));
+    }
+
+    /**
+     * 向所有加载了某个区块的玩家发送一个数据包。数据包只会被编码一次。
+     *
+     * @param modID  应使用哪个模组的通道。
+     * @param level  区块所在的世界。
+     * @param pos    区块坐标。
+     * @param packet 要发送的数据包实例。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     */
+    public static void sendToTrackingChunk(String modID, ServerLevel level, ChunkPos pos, IPacket packet) {
+        PacketSender.sendToPlayers(requireChannel(modID), packet, level.getChunkSource().chunkMap.getPlayers(pos, false));
+    }
+
+    /**
+     * 向所有正在追踪某个实体的玩家发送一个数据包。数据包只会被编码一次。
+     * <p>
+     * 目标玩家是加载了实体所在区块、处于该实体类型的追踪范围内并且实体对其可见的玩家，
+     * 与原版实体追踪的判定条件一致。实体自身（如果是玩家）不包括在内。
+     *
+     * @param modID  应使用哪个模组的通道。
+     * @param entity 被追踪的实体。
+     * @param packet 要发送的数据包实例。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     */
+    public static void sendToTrackingEntity(String modID, Entity entity, IPacket packet) {
+        if (!(entity.level() instanceof ServerLevel level)) {
+            throw new IllegalArgumentException("Entity " + entity + " is not in a server level");
         }
-        channel.send(PacketDistributor.ALL.noArg(), packet);
+        double range = entity.getType().clientTrackingRange() * 16.0;
+        List<ServerPlayer> players = new ArrayList<>();
+        for (ServerPlayer player : level.getChunkSource().chunkMap.getPlayers(entity.chunkPosition(), false)) {
+            double dx = player.getX() - entity.getX();
+            double dz = player.getZ() - entity.getZ();
+            if (player != entity && dx * dx + dz * dz <= range * range && entity.broadcastToPlayer(player)) {
+                players.add(player);
+            }
+        }
+        PacketSender.sendToPlayers(requireChannel(modID), packet, players);
     }
 
     /**
-     * 获取与给定模组ID关联的 {@link SimpleChannel}。
-     * 这在处理一些此帮助类未覆盖的高级网络场景时可能会很有用。
+     * 向某个世界中位于指定半径内的所有玩家发送一个数据包。数据包只会被编码一次。
+     *
+     * @param modID  应使用哪个模组的通道。
+     * @param level  目标世界。
+     * @param x      中心点 X 坐标。
+     * @param y      中心点 Y 坐标。
+     * @param z      中心点 Z 坐标。
+     * @param radius 半径（方块）。
+     * @param packet 要发送的数据包实例。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     */
+    public static void sendToPlayersNear(String modID, ServerLevel level, double x, double y, double z, double radius, IPacket packet) {
+        List<ServerPlayer> players = new ArrayList<>();
+        for (ServerPlayer player : level.players()) {
+            if (player.distanceToSqr(x, y, z) <= radius * radius) {
+                players.add(player);
+            }
+        }
+        PacketSender.sendToPlayers(requireChannel(modID), packet, players);
+    }
+
+    /**
+     * 向某个维度中的所有玩家发送一个数据包。数据包只会被编码一次。
+     *
+     * @param modID     应使用哪个模组的通道。
+     * @param dimension 目标维度。
+     * @param packet    要发送的数据包实例。
+     * @throws IllegalArgumentException 如果没有为给定的 modID 找到注册的通道。
+     */
+    public static void sendToDimension(String modID, ResourceKey<Level> dimension, IPacket packet) {
+        ServerLevel level = ServerLifecycleHooks.getCurrentServer().getLevel(dimension);
+        if (level != null) {
+            PacketSender.sendToPlayers(requireChannel(modID), packet, level.players());
+        }
+    }
+
+    /**
+     * 获取与给定模组ID关联的 {@link EventNetworkChannel}。
+     * 这在处理一些此帮助类未覆盖的高级网络场景时可能会很有用。注意通道上的负载已经由本管理器处理，
+     * 直接通过它发送的负载必须遵循 {@link ModChannel} 的帧格式。
      *
      * @param modID 模组的ID。
-     * @return 对应的 {@link SimpleChannel}，如果未找到则返回 {@code null}。
+     * @return 对应的 {@link EventNetworkChannel}，如果未找到则返回 {@code null}。
      */
-    public static SimpleChannel getChannel(String modID) {
-        return channels.get(modID);
+    public static EventNetworkChannel getChannel(String modID) {
+        ModChannel channel = channels.get(modID);
+        return channel == null ? null : channel.eventChannel();
+    }
+
+    private static ModChannel requireChannel(String modID) {
+        ModChannel channel = channels.get(modID);
+        if (channel == null) {
+            throw new IllegalArgumentException("No channel found for modID: " + modID);
+        }
+        return channel;
     }
 }
 
@@ -0,0 +1,88 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有数据包类型的 {@link PacketStats} 的登记处。
+ * <p>
+ * 每个数据包类型在注册时得到自己的统计对象，并被导出为一个 MBean（见 {@link PacketStatsMXBean}）。
+ * 一个守护线程每秒对所有统计采样一次，为 {@code /networkhelper stats} 命令和 MBean 提供实时速率。
+ */
+public final class PacketMetrics {
+
+    private static final List<PacketStats> all = new CopyOnWriteArrayList<>();
+
+    private static ScheduledExecutorService sampler;
+
+    private PacketMetrics() {}
+
+    /**
+     * 为一个数据包类型创建统计对象，并导出为 MBean。导出失败只会记录警告。
+     */
+    static synchronized PacketStats register(String modID, Class<?> packetClass) {
+        PacketStats stats = new PacketStats(modID, packetClass);
+        all.add(stats);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.mx_wj.networkHelper:type=PacketStats,channel=" + ObjectName.quote(modID) + ",packet=" + ObjectName.quote(packetClass.getName()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(stats, name);
+            }
+        } catch (JMException | SecurityException e) {
+            NetworkHelperMod.LOGGER.warn("Failed to export network metrics for {} over JMX", packetClass.getName(), e);
+        }
+        if (sampler == null) {
+            sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "NetworkHelper Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sampler.scheduleAtFixedRate(PacketMetrics::sampleAll, 1, 1, TimeUnit.SECONDS);
+        }
+        return stats;
+    }
+
+    private static void sampleAll() {
+        for (PacketStats stats : all) {
+            stats.sample();
+        }
+    }
+
+    /**
+     * @return 所有已注册数据包类型的统计，按注册顺序排列。
+     */
+    public static List<PacketStats> getAll() {
+        return List.copyOf(all);
+    }
+
+    /**
+     * @return 某个模组的所有数据包类型的统计。
+     */
+    public static List<PacketStats> getChannel(String modID) {
+        List<PacketStats> result = new ArrayList<>();
+        for (PacketStats stats : all) {
+            if (stats.getChannel().equals(modID)) {
+                result.add(stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 所有注册过数据包的模组ID。
+     */
+    public static List<String> getChannels() {
+        return all.stream().map(PacketStats::getChannel).distinct().toList();
+    }
+}
@@ -0,0 +1,182 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.IPooledPacket;
+import com.mx_wj.networkHelper.network.core.info.Pooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 一个 {@link Pooled} 数据包类型的实例池，同时也是它的解码器。
+ * <p>
+ * 数据包通常在 Netty 线程上解码，却在主线程或工作线程上执行并归还，因此实例总是在线程之间单向流动。
+ * 每个平台线程有一个无锁的本地缓存，归还时优先放入当前线程的缓存；缓存满了以后放入一个有界的共享池，
+ * 取出时先查本地缓存，再查共享池，都为空时才创建新实例。稳定状态下，主线程的缓存是满的，
+ * 归还的实例经由共享池回到 Netty 线程，整个过程不分配任何对象。池满时多余的实例直接交给 GC。
+ * <p>
+ * 虚拟线程（Java 21 起 {@link PacketWorkerPool} 为每个任务创建一个）不使用本地缓存：它们只存在一个任务的时间，
+ * 为它们创建的缓存在任务结束后就被丢弃，放进去的实例也不会再被取出。因此在虚拟线程上取出和归还都直接使用共享池。
+ * <p>
+ * 启动参数 {@code -Dnetworkhelper.pool.leakDetection=true} 启用泄漏检测：为每个取出的实例记录取出时的调用栈，
+ * 超过 {@link #LEAK_TIMEOUT_NANOS} 仍未归还的实例会被报告；重复归还、归还不是从池中取出的实例也会被报告，
+ * 并且这样的实例不会进入池中。检测的开销很大，只应该在开发时启用。
+ *
+ * @param <T> 数据包的类型，必须实现 {@link IPooledPacket}。
+ */
+final class PacketPool<T extends IPacket> implements Function<FriendlyByteBuf, T> {
+
+    static final boolean LEAK_DETECTION = Boolean.getBoolean("networkhelper.pool.leakDetection");
+
+    private static final long LEAK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long LEAK_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * Java 21 的 {@code Thread.isVirtual()}。模组以 Java 17 为目标编译，因此通过反射获取；更早的版本中没有虚拟线程，为 {@code null}。
+     */
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    private final Class<T> packetClass;
+    private final Supplier<T> factory;
+    private final int capacity;
+    private final ThreadLocal<ArrayDeque<T>> local;
+    private final ArrayBlockingQueue<T> shared;
+
+    /**
+     * 泄漏检测启用时，记录每个已取出、尚未归还的实例；否则为 {@code null}。
+     */
+    private final Map<T, Lease> leases;
+    private volatile long lastLeakCheck = System.nanoTime();
+
+    private record Lease(long acquiredAt, String thread, Throwable site) {
+    }
+
+    /**
+     * @param packetClass 数据包类，必须实现 {@link IPooledPacket} 并有一个公共的无参构造函数。
+     * @param capacity    每个线程的缓存容量，也是共享池的容量。
+     */
+    PacketPool(Class<T> packetClass, int capacity) {
+        if (!IPooledPacket.class.isAssignableFrom(packetClass)) {
+            throw new IllegalArgumentException("@Pooled packet " + packetClass.getSimpleName() + " must implement IPooledPacket.");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("@Pooled capacity of " + packetClass.getSimpleName() + " must be positive.");
+        }
+        this.packetClass = packetClass;
+        this.factory = ASMUtil.createFactory(packetClass);
+        this.capacity = capacity;
+        this.local = ThreadLocal.withInitial(() -> new ArrayDeque<>(capacity));
+        this.shared = new ArrayBlockingQueue<>(capacity);
+        this.leases = LEAK_DETECTION ? Collections.synchronizedMap(new IdentityHashMap<>()) : null;
+    }
+
+    /**
+     * 取出一个实例并用缓冲区中的内容填充它。解码失败时实例会被直接归还。
+     */
+    @Override
+    public T apply(FriendlyByteBuf buf) {
+        T packet = acquire();
+        try {
+            ((IPooledPacket) packet).decode(buf);
+        } catch (Throwable t) {
+            release(packet);
+            throw t;
+        }
+        return packet;
+    }
+
+    T acquire() {
+        T packet = isVirtualThread() ? null : local.get().pollFirst();
+        if (packet == null) {
+            packet = shared.poll();
+        }
+        if (packet == null) {
+            packet = factory.get();
+        }
+        if (leases != null) {
+            track(packet);
+        }
+        return packet;
+    }
+
+    /**
+     * 重置一个实例并放回池中。在数据包执行完毕后由 {@link PacketManager} 调用，调用方之后不能再使用这个实例。
+     */
+    void release(T packet) {
+        if (leases != null && leases.remove(packet) == null) {
+            NetworkHelperMod.LOGGER.error("A pooled {} was released twice, or was not acquired from its pool", packetClass.getSimpleName(), new IllegalStateException("Released here"));
+            return;
+        }
+        try {
+            ((IPooledPacket) packet).reset();
+        } catch (Throwable t) {
+            NetworkHelperMod.LOGGER.error("Error while resetting pooled packet {}, discarding it", packetClass.getSimpleName(), t);
+            return;
+        }
+        if (!isVirtualThread()) {
+            ArrayDeque<T> cache = local.get();
+            if (cache.size() < capacity) {
+                cache.addFirst(packet);
+                return;
+            }
+        }
+        shared.offer(packet);
+    }
+
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static boolean isVirtualThread() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private void track(T packet) {
+        long now = System.nanoTime();
+        leases.put(packet, new Lease(now, Thread.currentThread().getName(), new Throwable("Acquired here")));
+        if (now - lastLeakCheck >= LEAK_CHECK_INTERVAL_NANOS) {
+            lastLeakCheck = now;
+            reportLeaks(now);
+        }
+    }
+
+    /**
+     * 报告并忘记所有超时未归还的实例。它们可能在执行前被丢弃了（例如发送方已经断开连接），也可能仍被处理逻辑持有。
+     */
+    private void reportLeaks(long now) {
+        synchronized (leases) {
+            Iterator<Lease> iterator = leases.values().iterator();
+            while (iterator.hasNext()) {
+                Lease lease = iterator.next();
+                if (now - lease.acquiredAt() > LEAK_TIMEOUT_NANOS) {
+                    iterator.remove();
+                    NetworkHelperMod.LOGGER.warn("A pooled {} acquired on thread {} was not returned within {} seconds",
+                            packetClass.getSimpleName(), lease.thread(), TimeUnit.NANOSECONDS.toSeconds(LEAK_TIMEOUT_NANOS), lease.site());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.RateLimit;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.protocol.game.ServerboundCustomPayloadPacket;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端对客户端数据包的每玩家速率限制，见 {@link RateLimit}。
+ * <p>
+ * 玩家登录时，一个这样的处理器被插入到它的连接的 Netty 管线中，位于原版的 {@code packet_handler} 之前。
+ * 它只查看发往启用了限制的通道的自定义负载：读取负载所携带的数据包ID（请求中的数据包同样计入）和负载长度，
+ * 检查该数据包类型的令牌桶，超出限制的负载在到达 Forge 之前就被丢弃，因此不会被解码。
+ * <p>
+ * 处理器及其中的所有令牌桶都只在连接的事件循环上访问，不需要任何同步。
+ */
+final class PacketRateLimiter extends ChannelInboundHandlerAdapter {
+
+    static final String HANDLER_NAME = "networkhelper:rate_limiter";
+
+    /**
+     * 同一个连接的警告日志之间的最小间隔。
+     */
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * 至少有一个数据包启用了速率限制的通道，按通道名称索引。
+     */
+    private static final Map<ResourceLocation, ModChannel> limitedChannels = new ConcurrentHashMap<>();
+
+    private final ServerPlayer player;
+    private final Map<ModChannel, Limit[]> limits = new HashMap<>();
+    private boolean kicked;
+    private long lastLog;
+    private boolean logged;
+
+    /**
+     * 一个数据包类型的数量桶和字节桶，未限制的一项为 {@code null}。
+     */
+    private record Limit(TokenBucket packets, TokenBucket bytes) {
+        static Limit of(RateLimit spec, long now) {
+            TokenBucket packets = spec.packetsPerSecond() > 0
+                    ? new TokenBucket(spec.packetsPerSecond(), spec.burstPackets() > 0 ? spec.burstPackets() : spec.packetsPerSecond(), now)
+                    : null;
+            TokenBucket bytes = spec.bytesPerSecond() > 0
+                    ? new TokenBucket(spec.bytesPerSecond(), spec.burstBytes() > 0 ? spec.burstBytes() : spec.bytesPerSecond(), now)
+                    : null;
+            return new Limit(packets, bytes);
+        }
+
+        /**
+         * 两个桶都有足够的令牌时才同时取出，被拒绝的负载不消耗任何一个桶。
+         */
+        boolean tryAcquire(long now, int length) {
+            if ((packets != null && !packets.canAcquire(now, 1)) || (bytes != null && !bytes.canAcquire(now, length))) {
+                return false;
+            }
+            if (packets != null) {
+                packets.tryAcquire(now, 1);
+            }
+            if (bytes != null) {
+                bytes.tryAcquire(now, length);
+            }
+            return true;
+        }
+    }
+
+    private PacketRateLimiter(ServerPlayer player) {
+        this.player = player;
+    }
+
+    /**
+     * 如果通道上有启用了速率限制的数据包，就记录这个通道。在通道的所有数据包注册完成后调用。
+     */
+    static void register(ModChannel channel) {
+        for (RegisteredPacket<?> packet : channel.packets()) {
+            if (packet.rateLimited()) {
+                limitedChannels.put(channel.name(), channel);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 为刚登录的玩家安装处理器。单人游戏的内存连接不受限制。
+     */
+    static void install(ServerPlayer player) {
+        Connection connection = player.connection.connection;
+        if (limitedChannels.isEmpty() || connection.isMemoryConnection()) {
+            return;
+        }
+        ChannelPipeline pipeline = connection.channel().pipeline();
+        if (pipeline.get(HANDLER_NAME) == null && pipeline.get("packet_handler") != null) {
+            pipeline.addBefore("packet_handler", HANDLER_NAME, new PacketRateLimiter(player));
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof ServerboundCustomPayloadPacket payload && !allow(payload)) {
+            // 负载不会再被任何人读取，由我们释放。
+            payload.getData().release();
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    private boolean allow(ServerboundCustomPayloadPacket payload) {
+        ModChannel channel = limitedChannels.get(payload.getIdentifier());
+        if (channel == null) {
+            return true;
+        }
+        if (kicked) {
+            return false;
+        }
+        FriendlyByteBuf data = payload.getData();
+        if (!data.isReadable()) {
+            return true;
+        }
+        RegisteredPacket<?> type = channel.get(ModChannel.peekPacketId(data));
+        if (type == null || !type.rateLimited()) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        Limit[] channelLimits = limits.computeIfAbsent(channel, c -> new Limit[c.idLimit()]);
+        Limit limit = channelLimits[type.id()];
+        if (limit == null) {
+            limit = Limit.of(type.info().rateLimit(), now);
+            channelLimits[type.id()] = limit;
+        }
+        if (limit.tryAcquire(now, data.readableBytes())) {
+            return true;
+        }
+
+        type.stats().recordRateLimited();
+        String packetName = type.packetClass().getSimpleName();
+        switch (type.info().rateLimit().action()) {
+            case LOG -> {
+                if (shouldLog(now)) {
+                    NetworkHelperMod.LOGGER.warn("Player {} exceeded the rate limit of {}", player.getGameProfile().getName(), packetName);
+                }
+                return true;
+            }
+            case KICK -> {
+                kicked = true;
+                NetworkHelperMod.LOGGER.warn("Disconnecting player {} for exceeding the rate limit of {}", player.getGameProfile().getName(), packetName);
+                player.server.execute(() -> player.connection.disconnect(Component.literal("Sent too many " + packetName + " packets")));
+                return false;
+            }
+            default -> {
+                if (shouldLog(now)) {
+                    NetworkHelperMod.LOGGER.warn("Dropping {} from player {}, it exceeded its rate limit", packetName, player.getGameProfile().getName());
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 限制警告日志的频率，避免日志本身成为被滥用的对象。
+     */
+    private boolean shouldLog(long now) {
+        if (logged && now - lastLog < LOG_INTERVAL_NANOS) {
+            return false;
+        }
+        logged = true;
+        lastLog = now;
+        return true;
+    }
+}
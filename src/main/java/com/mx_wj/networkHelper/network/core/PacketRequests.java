@@ -0,0 +1,224 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.IRequest;
+import com.mx_wj.networkHelper.network.core.info.PacketPriority;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkDirection;
+import net.minecraftforge.network.NetworkEvent;
+import net.minecraftforge.network.PacketDistributor;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求/响应调用的发送与匹配。
+ * <p>
+ * 请求的线上格式为 {@code [VarInt REQUEST_ID][VarInt 关联ID][帧]}，响应为
+ * {@code [VarInt RESPONSE_ID][VarInt 关联ID][成功: true][帧]} 或 {@code [VarInt RESPONSE_ID][VarInt 关联ID][失败: false][UTF 错误类型]}，
+ * 其中帧是 {@link ModChannel#encodeFrame} 的输出。
+ * <p>
+ * 发往客户端的请求和响应与普通数据包一样交给 {@link PacketSender#dispatch}：按数据包的优先级排队，超过阈值时分片发出，
+ * 但不会进入批量帧。发往服务端的请求和响应直接发出，受原版自定义负载的大小限制。
+ * <p>
+ * 每个请求都有一个独立的关联ID，因此同一个连接上可以同时有任意多个请求在途，响应的到达顺序也不必与请求一致。
+ * 在途的请求在响应到达、超时、被调用方取消或连接断开时从表中移除。
+ */
+final class PacketRequests {
+
+    /**
+     * 请求在 {@link ModChannel} 上占用的保留ID。
+     */
+    static final int REQUEST_ID = 2;
+
+    /**
+     * 响应在 {@link ModChannel} 上占用的保留ID。
+     */
+    static final int RESPONSE_ID = 3;
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final Map<Integer, Call> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 每个请求类声明的响应类型，用于检查收到的响应。无法确定时为 {@link IPacket}。
+     */
+    private static final ClassValue<Class<?>> responseTypes = new ClassValue<>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Type generic : c.getGenericInterfaces()) {
+                    if (generic instanceof ParameterizedType parameterized && parameterized.getRawType() == IRequest.class) {
+                        Type argument = parameterized.getActualTypeArguments()[0];
+                        if (argument instanceof Class<?> response) {
+                            return response;
+                        }
+                        if (argument instanceof ParameterizedType response && response.getRawType() instanceof Class<?> raw) {
+                            return raw;
+                        }
+                    }
+                }
+            }
+            return IPacket.class;
+        }
+    };
+
+    /**
+     * 一个在途的请求。
+     *
+     * @param channel      请求所在的通道，响应必须来自同一个通道。
+     * @param connection   请求发往的连接；客户端发往服务端的请求为 {@code null}。
+     * @param name         请求的类名，用于错误信息。
+     * @param responseType 期望的响应类型。
+     * @param future       收到响应时完成。
+     */
+    private record Call(ModChannel channel, Connection connection, String name, Class<?> responseType, CompletableFuture<IPacket> future) {}
+
+    private PacketRequests() {}
+
+    /**
+     * 发出一个请求。
+     *
+     * @param channel    请求所在的通道。
+     * @param connection 服务端发出时为目标玩家的连接；客户端发往服务端时为 {@code null}。
+     * @param request    请求数据包。
+     * @param timeout    等待响应的最长时间，超时后返回的 {@code CompletableFuture} 以 {@link java.util.concurrent.TimeoutException} 完成。
+     * @param executor   在哪个执行器上完成返回的 {@code CompletableFuture}，无论成功还是失败。
+     */
+    @SuppressWarnings("unchecked")
+    static <R extends IPacket> CompletableFuture<R> send(ModChannel channel, Connection connection, IRequest<R> request, Duration timeout, Executor executor) {
+        RegisteredPacket<?> type = channel.get(request);
+        int requestId = nextId.getAndIncrement();
+        CompletableFuture<IPacket> future = new CompletableFuture<>();
+        Call call = new Call(channel, connection, type.packetClass().getSimpleName(), responseTypes.get(type.packetClass()), future);
+        pending.put(requestId, call);
+        future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((response, error) -> pending.remove(requestId, call));
+
+        CompletableFuture<R> result = new CompletableFuture<>();
+        future.whenCompleteAsync((response, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete((R) response);
+            }
+        }, executor);
+        // 调用方取消或提前完成返回的 CompletableFuture 时，不再等待响应。
+        result.whenComplete((response, error) -> future.cancel(false));
+
+        try {
+            FriendlyByteBuf payload = new FriendlyByteBuf(Unpooled.wrappedBuffer(envelope(REQUEST_ID, requestId), channel.encodeFrame(request)));
+            if (connection == null) {
+                PacketDistributor.SERVER.noArg().send(channel.toServerPacket(payload));
+            } else {
+                PacketSender.dispatch(connection, channel, payload, type.info().priority(), false);
+            }
+            type.stats().recordSent(1);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * 在请求的执行线程上调用 {@link IRequest#respond}，并把响应或错误发回请求方。
+     * 响应无法编码或发出时（例如超过了大小限制），请求方会收到一个错误响应，而不是一直等到超时。
+     */
+    static void respond(ModChannel channel, IRequest<?> request, int requestId, NetworkEvent.Context context) {
+        Connection connection = context.getNetworkManager();
+        boolean toClient = context.getDirection() == NetworkDirection.PLAY_TO_SERVER;
+        try {
+            IPacket response = request.respond(context);
+            if (response == null) {
+                throw new IllegalStateException("Request " + request.getClass().getSimpleName() + " returned no response");
+            }
+            RegisteredPacket<?> type = channel.get(response);
+            FriendlyByteBuf header = envelope(RESPONSE_ID, requestId);
+            header.writeBoolean(true);
+            FriendlyByteBuf payload = new FriendlyByteBuf(Unpooled.wrappedBuffer(header, channel.encodeFrame(response)));
+            send(channel, connection, toClient, payload, type.info().priority());
+            type.stats().recordSent(1);
+        } catch (RuntimeException e) {
+            NetworkHelperMod.LOGGER.error("Error while responding to request {}", request.getClass().getSimpleName(), e);
+            // 只发回异常的类型，详细信息留在接收方的日志中。
+            FriendlyByteBuf payload = envelope(RESPONSE_ID, requestId);
+            payload.writeBoolean(false);
+            payload.writeUtf(e.getClass().getSimpleName());
+            send(channel, connection, toClient, payload, channel.get(request).info().priority());
+        }
+    }
+
+    /**
+     * 把响应发回请求方所在的连接。
+     */
+    private static void send(ModChannel channel, Connection connection, boolean toClient, FriendlyByteBuf payload, PacketPriority priority) {
+        if (toClient) {
+            // 批量帧中只能是普通数据包的帧，因此请求和响应不进入批量帧。
+            PacketSender.dispatch(connection, channel, payload, priority, false);
+        } else {
+            connection.send(channel.toServerPacket(payload));
+        }
+    }
+
+    /**
+     * 在网络线程上处理一个响应，完成对应的请求。负载开头的ID已经被读取。
+     * 已经超时或取消的请求的响应，以及来自错误连接或通道的响应会被忽略。
+     */
+    static void receive(ModChannel channel, FriendlyByteBuf payload, NetworkEvent.Context context) {
+        boolean toClient = context.getDirection() == NetworkDirection.PLAY_TO_CLIENT;
+        int requestId = payload.readVarInt();
+        Call call = pending.get(requestId);
+        Connection expected = toClient ? null : context.getNetworkManager();
+        if (call == null || call.channel() != channel || call.connection() != expected) {
+            NetworkHelperMod.LOGGER.debug("Ignoring response to unknown request {} on channel {}", requestId, channel.name());
+            return;
+        }
+        if (!payload.readBoolean()) {
+            call.future().completeExceptionally(new IllegalStateException("Request " + call.name() + " failed on the remote side: " + payload.readUtf()));
+            return;
+        }
+        RegisteredPacket<?> type = channel.accept(payload.readVarInt(), toClient);
+        if (type == null) {
+            call.future().completeExceptionally(new IllegalStateException("Response to request " + call.name() + " was sent in the wrong direction"));
+            return;
+        }
+        IPacket response = type.decode(payload);
+        if (!call.responseType().isInstance(response)) {
+            type.release(response);
+            call.future().completeExceptionally(new IllegalStateException("Request " + call.name() + " expected a " + call.responseType().getSimpleName() + " but got a " + type.packetClass().getSimpleName()));
+            return;
+        }
+        call.future().complete(response);
+    }
+
+    /**
+     * 连接断开时，让发往这个连接的所有在途请求以异常完成。
+     *
+     * @param connection 断开的连接；客户端断开与服务端的连接时为 {@code null}。
+     */
+    static void failAll(Connection connection) {
+        for (Call call : pending.values()) {
+            if (call.connection() == connection) {
+                call.future().completeExceptionally(new IllegalStateException("Connection closed before request " + call.name() + " was answered"));
+            }
+        }
+    }
+
+    /**
+     * @return 写好了ID和关联ID的负载头部，调用方可以继续写入，帧不会被复制到其中。
+     */
+    private static FriendlyByteBuf envelope(int id, int requestId) {
+        FriendlyByteBuf payload = new FriendlyByteBuf(Unpooled.buffer(16));
+        payload.writeVarInt(id);
+        payload.writeVarInt(requestId);
+        return payload;
+    }
+}
@@ -0,0 +1,239 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.forgespi.language.IModFileInfo;
+import net.minecraftforge.forgespi.language.IModInfo;
+import net.minecraftforge.forgespi.language.ModFileScanData;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 在启动阶段查找所有模组中的数据包类。
+ * <p>
+ * 每个模组 JAR 的处理方式：
+ * <ul>
+ * <li>如果 JAR 中带有编译期生成的数据包索引（见 {@link PacketIndex}），直接按索引加载，并检查索引是否过期；</li>
+ * <li>否则使用 Forge 已经解析好的 {@link ModFileScanData#getAnnotations()}，只挑出带有 {@link PacketInfo} 的类。</li>
+ * </ul>
+ * 两种方式都不需要遍历 JAR 中的每一个类。各个模组之间互不相关，因此它们在一个 {@link ForkJoinPool} 中并行处理，
+ * 最后按模组ID和类名排序后再依次加入 {@link PacketManager} 的注册队列，以保证结果与并行调度无关。
+ */
+public final class PacketScanner {
+
+    private static final Type PACKET_INFO_TYPE = Type.getType(PacketInfo.class);
+
+    private PacketScanner() {}
+
+    /**
+     * 单个模组的扫描结果。
+     *
+     * @param modID   模组ID。
+     * @param packets 找到的数据包类，已经排好序。
+     * @param indexed 是否来自编译期索引。
+     * @param nanos   扫描该模组所用的时间（纳秒）。
+     */
+    private record ScanResult(String modID, List<Class<?>> packets, boolean indexed, long nanos) {}
+
+    /**
+     * 扫描所有已加载的模组，并把找到的数据包加入 {@link PacketManager} 的注册队列。
+     */
+    public static void scanAllMods() {
+        long start = System.nanoTime();
+
+        // 先在当前线程上挑出需要扫描的模组，这一步只读取模组元数据，开销很小。
+        List<ModFileScanData> candidates = new ArrayList<>();
+        List<String> modIDs = new ArrayList<>();
+        for (ModFileScanData modFileScanData : ModList.get().getAllScanData()) {
+            String modID = getModID(modFileScanData);
+            if (modID != null) {
+                candidates.add(modFileScanData);
+                modIDs.add(modID);
+            }
+        }
+
+        // 每个模组的扫描工作（读取索引或过滤注解、加载类）在 ForkJoinPool 中并行执行。
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        List<ScanResult> results;
+        try {
+            results = pool.submit(() -> IntStream.range(0, candidates.size())
+                    .parallel()
+                    .mapToObj(i -> scanMod(modIDs.get(i), candidates.get(i)))
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Packet scanning was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Packet scanning failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        // 合并阶段在当前线程上按模组ID排序，确保注册顺序是确定的。
+        List<ScanResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(ScanResult::modID));
+        int totalPackets = 0;
+        int indexedMods = 0;
+        for (ScanResult result : sorted) {
+            for (Class<?> packetClass : result.packets()) {
+                PacketManager.addToRegister(result.modID(), packetClass);
+            }
+            totalPackets += result.packets().size();
+            if (result.indexed()) {
+                indexedMods++;
+            }
+            if (!result.packets().isEmpty()) {
+                NetworkHelperMod.LOGGER.info("Finished scanning mod '{}' ({}). Found {} packets to register in {} ms.",
+                        result.modID(), result.indexed() ? "index" : "annotations", result.packets().size(), TimeUnit.NANOSECONDS.toMillis(result.nanos()));
+            } else {
+                NetworkHelperMod.LOGGER.debug("Scanned mod '{}' in {} ms, no packets found.", result.modID(), TimeUnit.NANOSECONDS.toMillis(result.nanos()));
+            }
+        }
+
+        NetworkHelperMod.LOGGER.info("Scanned {} mods ({} with packet index, {} by annotations) in {} ms using {} threads. Found {} packets.",
+                sorted.size(), indexedMods, sorted.size() - indexedMods, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                pool.getParallelism(), totalPackets);
+    }
+
+    /**
+     * 从扫描数据中提取模组信息来确定 modID。
+     * 一个 JAR 文件可能包含多个模组，这里我们简单地使用找到的第一个 modID。
+     *
+     * @return 模组ID；如果这不是一个我们关心的模组（例如，是原版或Forge），或者没有找到 modID，则返回 {@code null}。
+     */
+    private static String getModID(ModFileScanData modFileScanData) {
+        String modID = null;
+        for (IModFileInfo modFileInfo : modFileScanData.getIModInfoData()) {
+            for (IModInfo modInfo : modFileInfo.getMods()) {
+                String currentModID = modInfo.getModId();
+                // 过滤掉 Minecraft 本身和 Forge，因为我们不关心它们内部的类。
+                if (currentModID.equals("minecraft") || currentModID.equals("forge")) {
+                    return null;
+                }
+                modID = modID == null ? currentModID : modID;
+            }
+        }
+        return modID;
+    }
+
+    /**
+     * 扫描单个模组。这个方法会在 ForkJoinPool 的工作线程上执行。
+     */
+    private static ScanResult scanMod(String modID, ModFileScanData modFileScanData) {
+        long start = System.nanoTime();
+        // 优先读取编译期生成的数据包索引。
+        List<PacketIndex.Entry> index = readIndex(modFileScanData, modID);
+        List<Class<?>> packets = index != null ? loadIndexed(modID, index) : null;
+        boolean indexed = packets != null;
+        if (packets == null) {
+            // 没有可用的索引时，使用 Forge 在加载模组时已经收集好的注解数据，只挑出类上的 @PacketInfo。
+            // 使用 TreeSet 让结果按类名排序，与扫描顺序无关。
+            TreeSet<String> annotated = new TreeSet<>();
+            for (ModFileScanData.AnnotationData annotationData : modFileScanData.getAnnotations()) {
+                if (annotationData.targetType() == ElementType.TYPE && PACKET_INFO_TYPE.equals(annotationData.annotationType())) {
+                    annotated.add(annotationData.clazz().getClassName());
+                }
+            }
+            packets = new ArrayList<>();
+            for (String className : annotated) {
+                Class<?> packetClass = loadPacketClass(className);
+                if (packetClass != null) {
+                    NetworkHelperMod.LOGGER.debug("Found packet '{}', queueing for registration.", packetClass.getSimpleName());
+                    packets.add(packetClass);
+                }
+            }
+        }
+        return new ScanResult(modID, packets, indexed, System.nanoTime() - start);
+    }
+
+    /**
+     * 按索引加载数据包类，并用索引中的稳定ID和方向确认索引与编译出的类一致。
+     * 稳定ID必须依次为 0, 1, 2...，并且与类名顺序一致，因为 {@link PacketManager} 正是按类名顺序分配数据包ID的；
+     * 每个类的 {@link PacketInfo#direction()} 必须与索引中记录的方向相同。
+     * 不一致说明索引已经过期（例如增量编译只重新处理了部分类），这时整个模组回退到注解扫描。
+     *
+     * @return 数据包类；如果索引已经过期，则返回 {@code null}。
+     */
+    private static List<Class<?>> loadIndexed(String modID, List<PacketIndex.Entry> index) {
+        List<Class<?>> packets = new ArrayList<>(index.size());
+        String previous = null;
+        for (int i = 0; i < index.size(); i++) {
+            PacketIndex.Entry entry = index.get(i);
+            if (entry.stableId() != i || previous != null && previous.compareTo(entry.className()) >= 0) {
+                NetworkHelperMod.LOGGER.warn("Packet index of mod '{}' has an inconsistent stable ID {} for '{}', falling back to annotation scanning.",
+                        modID, entry.stableId(), entry.className());
+                return null;
+            }
+            previous = entry.className();
+            Class<?> packetClass = loadPacketClass(entry.className());
+            if (packetClass == null) {
+                NetworkHelperMod.LOGGER.warn("Packet index of mod '{}' is stale, falling back to annotation scanning.", modID);
+                return null;
+            }
+            PacketDirection direction = packetClass.getAnnotation(PacketInfo.class).direction();
+            if (direction != entry.direction()) {
+                NetworkHelperMod.LOGGER.warn("Packet index of mod '{}' records {} for '{}', but the class is annotated with {}. Falling back to annotation scanning.",
+                        modID, entry.direction(), entry.className(), direction);
+                return null;
+            }
+            NetworkHelperMod.LOGGER.debug("Found packet '{}' in the index, queueing for registration.", packetClass.getSimpleName());
+            packets.add(packetClass);
+        }
+        return packets;
+    }
+
+    /**
+     * 读取模组 JAR 中的数据包索引。
+     *
+     * @return 索引记录；如果该 JAR 没有索引或索引无法读取，则返回 {@code null}，调用方应回退到注解扫描。
+     */
+    private static List<PacketIndex.Entry> readIndex(ModFileScanData modFileScanData, String modID) {
+        if (modFileScanData.getIModInfoData().isEmpty()) {
+            return null;
+        }
+        try {
+            return PacketIndex.read(modFileScanData.getIModInfoData().get(0).getFile());
+        } catch (IOException e) {
+            NetworkHelperMod.LOGGER.warn("Could not read packet index of mod '{}', falling back to annotation scanning.", modID, e);
+            return null;
+        }
+    }
+
+    /**
+     * 加载一个候选数据包类，但不初始化它，并确认它确实是一个数据包。
+     * 由于使用的是 {@link Class#isAssignableFrom}，任意深度的 EasyPacket / IPacket 继承层次都能被识别。
+     *
+     * @return 数据包类；如果它不是一个有效的数据包，则返回 {@code null}。
+     */
+    private static Class<?> loadPacketClass(String className) {
+        try {
+            Class<?> packetClass = Class.forName(className, false, PacketScanner.class.getClassLoader());
+            // 索引可能已经过期（例如注解被移除但没有重新编译），这里再做一次确认。
+            if (packetClass.getAnnotation(PacketInfo.class) == null) {
+                NetworkHelperMod.LOGGER.warn("Class '{}' is no longer annotated with @PacketInfo, skipping.", className);
+                return null;
+            }
+            if (!IPacket.class.isAssignableFrom(packetClass)) {
+                NetworkHelperMod.LOGGER.error("Class '{}' is annotated with @PacketInfo but does not implement IPacket, skipping.", className);
+                return null;
+            }
+            return packetClass;
+        } catch (Throwable t) {
+            NetworkHelperMod.LOGGER.error("Error while trying to load a potential packet class '{}'", className, t);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketPriority;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务端发往客户端的统一发送路径。
+ * <p>
+ * 无论目标是一个玩家还是一组玩家，数据包都只会被编码为一个帧：
+ * <ul>
+ * <li>启用了合并的数据包先交给 {@link PacketCoalescer}，在 tick 结束时才编码并走下面的路径；</li>
+ * <li>目标连接上还有没有编码完成的异步发送时，帧排在它们之后，见 {@link PacketAsyncSender}；</li>
+ * <li>超过分片阈值的帧、低优先级的帧，或者目标连接上同一优先级还有未发完的帧时，帧进入 {@link PacketStreamer} 的发送队列；</li>
+ * <li>对启用了批量模式的通道，普通优先级的帧被追加到每个目标连接的批量帧中；</li>
+ * <li>其余情况下，帧本身就是负载，同一个原版自定义负载数据包被发送给每个目标连接。</li>
+ * </ul>
+ * 因此广播的序列化开销与在线玩家数量无关。
+ * <p>
+ * 唯一的例外是内容取决于接收方的数据包（见 {@link RegisteredPacket#perRecipient()}）：增量数据包
+ * （{@link com.mx_wj.networkHelper.network.easy.DeltaSync}）取决于每个接收方已有的快照，
+ * 带有 {@link com.mx_wj.networkHelper.network.easy.Dictionary} 字段的数据包取决于每个接收方的字符串字典。
+ */
+final class PacketSender {
+
+    /**
+     * 启用了每 tick 批量发送的模组ID。
+     */
+    private static final Set<String> batchingMods = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 正在为哪个连接编码内容取决于接收方的数据包。{@link IPacket#encode} 只接收缓冲区，
+     * 因此在逐个接收方编码期间通过它把目标连接传给 {@link RegisteredPacket#encode}。
+     */
+    private static final ThreadLocal<Connection> recipient = new ThreadLocal<>();
+
+    private PacketSender() {}
+
+    static void enableBatching(String modID) {
+        batchingMods.add(modID);
+    }
+
+    /**
+     * @return 当前线程正在为其逐个编码数据包的连接；不在逐个接收方编码期间时为 {@code null}。
+     */
+    static Connection recipient() {
+        return recipient.get();
+    }
+
+    /**
+     * 把一个数据包发送给一组玩家，只编码一次。
+     *
+     * @param channel 数据包所属的通道。
+     * @param packet  要发送的数据包。
+     * @param players 目标玩家。
+     */
+    static void sendToPlayers(ModChannel channel, IPacket packet, Collection<ServerPlayer> players) {
+        if (players.isEmpty()) {
+            return;
+        }
+        RegisteredPacket<?> registered = channel.get(packet);
+        if (registered.coalescing()) {
+            PacketCoalescer.enqueue(channel, registered, packet, players);
+            return;
+        }
+        PacketPriority priority = registered.info().priority();
+        boolean batching = batching(channel, priority);
+        registered.stats().recordSent(players.size());
+        if (registered.perRecipient()) {
+            sendPerRecipient(channel, packet, players, priority, batching);
+            return;
+        }
+        // 先编码为帧才能知道它是否需要分片；帧和单独发送时的负载都在所有目标之间共享。
+        FriendlyByteBuf frame = channel.encodeFrame(packet);
+        Packet<?> vanillaPacket = null;
+        for (ServerPlayer player : players) {
+            Connection connection = player.connection.connection;
+            if (PacketAsyncSender.enqueueEncoded(connection, channel, frame, priority, batching) || enqueue(connection, channel, frame, priority, batching)) {
+                continue;
+            }
+            if (vanillaPacket == null) {
+                vanillaPacket = channel.toClientPacket(frame);
+            }
+            player.connection.send(vanillaPacket);
+        }
+    }
+
+    /**
+     * 内容取决于接收方的数据包按每个接收方分别编码。编码和写出的顺序必须一致，所以交给 {@link PacketAsyncSender#sendFor} 在连接的队列锁内完成。
+     */
+    private static void sendPerRecipient(ModChannel channel, IPacket packet, Collection<ServerPlayer> players, PacketPriority priority, boolean batching) {
+        for (ServerPlayer player : players) {
+            PacketAsyncSender.sendFor(player.connection.connection, channel, packet, priority, batching);
+        }
+    }
+
+    /**
+     * 为一个接收方编码数据包，同时更新这个接收方的快照或字典。帧过大而不能发出时，会丢弃这个接收方的相关状态后抛出异常。只能在 {@link PacketAsyncSender#sendFor} 中调用，
+     * 否则无法保证帧按编码的顺序写出。
+     */
+    static FriendlyByteBuf encodeFor(ModChannel channel, IPacket packet, Connection connection) {
+        FriendlyByteBuf frame;
+        recipient.set(connection);
+        try {
+            frame = channel.encodeFrame(packet);
+        } finally {
+            recipient.remove();
+        }
+        try {
+            PacketStreamer.checkFrameSize(channel, frame);
+        } catch (IllegalArgumentException e) {
+            // 这个帧不会被发出，接收方也就不会收到其中的定义和快照。
+            channel.get(packet).discardRecipientState(connection);
+            throw e;
+        }
+        return frame;
+    }
+
+    /**
+     * @return 这个优先级的数据包在这个通道上是否应该合并到每 tick 的批量帧中。
+     */
+    static boolean batching(ModChannel channel, PacketPriority priority) {
+        // 高优先级的数据包要立即发出，不等到 tick 结束时的批量帧。
+        return priority == PacketPriority.NORMAL && batchingMods.contains(channel.modID());
+    }
+
+    /**
+     * 把一个已编码的帧发往一个连接：交给出站调度器或批量发送器，或者立即单独发送。
+     * 请求和响应的负载也经过这里，它们的 {@code batching} 总是 {@code false}。
+     */
+    static void dispatch(Connection connection, ModChannel channel, FriendlyByteBuf frame, PacketPriority priority, boolean batching) {
+        if (!enqueue(connection, channel, frame, priority, batching)) {
+            connection.send(channel.toClientPacket(frame));
+        }
+    }
+
+    /**
+     * 把帧交给出站调度器或批量发送器。
+     *
+     * @return 如果帧已经排队则返回 {@code true}；否则调用方应立即单独发送它。
+     */
+    private static boolean enqueue(Connection connection, ModChannel channel, FriendlyByteBuf frame, PacketPriority priority, boolean batching) {
+        return PacketStreamer.enqueue(connection, channel, frame, priority) || batching && PacketBatcher.enqueue(connection, channel, frame);
+    }
+}
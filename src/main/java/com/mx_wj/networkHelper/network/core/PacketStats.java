@@ -0,0 +1,241 @@
+package com.mx_wj.networkHelper.network.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个已注册的数据包类型的网络统计。
+ * <p>
+ * 计数器都是 {@link LongAdder}，记录时只在当前线程对应的分段上累加，因此在网络线程和主线程上频繁记录也几乎没有开销。
+ * 除了累计值以外，{@link PacketMetrics} 每秒对主要计数器采样一次，保留最近 {@link #WINDOW_SECONDS} 秒的变化量，
+ * 用于查看实时的速率。
+ */
+public final class PacketStats implements PacketStatsMXBean {
+
+    /**
+     * 滚动窗口的长度（秒）。
+     */
+    public static final int WINDOW_SECONDS = 60;
+
+    /**
+     * 可以查询实时速率的计数器。
+     */
+    public enum Rate {
+        SENT, ENCODED_BYTES, RECEIVED, RECEIVED_BYTES
+    }
+
+    private final String channel;
+    private final Class<?> packetClass;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LatencyHistogram encode = new LatencyHistogram();
+    private final LatencyHistogram decode = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram handler = new LatencyHistogram();
+
+    /**
+     * 每个 {@link Rate} 在最近每一秒内的变化量，按环形缓冲区存放。只在持有 this 锁时访问。
+     */
+    private final long[][] history = new long[Rate.values().length][WINDOW_SECONDS];
+    private final long[] lastTotals = new long[Rate.values().length];
+    private int cursor;
+    private int filled;
+
+    PacketStats(String channel, Class<?> packetClass) {
+        this.channel = channel;
+        this.packetClass = packetClass;
+    }
+
+    void recordSent(int recipients) {
+        sent.add(recipients);
+    }
+
+    void recordEncode(int bytes, long nanos) {
+        encodedBytes.add(bytes);
+        encode.record(nanos);
+    }
+
+    void recordDecode(int bytes, long nanos) {
+        receivedBytes.add(bytes);
+        decode.record(nanos);
+    }
+
+    void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    void recordHandler(long waitNanos, long runNanos) {
+        queueWait.record(waitNanos);
+        handler.record(runNanos);
+    }
+
+    /**
+     * 记录上一秒内的变化量，由 {@link PacketMetrics} 的采样线程每秒调用一次。
+     */
+    synchronized void sample() {
+        for (Rate rate : Rate.values()) {
+            long total = total(rate);
+            history[rate.ordinal()][cursor] = total - lastTotals[rate.ordinal()];
+            lastTotals[rate.ordinal()] = total;
+        }
+        cursor = (cursor + 1) % WINDOW_SECONDS;
+        filled = Math.min(filled + 1, WINDOW_SECONDS);
+    }
+
+    private long total(Rate rate) {
+        return switch (rate) {
+            case SENT -> sent.sum();
+            case ENCODED_BYTES -> encodedBytes.sum();
+            case RECEIVED -> decode.count();
+            case RECEIVED_BYTES -> receivedBytes.sum();
+        };
+    }
+
+    /**
+     * @param rate    要查询的计数器。
+     * @param seconds 取最近多少秒的平均值，最多 {@link #WINDOW_SECONDS} 秒。
+     * @return 最近 {@code seconds} 秒内的每秒平均值；还没有采样时返回 0。
+     */
+    public synchronized double rate(Rate rate, int seconds) {
+        int n = Math.min(Math.min(seconds, filled), WINDOW_SECONDS);
+        if (n <= 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += history[rate.ordinal()][Math.floorMod(cursor - i, WINDOW_SECONDS)];
+        }
+        return (double) sum / n;
+    }
+
+    public Class<?> packetType() {
+        return packetClass;
+    }
+
+    @Override
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public String getPacketClass() {
+        return packetClass.getName();
+    }
+
+    @Override
+    public long getSentPackets() {
+        return sent.sum();
+    }
+
+    @Override
+    public long getEncodedPackets() {
+        return encode.count();
+    }
+
+    @Override
+    public long getEncodedBytes() {
+        return encodedBytes.sum();
+    }
+
+    @Override
+    public long getEncodeNanos() {
+        return encode.totalNanos();
+    }
+
+    @Override
+    public long getEncodeP99Nanos() {
+        return encode.percentile(0.99);
+    }
+
+    @Override
+    public long getReceivedPackets() {
+        return decode.count();
+    }
+
+    @Override
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    @Override
+    public long getDecodeNanos() {
+        return decode.totalNanos();
+    }
+
+    @Override
+    public long getDecodeP99Nanos() {
+        return decode.percentile(0.99);
+    }
+
+    @Override
+    public long getRateLimitedPackets() {
+        return rateLimited.sum();
+    }
+
+    @Override
+    public long getCoalescedPackets() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public long getHandledPackets() {
+        return handler.count();
+    }
+
+    @Override
+    public long getQueueWaitNanos() {
+        return queueWait.totalNanos();
+    }
+
+    @Override
+    public long getQueueWaitP50Nanos() {
+        return queueWait.percentile(0.5);
+    }
+
+    @Override
+    public long getQueueWaitP99Nanos() {
+        return queueWait.percentile(0.99);
+    }
+
+    @Override
+    public long getHandlerNanos() {
+        return handler.totalNanos();
+    }
+
+    @Override
+    public long getHandlerP50Nanos() {
+        return handler.percentile(0.5);
+    }
+
+    @Override
+    public long getHandlerP99Nanos() {
+        return handler.percentile(0.99);
+    }
+
+    @Override
+    public double getSentPerSecond() {
+        return rate(Rate.SENT, 1);
+    }
+
+    @Override
+    public double getEncodedBytesPerSecond() {
+        return rate(Rate.ENCODED_BYTES, 1);
+    }
+
+    @Override
+    public double getReceivedPerSecond() {
+        return rate(Rate.RECEIVED, 1);
+    }
+
+    @Override
+    public double getReceivedBytesPerSecond() {
+        return rate(Rate.RECEIVED_BYTES, 1);
+    }
+}
@@ -0,0 +1,86 @@
+package com.mx_wj.networkHelper.network.core;
+
+/**
+ * {@link PacketStats} 通过 JMX 导出的属性。
+ * <p>
+ * 每个已注册的数据包类型对应一个 MBean，名称为
+ * {@code com.mx_wj.networkHelper:type=PacketStats,channel=<模组ID>,packet=<数据包类名>}，
+ * 可以用 JConsole、VisualVM 等工具实时查看。所有耗时的单位都是纳秒。
+ */
+public interface PacketStatsMXBean {
+
+    String getChannel();
+
+    String getPacketClass();
+
+    /**
+     * @return 发送次数，一次广播中的每个接收方各计一次。
+     */
+    long getSentPackets();
+
+    long getEncodedPackets();
+
+    /**
+     * @return 编码后（包括压缩）的总字节数。一次广播只编码一次，因此只计一次。
+     */
+    long getEncodedBytes();
+
+    long getEncodeNanos();
+
+    long getEncodeP99Nanos();
+
+    long getReceivedPackets();
+
+    long getReceivedBytes();
+
+    long getDecodeNanos();
+
+    long getDecodeP99Nanos();
+
+    /**
+     * @return 超出 {@link com.mx_wj.networkHelper.network.core.info.RateLimit} 的次数。
+     */
+    long getRateLimitedPackets();
+
+    /**
+     * @return 因 {@link com.mx_wj.networkHelper.network.core.info.PacketInfo#coalesce()} 被同一 tick 内更新的数据包替换、没有发出的次数。
+     */
+    long getCoalescedPackets();
+
+    long getHandledPackets();
+
+    /**
+     * @return 从收到数据包到开始执行处理逻辑之间的总等待时间。
+     */
+    long getQueueWaitNanos();
+
+    long getQueueWaitP50Nanos();
+
+    long getQueueWaitP99Nanos();
+
+    long getHandlerNanos();
+
+    long getHandlerP50Nanos();
+
+    long getHandlerP99Nanos();
+
+    /**
+     * @return 上一秒内的发送次数。
+     */
+    double getSentPerSecond();
+
+    /**
+     * @return 上一秒内编码的字节数。
+     */
+    double getEncodedBytesPerSecond();
+
+    /**
+     * @return 上一秒内的接收次数。
+     */
+    double getReceivedPerSecond();
+
+    /**
+     * @return 上一秒内接收的字节数。
+     */
+    double getReceivedBytesPerSecond();
+}
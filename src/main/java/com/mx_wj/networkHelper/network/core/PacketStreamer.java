@@ -0,0 +1,309 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperConfig;
+import com.mx_wj.networkHelper.network.core.info.PacketPriority;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.Connection;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务端每个连接的出站调度器，负责分片发送和按优先级发送。
+ * <p>
+ * 每个连接有一个按 {@link PacketPriority} 分为多条通道的发送队列，以下帧会进入队列：
+ * <ul>
+ * <li>编码后超过 {@link NetworkHelperConfig#FRAGMENT_THRESHOLD} 的帧，它们之后会被拆分为 {@link PacketFragment} 逐步发出；</li>
+ * <li>所有 {@link PacketPriority#LOW} 优先级的帧；</li>
+ * <li>同一通道、同一优先级上还有未发完的帧时，之后的帧也排在后面，以保持顺序。</li>
+ * </ul>
+ * 其余的帧不经过队列，由调用方立即发出，因此延迟敏感的数据包不会排在队列中的批量数据之后。
+ * <p>
+ * 每个服务端 tick 结束时，每个连接最多写出 {@link NetworkHelperConfig#FRAGMENT_WINDOW_BYTES} 字节：
+ * 低优先级队列不为空时，先为它保留 {@link NetworkHelperConfig#BULK_SHARE} 的份额，其余预算按优先级从高到低使用，
+ * 高优先级用剩的预算也归低优先级。连接的 Netty 出站缓冲区已满（{@code Channel#isWritable()} 为 {@code false}）时暂停，
+ * 等下一个 tick 再继续，因此批量数据不会堆积在 Netty 的缓冲区中，挡住之后立即发出的数据包。
+ * <p>
+ * 同一个连接、同一个通道上同时只有一个帧在分片发送，接收方每个通道只需要一个正在拼装的缓冲区。
+ * 一个队列中的帧因为它的通道正在另一个优先级上分片发送而需要等待时，只有这个队列中同一通道之后的帧随它等待，其他通道的帧照常发出。
+ * <p>
+ * 除统计方法外，所有方法都是包内可见的；可以在任意线程上加入帧，但队列只在服务端主线程上发出。
+ */
+public final class PacketStreamer {
+
+    private static final PacketPriority[] PRIORITIES = PacketPriority.values();
+
+    private static final Map<Connection, Outbound> outbound = new ConcurrentHashMap<>();
+    private static final AtomicLong pendingBytes = new AtomicLong();
+    private static final LongAdder fragmentedFrames = new LongAdder();
+    private static final LongAdder sentFragments = new LongAdder();
+
+    /**
+     * 一个连接的发送队列。队列发完后会被标记为已关闭，之后的帧不再需要排队。
+     */
+    private static final class Outbound {
+        private final Lane[] lanes = new Lane[PRIORITIES.length];
+        /**
+         * 每个通道正在分片发送的帧。
+         */
+        private final Map<ModChannel, Transfer> fragmenting = new HashMap<>();
+        private boolean closed;
+
+        private Outbound() {
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new Lane();
+            }
+        }
+
+        private boolean isEmpty() {
+            for (Lane lane : lanes) {
+                if (!lane.transfers.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 一个优先级的队列，以及其中每个通道排队的帧数。
+     */
+    private static final class Lane {
+        private final ArrayDeque<Transfer> transfers = new ArrayDeque<>();
+        private final Map<ModChannel, Integer> queued = new HashMap<>();
+
+        private void add(Transfer transfer) {
+            transfers.add(transfer);
+            queued.merge(transfer.channel, 1, Integer::sum);
+        }
+
+        /**
+         * 移除迭代器刚刚返回的帧。
+         */
+        private void remove(Iterator<Transfer> iterator, Transfer transfer) {
+            iterator.remove();
+            queued.computeIfPresent(transfer.channel, (channel, count) -> count == 1 ? null : count - 1);
+        }
+
+        private boolean hasQueued(ModChannel channel) {
+            return queued.containsKey(channel);
+        }
+    }
+
+    /**
+     * 队列中的一个帧，以及已经发出的部分。帧可能被多个连接共享，因此只通过绝对索引读取它。
+     */
+    private static final class Transfer {
+        private final ModChannel channel;
+        private final ByteBuf frame;
+        private int offset;
+        private int nextIndex;
+
+        private Transfer(ModChannel channel, ByteBuf frame) {
+            this.channel = channel;
+            this.frame = frame;
+        }
+
+        private int remaining() {
+            return frame.readableBytes() - offset;
+        }
+    }
+
+    private PacketStreamer() {}
+
+    /**
+     * 检查帧是否能被发出。逐个接收方编码的数据包在提交快照和字典之前调用它，见 {@link PacketSender#encodeFor}。
+     *
+     * @throws IllegalArgumentException 如果帧超过了 {@link PacketFragment#MAX_FRAME_BYTES}。
+     */
+    static void checkFrameSize(ModChannel channel, ByteBuf frame) {
+        int length = frame.readableBytes();
+        if (length > PacketFragment.MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("Packet of " + length + " bytes exceeds the maximum of " + PacketFragment.MAX_FRAME_BYTES + " bytes on channel " + channel.name());
+        }
+    }
+
+    /**
+     * 如果帧需要分片、优先级为 {@link PacketPriority#LOW}，或者该连接在同一通道、同一优先级上还有未发完的帧，就把它加入发送队列。
+     *
+     * @param connection 目标连接。
+     * @param channel    数据包所属的通道。
+     * @param frame      由 {@link ModChannel#encodeFrame} 编码的帧，或者请求、响应的负载，不会修改它的读索引。
+     * @param priority   数据包的优先级。
+     * @return 如果帧已加入队列则返回 {@code true}；否则调用方应按普通方式立即发送它。
+     * @throws IllegalArgumentException 如果帧超过了 {@link PacketFragment#MAX_FRAME_BYTES}。
+     */
+    static boolean enqueue(Connection connection, ModChannel channel, ByteBuf frame, PacketPriority priority) {
+        checkFrameSize(channel, frame);
+        int length = frame.readableBytes();
+        boolean large = length > NetworkHelperConfig.FRAGMENT_THRESHOLD.get();
+        boolean always = large || priority == PacketPriority.LOW;
+        while (true) {
+            Outbound queue = always ? outbound.computeIfAbsent(connection, c -> new Outbound()) : outbound.get(connection);
+            if (queue == null) {
+                return false;
+            }
+            synchronized (queue) {
+                if (queue.closed) {
+                    if (!always) {
+                        return false;
+                    }
+                    // 这个队列刚好发完并被移除了，重新获取一个新的。
+                    continue;
+                }
+                Lane lane = queue.lanes[priority.ordinal()];
+                if (!always && !lane.hasQueued(channel)) {
+                    return false;
+                }
+                lane.add(new Transfer(channel, frame));
+                pendingBytes.addAndGet(length);
+                if (large) {
+                    fragmentedFrames.increment();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 在预算和连接可写性允许的范围内发出排队中的帧，在服务端 tick 结束时调用。
+     */
+    static void drainAll() {
+        if (outbound.isEmpty()) {
+            return;
+        }
+        int window = NetworkHelperConfig.FRAGMENT_WINDOW_BYTES.get();
+        int fragmentSize = NetworkHelperConfig.FRAGMENT_SIZE.get();
+        double bulkShare = NetworkHelperConfig.BULK_SHARE.get();
+        for (Map.Entry<Connection, Outbound> entry : outbound.entrySet()) {
+            drain(entry.getKey(), entry.getValue(), window, fragmentSize, bulkShare);
+        }
+    }
+
+    private static void drain(Connection connection, Outbound queue, int window, int fragmentSize, double bulkShare) {
+        synchronized (queue) {
+            if (queue.closed) {
+                return;
+            }
+            if (!connection.isConnected()) {
+                // 玩家已经断开连接，丢弃剩余的帧。
+                for (Lane lane : queue.lanes) {
+                    for (Transfer transfer : lane.transfers) {
+                        pendingBytes.addAndGet(-transfer.remaining());
+                    }
+                }
+                close(connection, queue);
+                return;
+            }
+            Lane bulk = queue.lanes[PacketPriority.LOW.ordinal()];
+            int reserved = bulk.transfers.isEmpty() ? 0 : (int) (window * bulkShare);
+            int budget = window - reserved;
+            for (PacketPriority priority : PRIORITIES) {
+                if (priority == PacketPriority.LOW) {
+                    budget += reserved;
+                }
+                budget = drainLane(connection, queue, queue.lanes[priority.ordinal()], budget, fragmentSize);
+            }
+            if (queue.isEmpty()) {
+                close(connection, queue);
+            }
+        }
+    }
+
+    /**
+     * 在预算内按顺序发出一个优先级队列中的帧。必须在持有 queue 锁的情况下调用。
+     * <p>
+     * 需要分片的帧所在的通道正在另一个优先级上分片发送时，跳过这个帧以及队列中同一通道之后的帧，继续发出其他通道的帧，
+     * 因此每个通道上帧的顺序不变，而一个通道上的等待不会挡住整个队列。
+     *
+     * @return 剩余的预算。
+     */
+    private static int drainLane(Connection connection, Outbound queue, Lane lane, int budget, int fragmentSize) {
+        Set<ModChannel> blocked = null;
+        Iterator<Transfer> iterator = lane.transfers.iterator();
+        while (budget > 0 && iterator.hasNext() && connection.channel().isWritable()) {
+            Transfer transfer = iterator.next();
+            if (blocked != null && blocked.contains(transfer.channel)) {
+                continue;
+            }
+            ByteBuf frame = transfer.frame;
+            if (transfer.offset == 0 && frame.readableBytes() <= fragmentSize) {
+                // 小帧不需要分片，直接作为一个负载发出，接收方不必拼装。
+                int length = frame.readableBytes();
+                connection.send(transfer.channel.toClientPacket(frame));
+                transfer.offset = length;
+                budget -= length;
+                pendingBytes.addAndGet(-length);
+            } else {
+                Transfer current = queue.fragmenting.get(transfer.channel);
+                if (current != null && current != transfer) {
+                    // 同一通道上另一个优先级的帧正在分片发送，这个通道在本队列中的帧都要等它发完。
+                    if (blocked == null) {
+                        blocked = new HashSet<>();
+                    }
+                    blocked.add(transfer.channel);
+                    continue;
+                }
+                queue.fragmenting.put(transfer.channel, transfer);
+                while (budget > 0 && transfer.remaining() > 0 && connection.channel().isWritable()) {
+                    int length = Math.min(fragmentSize, transfer.remaining());
+                    ByteBuf fragment = PacketFragment.toPayload(transfer.nextIndex, frame.readableBytes(), frame.slice(frame.readerIndex() + transfer.offset, length));
+                    connection.send(transfer.channel.toClientPacket(fragment));
+                    transfer.nextIndex++;
+                    sentFragments.increment();
+                    transfer.offset += length;
+                    budget -= length;
+                    pendingBytes.addAndGet(-length);
+                }
+            }
+            if (transfer.remaining() > 0) {
+                // 预算用完或者连接不可写，这个帧之后的帧也都要等下一个 tick。
+                break;
+            }
+            queue.fragmenting.remove(transfer.channel, transfer);
+            lane.remove(iterator, transfer);
+        }
+        return budget;
+    }
+
+    /**
+     * 必须在持有 queue 锁的情况下调用。
+     */
+    private static void close(Connection connection, Outbound queue) {
+        queue.closed = true;
+        for (Lane lane : queue.lanes) {
+            lane.transfers.clear();
+            lane.queued.clear();
+        }
+        queue.fragmenting.clear();
+        outbound.remove(connection, queue);
+    }
+
+    /**
+     * @return 所有连接的发送队列中还没有发出的字节数。
+     */
+    public static long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * @return 因超过阈值而被分片发送的帧的总数。
+     */
+    public static long getFragmentedPackets() {
+        return fragmentedFrames.sum();
+    }
+
+    /**
+     * @return 已经发出的分片总数。
+     */
+    public static long getSentFragments() {
+        return sentFragments.sum();
+    }
+}
@@ -0,0 +1,79 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行模式为 {@link com.mx_wj.networkHelper.network.core.info.PacketExecution#WORKER_POOL} 的数据包所共享的工作线程池。
+ * <p>
+ * 在 Java 21 及以上的环境中使用虚拟线程（每个任务一个），否则使用固定大小的平台线程池。
+ * 两种情况下同时在途的任务数量都有上限 {@link #MAX_PENDING}，超出时 {@link #tryExecute} 返回 {@code false}，
+ * 由调用方决定如何降级，而不是无限制地堆积任务。
+ */
+final class PacketWorkerPool {
+
+    /**
+     * 同时在途（排队中或执行中）的任务数上限。
+     */
+    static final int MAX_PENDING = 1024;
+
+    private static final int PLATFORM_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    private static final Semaphore permits = new Semaphore(MAX_PENDING);
+    private static final ExecutorService executor = createExecutor();
+
+    private PacketWorkerPool() {}
+
+    private static ExecutorService createExecutor() {
+        try {
+            // 模组以 Java 17 为目标编译，因此通过反射获取 Java 21 的虚拟线程执行器。
+            ExecutorService virtual = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            NetworkHelperMod.LOGGER.info("Packet worker pool is using virtual threads.");
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            NetworkHelperMod.LOGGER.info("Packet worker pool is using {} platform threads.", PLATFORM_THREADS);
+            // 并发数由信号量控制，因此这里的队列不需要有界。
+            return new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "NetworkHelper Worker #" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 尝试在工作线程池上执行一个任务。
+     *
+     * @param task 要执行的任务，抛出的异常会被记录下来。
+     * @return 如果任务已被接受则返回 {@code true}；如果在途任务已达上限则返回 {@code false}。
+     */
+    static boolean tryExecute(Runnable task) {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    NetworkHelperMod.LOGGER.error("Error while executing packet on worker pool", t);
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketCompression;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import com.mx_wj.networkHelper.network.easy.DeltaSync;
+import com.mx_wj.networkHelper.network.easy.DeltaSyncState;
+import com.mx_wj.networkHelper.network.easy.EasyPacket;
+import com.mx_wj.networkHelper.network.easy.StringDictionary;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.function.Function;
+
+/**
+ * 一个已注册的数据包类型在某个通道上的元数据。
+ * <p>
+ * {@link PacketManager} 在把数据包注册到 Forge 的同时，也会在 {@link ModChannel} 中保留一份这样的记录，
+ * 以便在批量帧等由我们自己负责拆分的场景中，按ID找回解码器并分发数据包。
+ *
+ * @param <T> 数据包的类型。
+ */
+final class RegisteredPacket<T extends IPacket> {
+    private final String modID;
+    private final Class<T> packetClass;
+    private final int id;
+    private final PacketInfo info;
+    private final Function<FriendlyByteBuf, T> decoder;
+    private final PacketPool<T> pool;
+    private final boolean delta;
+    private final boolean dictionary;
+    private final String dictionaryScope;
+    private final boolean rateLimited;
+    private final boolean coalescing;
+    private final PacketStats stats;
+
+    RegisteredPacket(String modID, Class<T> packetClass, int id, PacketInfo info, Function<FriendlyByteBuf, T> decoder) {
+        this.modID = modID;
+        this.packetClass = packetClass;
+        this.id = id;
+        this.info = info;
+        this.decoder = decoder;
+        this.pool = decoder instanceof PacketPool<T> packetPool ? packetPool : null;
+        this.delta = EasyPacket.class.isAssignableFrom(packetClass) && packetClass.isAnnotationPresent(DeltaSync.class);
+        this.dictionary = EasyPacket.class.isAssignableFrom(packetClass) && StringDictionary.uses(packetClass);
+        // 同一通道、同一优先级的帧按编码顺序送达，字典只在这个范围内共享。
+        this.dictionaryScope = modID + "/" + info.priority();
+        this.rateLimited = info.rateLimit().packetsPerSecond() > 0 || info.rateLimit().bytesPerSecond() > 0;
+        this.coalescing = info.coalesce();
+        this.stats = PacketMetrics.register(modID, packetClass);
+    }
+
+    String modID() {
+        return modID;
+    }
+
+    Class<T> packetClass() {
+        return packetClass;
+    }
+
+    int id() {
+        return id;
+    }
+
+    PacketInfo info() {
+        return info;
+    }
+
+    /**
+     * @return 编码结果是否取决于接收方，即是否是 {@link DeltaSync} 数据包，或者是否有 {@link com.mx_wj.networkHelper.network.easy.Dictionary} 字段。
+     * 这样的数据包必须通过 {@link PacketSender#encodeFor} 为每个接收方单独编码，不能在多个接收方之间共享。
+     */
+    boolean perRecipient() {
+        return delta || dictionary;
+    }
+
+    /**
+     * 丢弃为一个接收方记录的快照或字典。用于已经编码、但最终没有发出的帧，之后发给这个接收方的数据包会重新完整发送或重新定义字符串。
+     */
+    void discardRecipientState(Connection target) {
+        if (delta) {
+            DeltaSyncState.discard(target, packetClass);
+        }
+        if (dictionary) {
+            StringDictionary.discard(target, dictionaryScope);
+        }
+    }
+
+    /**
+     * @return 是否在 {@link PacketInfo#rateLimit()} 中启用了速率限制。
+     */
+    boolean rateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * @return 是否启用了 {@link PacketInfo#coalesce()}。
+     */
+    boolean coalescing() {
+        return coalescing;
+    }
+
+    /**
+     * 释放执行完毕（或被丢弃）的数据包：先释放 {@link com.mx_wj.networkHelper.network.easy.LazyPayload} 字段持有的接收缓冲区，
+     * 再把实例归还给它的实例池。未启用 {@link com.mx_wj.networkHelper.network.core.info.Pooled} 时不会归还。
+     */
+    void release(IPacket packet) {
+        if (packet instanceof EasyPacket easy) {
+            easy.releasePayloads();
+        }
+        if (pool != null) {
+            pool.release(packetClass.cast(packet));
+        }
+    }
+
+    PacketStats stats() {
+        return stats;
+    }
+
+    /**
+     * 将数据包的内容（不含ID）写入缓冲区，并记录编码的字节数和耗时。正在录制时，编码结果也会被交给 {@link PacketCapture}。
+     */
+    void encode(IPacket packet, FriendlyByteBuf buf) {
+        long start = System.nanoTime();
+        int startIndex = buf.writerIndex();
+        if (info.compression() == PacketCompression.NONE) {
+            writePayload(packet, buf);
+        } else {
+            writeCompressed(packet, buf);
+        }
+        int length = buf.writerIndex() - startIndex;
+        stats.recordEncode(length, System.nanoTime() - start);
+        PacketCapture.record(this, false, buf, startIndex, length);
+    }
+
+    /**
+     * 写入启用了压缩的数据包。会先写入一个字节的“未压缩”标记，再直接把数据包编码到目标缓冲区中；
+     * 只有当编码结果达到阈值、并且压缩后确实更小时，才会用 {@code [原始长度][压缩数据]} 覆盖这段内容。
+     * 因此小数据包不会产生额外的复制。
+     */
+    private void writeCompressed(IPacket packet, FriendlyByteBuf buf) {
+        PacketCompression compression = info.compression();
+        int headerIndex = buf.writerIndex();
+        buf.writeVarInt(0);
+        int start = buf.writerIndex();
+        writePayload(packet, buf);
+        int length = buf.writerIndex() - start;
+        if (length >= info.compressionThreshold()) {
+            ByteBuf compressed = PacketCompressor.compress(compression, buf.slice(start, length));
+            if (compressed.readableBytes() < length) {
+                buf.writerIndex(headerIndex);
+                buf.writeVarInt(length);
+                buf.writeBytes(compressed);
+            }
+        }
+        PacketCompressor.recordSent(length, buf.writerIndex() - headerIndex);
+    }
+
+    private void writePayload(IPacket packet, FriendlyByteBuf buf) {
+        Connection target = PacketSender.recipient();
+        if (delta) {
+            if (target == null) {
+                throw new IllegalStateException("@DeltaSync packet " + packetClass.getSimpleName() + " must be sent through PacketManager.");
+            }
+            ((EasyPacket) packet).encodeDelta(buf, target);
+        } else if (dictionary && target != null) {
+            boolean success = false;
+            StringDictionary.startEncoding(target, dictionaryScope);
+            try {
+                packet.encode(buf);
+                success = true;
+            } finally {
+                StringDictionary.finishEncoding(success);
+            }
+        } else {
+            // 不知道接收方时（例如编码请求的响应），字典字段按原样写入。
+            packet.encode(buf);
+        }
+    }
+
+    /**
+     * 从缓冲区中解码出一个数据包实例，并记录解码的字节数和耗时。缓冲区中剩余的所有字节都属于这个数据包。
+     */
+    T decode(FriendlyByteBuf buf) {
+        long start = System.nanoTime();
+        int wireLength = buf.readableBytes();
+        PacketCapture.record(this, true, buf, buf.readerIndex(), wireLength);
+        T packet;
+        if (dictionary) {
+            StringDictionary.startDecoding(dictionaryScope);
+            try {
+                packet = readPayload(buf);
+            } finally {
+                StringDictionary.finishDecoding();
+            }
+        } else {
+            packet = readPayload(buf);
+        }
+        stats.recordDecode(wireLength, System.nanoTime() - start);
+        return packet;
+    }
+
+    private T readPayload(FriendlyByteBuf buf) {
+        return info.compression() == PacketCompression.NONE ? decoder.apply(buf) : readCompressed(buf);
+    }
+
+    private T readCompressed(FriendlyByteBuf buf) {
+        PacketCompression compression = info.compression();
+        int wireLength = buf.readableBytes();
+        int length = buf.readVarInt();
+        if (length == 0) {
+            PacketCompressor.recordReceived(wireLength, buf.readableBytes());
+            return decoder.apply(buf);
+        }
+        PacketCompressor.recordReceived(wireLength, length);
+        ByteBuf decompressed = PacketCompressor.decompress(compression, buf, length);
+        try {
+            return decoder.apply(new FriendlyByteBuf(decompressed));
+        } finally {
+            // LazyPayload 字段持有的是保留切片，释放这里的引用不会影响它们。
+            decompressed.release();
+        }
+    }
+}
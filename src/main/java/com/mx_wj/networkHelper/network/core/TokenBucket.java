@@ -0,0 +1,50 @@
+package com.mx_wj.networkHelper.network.core;
+
+/**
+ * 令牌桶，按 GCRA（通用信元速率算法）实现：只保存一个“理论到达时间”，而不是令牌数和上次补充的时间。
+ * <p>
+ * 它没有任何同步，必须只在一个线程上使用。{@link PacketRateLimiter} 中的每个桶只在所属连接的 Netty 事件循环上访问，
+ * 因此检查一次只需要几次算术运算，既不需要锁，也不需要 CAS。
+ */
+final class TokenBucket {
+    private final double nanosPerToken;
+    private final long tolerance;
+    private long theoreticalArrival;
+
+    /**
+     * @param tokensPerSecond 每秒补充的令牌数。
+     * @param capacity        桶的容量，即允许连续突发的令牌数。
+     * @param now             当前时间（{@link System#nanoTime()}），桶从满的状态开始。
+     */
+    TokenBucket(double tokensPerSecond, double capacity, long now) {
+        this.nanosPerToken = 1_000_000_000.0 / tokensPerSecond;
+        this.tolerance = (long) (capacity * nanosPerToken);
+        this.theoreticalArrival = now;
+    }
+
+    /**
+     * 尝试取出 {@code tokens} 个令牌。
+     *
+     * @return 如果令牌足够则取出并返回 {@code true}；否则不修改桶并返回 {@code false}。
+     */
+    boolean tryAcquire(long now, long tokens) {
+        if (!canAcquire(now, tokens)) {
+            return false;
+        }
+        theoreticalArrival = next(now, tokens);
+        return true;
+    }
+
+    /**
+     * @return 当前是否有 {@code tokens} 个令牌，不修改桶。
+     */
+    boolean canAcquire(long now, long tokens) {
+        return next(now, tokens) - now <= tolerance;
+    }
+
+    private long next(long now, long tokens) {
+        // nanoTime 可能为负数，只能比较差值。
+        long base = theoreticalArrival - now < 0 ? now : theoreticalArrival;
+        return base + (long) (tokens * nanosPerToken);
+    }
+}
@@ -18,10 +18,22 @@ public interface IPacket {
     void encode(FriendlyByteBuf buf);
 
     /**
-     * 在主线程上执行包的逻辑。
+     * 执行包的逻辑。
+     * 默认在主线程上执行，可以通过 {@link PacketInfo#execution()} 改为网络线程或工作线程池。
      *
      * @param context 网络事件的上下文
      */
     void execute(NetworkEvent.Context context);
+
+    /**
+     * 启用了 {@link PacketInfo#coalesce()} 时，用于判断两个网络包是否描述同一个同步对象，例如方块实体的坐标。
+     * 返回值需要正确实现 {@code equals} 和 {@code hashCode}。
+     * 默认返回 {@code null}，即同一个玩家在每个 tick 内只会收到这个类的最后一个网络包。
+     *
+     * @return 合并键，可以为 {@code null}。
+     */
+    default Object coalescingKey() {
+        return null;
+    }
 }
 
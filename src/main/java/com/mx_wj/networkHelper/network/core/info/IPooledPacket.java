@@ -0,0 +1,25 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+import net.minecraft.network.FriendlyByteBuf;
+
+/**
+ * 可以被 {@link Pooled 实例池} 回收复用的网络包。
+ * <p>
+ * 与普通的 {@link IPacket} 使用解码构造函数不同，这类网络包由一个无参构造函数创建，
+ * 之后每次收到时都通过 {@link #decode} 用新的内容覆盖同一个实例。
+ */
+public interface IPooledPacket extends IPacket {
+
+    /**
+     * 从字节缓冲读取包的数据，覆盖当前实例中的所有内容。
+     *
+     * @param buf 要读取的缓冲区
+     */
+    void decode(FriendlyByteBuf buf);
+
+    /**
+     * 在实例被放回池中之前调用。可以在这里清空对大对象的引用，让它们不必等到实例下一次被使用时才能被回收。
+     */
+    default void reset() {
+    }
+}
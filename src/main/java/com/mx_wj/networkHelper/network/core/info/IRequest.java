@@ -0,0 +1,33 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+import net.minecraftforge.network.NetworkEvent;
+
+/**
+ * 请求数据包接口。
+ * <p>
+ * 通过 {@code PacketManager.sendRequest} 发出的请求会带上一个关联ID，接收方在 {@link PacketInfo#execution()} 指定的线程上调用
+ * {@link #respond}，并把返回的响应数据包连同关联ID发回去，发送方的 {@code CompletableFuture} 随之完成。
+ * 响应数据包的类同样需要带有 {@link PacketInfo} 注解并在同一个模组的通道上注册，它的 {@link IPacket#execute} 不会被调用。
+ *
+ * @param <R> 响应数据包的类型。
+ */
+public interface IRequest<R extends IPacket> extends IPacket {
+
+    /**
+     * 处理请求并返回响应。抛出的异常会被记录在接收方的日志中，发送方的 {@code CompletableFuture} 则以异常完成。
+     *
+     * @param context 网络事件的上下文
+     * @return 响应数据包，不能为 {@code null}。
+     */
+    R respond(NetworkEvent.Context context);
+
+    /**
+     * 请求通过普通的发送方法发出时，仍然会调用 {@link #respond}，但响应会被丢弃。
+     *
+     * @param context 网络事件的上下文
+     */
+    @Override
+    default void execute(NetworkEvent.Context context) {
+        respond(context);
+    }
+}
@@ -0,0 +1,25 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+/**
+ * 定义网络包负载的压缩算法。
+ * <p>
+ * 只有编码后大小达到 {@link PacketInfo#compressionThreshold()} 的数据包才会被压缩，
+ * 更小的数据包只会多出一个字节的标记。
+ */
+public enum PacketCompression {
+    /**
+     * 不压缩（默认），没有任何额外开销。
+     */
+    NONE,
+
+    /**
+     * 使用 Deflate 压缩。压缩率较高，适合带宽受限的链路上的大型结构、原理图等数据。
+     */
+    DEFLATE,
+
+    /**
+     * 使用 Snappy 压缩（与 LZ4 同类的快速算法，由 Minecraft 自带的 Netty 提供）。
+     * 压缩率低于 Deflate，但压缩和解压都快得多，适合频繁发送的中等大小数据包。
+     */
+    SNAPPY
+}
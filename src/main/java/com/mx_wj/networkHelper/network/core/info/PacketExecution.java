@@ -0,0 +1,30 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+/**
+ * 定义接收到的网络包在哪个线程上执行。
+ * <p>
+ * 除了 {@link #MAIN_THREAD} 之外的模式都要求 {@link IPacket#execute} 的实现是线程安全的，
+ * 并且不能直接访问游戏世界。
+ */
+public enum PacketExecution {
+    /**
+     * 在主游戏线程上执行（默认）。
+     * <p>
+     * 可以安全地与游戏世界交互，但会占用 tick 时间。
+     */
+    MAIN_THREAD,
+
+    /**
+     * 直接在网络 I/O 线程上执行。
+     * <p>
+     * 没有任何调度开销，适合非常轻量的逻辑。<b>警告:</b> 处理逻辑中不能有阻塞操作，否则会拖慢同一线程上的所有连接。
+     */
+    NETWORK_THREAD,
+
+    /**
+     * 在共享的有界工作线程池上执行。
+     * <p>
+     * 适合较重但线程安全的逻辑，例如统计、聊天过滤、搜索查询等。在 Java 21 及以上的环境中会使用虚拟线程。
+     */
+    WORKER_POOL
+}
@@ -8,7 +8,7 @@ import java.lang.annotation.Target;
 /**
  * 网络包信息注解。
  * <p>
- * 用于标记一个 Packet 类的元数据，例如它的传输方向。
+ * 用于标记一个 Packet 类的元数据，例如它的传输方向和执行线程。
  */
 @Retention(RetentionPolicy.RUNTIME) // 确保注解在运行时可见，以便反射可以读取
 @Target(ElementType.TYPE)           // 只能用于类
@@ -18,5 +18,40 @@ public @interface PacketInfo {
      * 定义该网络包的传输方向。
      */
     PacketDirection direction();
+
+    /**
+     * 定义接收到该网络包后在哪个线程上执行它，默认在主游戏线程上执行。
+     */
+    PacketExecution execution() default PacketExecution.MAIN_THREAD;
+
+    /**
+     * 定义该网络包负载的压缩算法，默认不压缩。
+     * 适合携带 byte[]、CompoundTag 或大量 ItemStack 的数据包。
+     */
+    PacketCompression compression() default PacketCompression.NONE;
+
+    /**
+     * 启用压缩时，编码后达到这个字节数的负载才会被压缩。
+     */
+    int compressionThreshold() default 256;
+
+    /**
+     * 服务端对该网络包的每玩家速率限制，默认不限制。只适用于服务端接收的方向。
+     */
+    RateLimit rateLimit() default @RateLimit;
+
+    /**
+     * 服务端发送该网络包时的出站优先级，默认为普通优先级。
+     */
+    PacketPriority priority() default PacketPriority.NORMAL;
+
+    /**
+     * 是否在同一个 tick 内合并服务端发往同一个玩家的该网络包，默认不合并。
+     * <p>
+     * 启用后，该网络包不会立即发出，而是在服务端 tick 结束时才编码并发送；在此之前，
+     * 发往同一个玩家、{@link IPacket#coalescingKey()} 相同的网络包会替换掉还没有发出的那一个，只有最后一个会被发送。
+     * 适合只有最新值才有意义的状态同步。只适用于服务端发送的方向。
+     */
+    boolean coalesce() default false;
 }
 
@@ -0,0 +1,31 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+/**
+ * 定义服务端发往客户端的网络包在连接的出站调度中的优先级。
+ * <p>
+ * 同一个优先级、同一个通道上的数据包总是按发送顺序到达；不同优先级之间的顺序不作保证。
+ * 客户端发往服务端的数据包总是立即发出，不受优先级影响。
+ */
+public enum PacketPriority {
+    /**
+     * 延迟敏感的小数据包，例如界面按钮的反馈、输入确认。
+     * <p>
+     * 立即发出，不参与每 tick 批量发送，也不会排在任何正在分片发送的数据之后。
+     */
+    HIGH,
+
+    /**
+     * 普通数据包（默认）。
+     * <p>
+     * 通常立即发出（或在启用了批量模式时在 tick 结束时发出）；同一通道上还有普通优先级的分片没有发完时，排在它们之后。
+     */
+    NORMAL,
+
+    /**
+     * 批量数据，例如多方块结构的 NBT、大型列表的同步。
+     * <p>
+     * 总是进入连接的出站队列，在每个 tick 结束时按字节预算发出，只占用更高优先级的数据包用剩的预算，
+     * 外加一份保底的份额（见 {@code outbound.bulkShare} 配置），因此不会阻塞更高优先级的数据包，也不会被完全饿死。
+     */
+    LOW
+}
@@ -0,0 +1,30 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 为一个数据包启用实例池。
+ * <p>
+ * 默认情况下，每收到一个数据包都会创建一个新实例。启用实例池后，解码器从池中取出一个回收的实例，
+ * 通过 {@link IPooledPacket#decode} 填充它；{@link IPacket#execute} 返回后，实例会被自动重置并放回池中。
+ * 这适合每个玩家每秒收发几十次的输入、状态同步等小数据包，可以消除它们在新生代中持续产生的垃圾。
+ * <p>
+ * 启用实例池的数据包类必须实现 {@link IPooledPacket}（所有 EasyPacket 都已实现），并且有一个公共的无参构造函数。
+ * <b>处理逻辑不能在 {@code execute} 返回后继续持有数据包实例</b>，例如把它放进集合或在稍后执行的任务中引用它，
+ * 因为它随后会被下一个收到的数据包覆盖。需要的值应该先复制出来。
+ * <p>
+ * 启动参数 {@code -Dnetworkhelper.pool.leakDetection=true} 可以在开发时启用泄漏检测，
+ * 报告长时间未归还或被重复归还的实例。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Pooled {
+
+    /**
+     * 每个线程最多缓存的空闲实例数。线程之间用于交换实例的共享池也使用同样的容量。
+     */
+    int capacity() default 64;
+}
@@ -0,0 +1,41 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 服务端对客户端发来的某个数据包的速率限制，通过 {@link PacketInfo#rateLimit()} 指定。
+ * <p>
+ * 每个玩家、每个数据包类型各有一个令牌桶。限制在 Netty 线程上、数据包被解码之前检查，
+ * 因此被拒绝的数据包不会产生任何解码或分配开销。数据包数量和字节数可以分别限制，两者都为 0（默认）时不限制。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+public @interface RateLimit {
+
+    /**
+     * 每秒允许的数据包数量，0 表示不限制数量。
+     */
+    double packetsPerSecond() default 0;
+
+    /**
+     * 每秒允许的字节数（编码后的负载大小），0 表示不限制字节数。
+     */
+    double bytesPerSecond() default 0;
+
+    /**
+     * 允许连续突发的数据包数量，0 表示与 {@link #packetsPerSecond()} 相同，即一秒的量。
+     */
+    int burstPackets() default 0;
+
+    /**
+     * 允许连续突发的字节数，0 表示与 {@link #bytesPerSecond()} 相同。大于这个值的单个数据包总是被拒绝。
+     */
+    int burstBytes() default 0;
+
+    /**
+     * 超出限制时采取的动作。
+     */
+    RateLimitAction action() default RateLimitAction.DROP;
+}
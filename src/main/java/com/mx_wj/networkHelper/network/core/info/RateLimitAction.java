@@ -0,0 +1,21 @@
+package com.mx_wj.networkHelper.network.core.info;
+
+/**
+ * 客户端发来的数据包超出 {@link RateLimit} 时采取的动作。
+ */
+public enum RateLimitAction {
+    /**
+     * 丢弃超出限制的数据包（默认），并记录一条限频的警告。
+     */
+    DROP,
+
+    /**
+     * 断开发送方的连接，并丢弃它之后发来的所有数据包。
+     */
+    KICK,
+
+    /**
+     * 只记录一条限频的警告，数据包仍然正常处理。适合在启用限制前观察实际流量。
+     */
+    LOG
+}
@@ -0,0 +1,20 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记 {@link EasyPacket} 中用于区分同步对象的字段，例如实体ID或方块坐标。
+ * <p>
+ * 对于 {@link DeltaSync} 数据包，键字段每次都会被完整发送，所有键字段的值一起决定使用哪一份缓存的快照。
+ * 没有键字段时，每个连接上该数据包类只有一份快照。
+ * <p>
+ * 对于启用了 {@link com.mx_wj.networkHelper.network.core.info.PacketInfo#coalesce()} 的数据包，
+ * 所有键字段的值一起构成 {@link EasyPacket#coalescingKey()}。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DeltaKey {
+}
@@ -0,0 +1,35 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 为一个 {@link EasyPacket} 子类启用增量同步。
+ * <p>
+ * 框架会为每个接收方、每个数据包键（由 {@link DeltaKey} 字段组成）记住上一次发出的字段值，
+ * 之后只发送发生了变化的字段；接收方用自己缓存的副本补齐未变化的字段，{@link EasyPacket#process} 拿到的总是完整的对象。
+ * 适合“每 tick 同步一次状态，但通常只有一两个字段变化”的数据包。
+ * <p>
+ * <b>限制:</b>
+ * <ul>
+ * <li>只能用于 {@link com.mx_wj.networkHelper.network.core.info.PacketDirection#SERVER_TO_CLIENT} 的数据包。</li>
+ * <li>最多支持 64 个可序列化字段。</li>
+ * <li>必须通过 {@link com.mx_wj.networkHelper.network.core.PacketManager} 的发送方法发送，不能直接使用底层的网络通道。</li>
+ * <li>每个接收方最多为这类数据包保留 {@link #maxKeys()} 个键的快照，见下文。</li>
+ * </ul>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DeltaSync {
+
+    /**
+     * 每个接收方为这类数据包保留快照的键（{@link DeltaKey} 字段的取值组合）的数量上限。
+     * <p>
+     * 以方块坐标等为键时，玩家在世界中移动会不断遇到新的键。超过上限后，发送方和接收方都淘汰最久没有发送的键，
+     * 之后再发送这个键时是完整的。两端按同样的规则淘汰，不需要额外的消息。
+     * 快照占用的内存约为上限乘以一次完整编码的大小。
+     */
+    int maxKeys() default 1024;
+}
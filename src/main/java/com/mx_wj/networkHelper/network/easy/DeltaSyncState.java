@@ -0,0 +1,309 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 增量同步（{@link DeltaSync}）的编解码逻辑与快照状态。
+ * <p>
+ * 发送方为每个连接、每个数据包键记录上一次发出的逐字段编码结果；接收方为每个数据包键缓存完整的逐字段编码结果。
+ * 线上格式为：
+ * <pre>
+ * [空值位图，仅当有 @Nullable 字段时存在]
+ * [每个 @DeltaKey 字段: VarInt 长度 + 编码]
+ * [VarLong 变更掩码，第 i 位对应第 i 个字段]
+ * [每个被标记的字段: VarInt 长度 + 编码]
+ * </pre>
+ * 接收方用缓存补齐未变更的字段，拼回完整编码后交给普通的编解码器解码，因此增量模式支持所有字段类型。
+ * <p>
+ * 发送方的快照在编码时更新。同一个连接上同一类数据包是按编码顺序送达的，所以两端的快照始终一致；
+ * 新的连接没有快照，第一次发送总是完整的。
+ * <p>
+ * 每个连接上每个数据包类最多保留 {@link DeltaSync#maxKeys()} 个键的快照。超过上限时两端都淘汰最久没有用到的键，
+ * 之后再发送这个键时是完整的。两端对同一类数据包按相同的顺序访问快照，淘汰的键也相同，因此不需要额外的消息。
+ */
+public final class DeltaSyncState {
+
+    /**
+     * 变更掩码是一个 long，因此最多支持 64 个字段。
+     */
+    static final int MAX_FIELDS = 64;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final Map<Connection, Map<Class<?>, Snapshots>> sent = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Snapshots> received = new ConcurrentHashMap<>();
+
+    /**
+     * 每个类的增量布局，不是增量数据包的类对应 {@link #NOT_DELTA}。
+     */
+    private static final ClassValue<Layout> layouts = new ClassValue<>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return createLayout(type);
+        }
+    };
+
+    private static final Layout NOT_DELTA = new Layout(0, new int[0], 0L, false, 0);
+
+    /**
+     * @param fieldCount  可序列化字段的数量。
+     * @param keyFields   键字段的下标。
+     * @param keyMask     键字段在变更掩码中对应的位。
+     * @param hasNullBits 完整编码是否以空值位图开头。
+     * @param maxKeys     每个连接上保留的快照数上限。
+     */
+    private record Layout(int fieldCount, int[] keyFields, long keyMask, boolean hasNullBits, int maxKeys) {}
+
+    /**
+     * 快照的键：所有键字段编码后的字节。
+     */
+    private record Key(byte[] key) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Arrays.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(key);
+        }
+    }
+
+    /**
+     * 一个连接上一类数据包的快照，按访问顺序排列，超过上限时淘汰最久没有用到的键。
+     * 每次编码或解码都先读取、再写入同一个键，两端的访问顺序相同。
+     */
+    private static final class Snapshots extends LinkedHashMap<Key, byte[][]> {
+        private final int capacity;
+
+        private Snapshots(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, byte[][]> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private DeltaSyncState() {}
+
+    /**
+     * @return 该类是否启用了增量同步。
+     * @throws IllegalArgumentException 如果该类启用了增量同步，但字段不满足要求。
+     */
+    static boolean isDelta(Class<?> type) {
+        return layouts.get(type) != NOT_DELTA;
+    }
+
+    private static Layout createLayout(Class<?> type) {
+        if (!type.isAnnotationPresent(DeltaSync.class)) {
+            return NOT_DELTA;
+        }
+        int maxKeys = type.getAnnotation(DeltaSync.class).maxKeys();
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("@DeltaSync packet " + type.getSimpleName() + " must keep at least one snapshot, but maxKeys is " + maxKeys + ".");
+        }
+        List<Field> fields = EasyPacket.getSerializableFields(type);
+        if (fields.size() > MAX_FIELDS) {
+            throw new IllegalArgumentException("@DeltaSync packet " + type.getSimpleName() + " has " + fields.size() + " fields, but at most " + MAX_FIELDS + " are supported.");
+        }
+        int[] keyFields = new int[fields.size()];
+        int keyCount = 0;
+        long keyMask = 0L;
+        boolean hasNullBits = false;
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).isAnnotationPresent(DeltaKey.class)) {
+                keyFields[keyCount++] = i;
+                keyMask |= 1L << i;
+            }
+            hasNullBits |= EasyFieldSerializers.isNullable(fields.get(i));
+        }
+        return new Layout(fields.size(), Arrays.copyOf(keyFields, keyCount), keyMask, hasNullBits, maxKeys);
+    }
+
+    /**
+     * 按目标连接上的快照，把数据包编码为增量格式，并更新快照。
+     */
+    static void encode(EasyPacket packet, EasyPacketCodec codec, FriendlyByteBuf buf, Connection target) {
+        Layout layout = layouts.get(packet.getClass());
+        byte[][] split = split(packet, codec, layout.fieldCount());
+        byte[] header = split[0];
+        byte[][] fields = Arrays.copyOfRange(split, 1, split.length);
+        Key key = new Key(joinKey(fields, layout));
+
+        // 已经断开的连接不再记录快照，否则它会一直留在表中。
+        Snapshots snapshots = target.isConnected()
+                ? sent.computeIfAbsent(target, c -> new ConcurrentHashMap<>()).computeIfAbsent(packet.getClass(), c -> new Snapshots(layout.maxKeys()))
+                : null;
+        byte[][] previous = null;
+        if (snapshots != null) {
+            synchronized (snapshots) {
+                previous = snapshots.get(key);
+            }
+        }
+
+        long mask = 0L;
+        for (int i = 0; i < fields.length; i++) {
+            if ((layout.keyMask() & (1L << i)) == 0 && (previous == null || !Arrays.equals(previous[i], fields[i]))) {
+                mask |= 1L << i;
+            }
+        }
+
+        // 空值位图本身是自定界的 VarLong，原样写出即可。
+        buf.writeBytes(header);
+        for (int index : layout.keyFields()) {
+            buf.writeByteArray(fields[index]);
+        }
+        buf.writeVarLong(mask);
+        for (int i = 0; i < fields.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                buf.writeByteArray(fields[i]);
+            }
+        }
+
+        if (snapshots != null) {
+            synchronized (snapshots) {
+                snapshots.put(key, fields);
+            }
+        }
+    }
+
+    /**
+     * 读取增量格式的数据，用缓存补齐未变更的字段，然后用普通的编解码器填充数据包。
+     *
+     * @throws IllegalStateException 如果收到了增量数据，但本地没有对应的快照。
+     */
+    static void decode(EasyPacket packet, EasyPacketCodec codec, FriendlyByteBuf buf) {
+        Layout layout = layouts.get(packet.getClass());
+        FriendlyByteBuf full = new FriendlyByteBuf(Unpooled.buffer());
+        if (layout.hasNullBits()) {
+            full.writeVarLong(buf.readVarLong());
+        }
+        byte[][] fields = new byte[layout.fieldCount()][];
+        for (int index : layout.keyFields()) {
+            fields[index] = buf.readByteArray();
+        }
+        Key key = new Key(joinKey(fields, layout));
+
+        long mask = buf.readVarLong();
+        long validBits = layout.fieldCount() == MAX_FIELDS ? -1L : (1L << layout.fieldCount()) - 1;
+        if ((mask & ~validBits) != 0 || (mask & layout.keyMask()) != 0) {
+            throw new IllegalStateException("Invalid delta mask " + Long.toHexString(mask) + " for " + packet.getClass().getSimpleName());
+        }
+
+        Snapshots snapshots = received.computeIfAbsent(packet.getClass(), c -> new Snapshots(layout.maxKeys()));
+        byte[][] previous;
+        synchronized (snapshots) {
+            previous = snapshots.get(key);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if ((layout.keyMask() & (1L << i)) != 0) {
+                continue;
+            }
+            if ((mask & (1L << i)) != 0) {
+                fields[i] = buf.readByteArray();
+            } else if (previous != null) {
+                fields[i] = previous[i];
+            } else {
+                throw new IllegalStateException("Received a delta for " + packet.getClass().getSimpleName() + " without a full snapshot");
+            }
+        }
+        synchronized (snapshots) {
+            snapshots.put(key, fields);
+        }
+
+        for (byte[] field : fields) {
+            full.writeBytes(field);
+        }
+        codec.decode(packet, full);
+    }
+
+    /**
+     * 把数据包完整编码一次，并拆分为空值位图（下标 0，可能为空）和每个字段（下标 1 起）。
+     * 为 {@code null} 的字段对应一个空数组。
+     */
+    private static byte[][] split(EasyPacket packet, EasyPacketCodec codec, int fieldCount) {
+        FriendlyByteBuf scratch = new FriendlyByteBuf(Unpooled.buffer());
+        int[] ends = new int[fieldCount + 1];
+        codec.encode(packet, scratch, ends);
+        byte[][] parts = new byte[fieldCount + 1][];
+        int start = 0;
+        for (int i = 0; i <= fieldCount; i++) {
+            parts[i] = new byte[ends[i] - start];
+            scratch.getBytes(start, parts[i]);
+            start = ends[i];
+        }
+        return parts;
+    }
+
+    private static byte[] joinKey(byte[][] fields, Layout layout) {
+        int[] keyFields = layout.keyFields();
+        if (keyFields.length == 0) {
+            return EMPTY;
+        }
+        if (keyFields.length == 1) {
+            return fields[keyFields[0]];
+        }
+        // 每段前加长度，避免不同的分段拼出相同的字节。
+        FriendlyByteBuf joined = new FriendlyByteBuf(Unpooled.buffer());
+        for (int index : keyFields) {
+            joined.writeByteArray(fields[index]);
+        }
+        byte[] key = new byte[joined.readableBytes()];
+        joined.readBytes(key);
+        return key;
+    }
+
+    /**
+     * 丢弃发往一个连接的某类数据包的所有快照，之后这类数据包会先完整发送一次。由 PacketManager 在已编码的帧最终没有发出时调用。
+     *
+     * @param target 接收方连接。
+     * @param type   数据包类。
+     */
+    public static void discard(Connection target, Class<?> type) {
+        Map<Class<?>, Snapshots> snapshots = sent.get(target);
+        if (snapshots != null) {
+            snapshots.remove(type);
+        }
+    }
+
+    /**
+     * 清除发往某个玩家的所有快照，之后发给这个玩家的每个增量数据包都会先完整发送一次。
+     * 每类数据包的快照数已经受 {@link DeltaSync#maxKeys()} 限制，这个方法只在需要立即释放内存时使用。
+     *
+     * @param player 目标玩家。
+     */
+    public static void reset(ServerPlayer player) {
+        sent.remove(player.connection.connection);
+    }
+
+    /**
+     * 玩家退出时清除发往它的快照。
+     */
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            reset(player);
+        }
+    }
+
+    /**
+     * 客户端断开连接时清除接收到的快照。只会在客户端注册。
+     */
+    public static void onClientLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+        received.clear();
+    }
+}
@@ -0,0 +1,20 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 用每个连接各自的字符串字典编码 {@code String} 或 {@code ResourceLocation} 字段，适用于反复出现的注册名，例如物品ID和配方ID。
+ * <p>
+ * 一个字符串第一次发给某个玩家时连同分配给它的序号一起发送，之后只发送 VarInt 序号。字典的大小有上限，
+ * 满了以后最久没有用到的字符串会被淘汰，它的序号分配给新的字符串，见 {@link StringDictionary}。
+ * <p>
+ * 只有 {@code SERVER_TO_CLIENT} 的数据包能使用字典，而且不能与 {@link DeltaSync} 同时使用。
+ * 只有数据包自身的字段带有这个注解时数据包才会逐个接收方编码；在逐个接收方编码之外（例如作为请求的响应发送时），字符串按原样发送。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Dictionary {
+}
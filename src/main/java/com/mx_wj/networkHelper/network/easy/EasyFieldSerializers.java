@@ -0,0 +1,424 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * EasyPacket 字段的强类型读写方法集合。
+ * <p>
+ * ASM 生成的编解码器通过 INVOKESTATIC 直接调用这里的方法，而不是直接调用 {@link FriendlyByteBuf}。
+ * 这是因为生产环境中 Minecraft 的方法名会被重映射为 SRG 名称，而这个类会随模组一起被重映射，
+ * 因此生成的字节码只需要引用这个类中固定不变的方法名即可。
+ * <p>
+ * 每种受支持的字段类型都对应一对 {@code write<后缀>} / {@code read<后缀>} 方法，后缀由 {@link #suffixOf(Class)} 给出。
+ * 字段上的紧凑编码注解（{@link VarInt}、{@link ZigZag}、{@link Unsigned}、{@link Quantized}、{@link Dictionary}）会选择另一对方法，
+ * 注解中的参数作为额外的常量参数传入，见 {@link #encodingOf(Field)}。
+ * 其余的复合类型（集合、枚举、记录等）没有对应的静态方法，由 {@link EasyValueCodecs} 组合出的 {@link EasyValueCodec} 处理。
+ */
+public final class EasyFieldSerializers {
+
+    /**
+     * 字段类型到读写方法名后缀的映射。
+     */
+    private static final Map<Class<?>, String> SUFFIXES = new HashMap<>();
+
+    static {
+        SUFFIXES.put(int.class, "Int");
+        SUFFIXES.put(Integer.class, "BoxedInt");
+        SUFFIXES.put(String.class, "String");
+        SUFFIXES.put(boolean.class, "Boolean");
+        SUFFIXES.put(Boolean.class, "BoxedBoolean");
+        SUFFIXES.put(long.class, "Long");
+        SUFFIXES.put(Long.class, "BoxedLong");
+        SUFFIXES.put(float.class, "Float");
+        SUFFIXES.put(Float.class, "BoxedFloat");
+        SUFFIXES.put(double.class, "Double");
+        SUFFIXES.put(Double.class, "BoxedDouble");
+        SUFFIXES.put(byte[].class, "ByteArray");
+        SUFFIXES.put(CompoundTag.class, "Nbt");
+        SUFFIXES.put(ItemStack.class, "Item");
+        SUFFIXES.put(LazyPayload.class, "LazyPayload");
+        SUFFIXES.put(BlockPos.class, "BlockPos");
+        SUFFIXES.put(ResourceLocation.class, "ResourceLocation");
+        SUFFIXES.put(Component.class, "Component");
+        SUFFIXES.put(UUID.class, "UUID");
+        SUFFIXES.put(int[].class, "IntArray");
+        SUFFIXES.put(long[].class, "LongArray");
+        SUFFIXES.put(float[].class, "FloatArray");
+        SUFFIXES.put(short[].class, "ShortArray");
+    }
+
+    /**
+     * 空值位图是一个 long，因此每个对象最多支持 64 个可空字段。
+     */
+    public static final int MAX_NULLABLE_FIELDS = 64;
+
+    private EasyFieldSerializers() {}
+
+    /**
+     * 一个字段的线上编码方式。{@code writer} / {@code reader} 与 {@code codec} 二者只有一个不为 {@code null}。
+     *
+     * @param writer   写方法，参数为 {@code (FriendlyByteBuf, 字段值, args...)}
+     * @param reader   读方法，参数为 {@code (FriendlyByteBuf, args...)}
+     * @param args     写入值之后传给读写方法的常量参数，只会是 {@link Integer} 或 {@link Double}
+     * @param codec    复合类型的编解码器
+     * @param nullable 字段是否允许为 {@code null}，见 {@link Nullable}
+     */
+    public record FieldEncoding(Method writer, Method reader, Object[] args, EasyValueCodec<?> codec, boolean nullable) {}
+
+    /**
+     * 判断字段是否允许为 {@code null}：字段上有框架自带的 {@link Nullable} 注解。
+     * 其他库的同名注解不会被识别，否则添加一个第三方注解就会悄悄地改变线上格式。
+     */
+    public static boolean isNullable(Field field) {
+        return field.isAnnotationPresent(Nullable.class);
+    }
+
+    /**
+     * 根据字段类型和字段上的紧凑编码注解，确定字段的编码方式。生成的编解码器和反射编解码器都使用它，以保证两者的数据格式一致。
+     *
+     * @param field 要编码的字段
+     * @return 字段的编码方式
+     * @throws IllegalArgumentException 如果字段类型不受支持，或注解与字段类型不匹配
+     */
+    public static FieldEncoding encodingOf(Field field) {
+        Class<?> type = field.getType();
+        VarInt varInt = field.getAnnotation(VarInt.class);
+        ZigZag zigZag = field.getAnnotation(ZigZag.class);
+        Unsigned unsigned = field.getAnnotation(Unsigned.class);
+        Quantized quantized = field.getAnnotation(Quantized.class);
+        Dictionary dictionary = field.getAnnotation(Dictionary.class);
+        int annotations = (varInt != null ? 1 : 0) + (zigZag != null ? 1 : 0) + (unsigned != null ? 1 : 0) + (quantized != null ? 1 : 0)
+                + (dictionary != null ? 1 : 0);
+        if (annotations > 1) {
+            throw new IllegalArgumentException("Field " + field.getName() + " has more than one encoding annotation.");
+        }
+        boolean nullable = isNullable(field);
+        if (nullable && type.isPrimitive()) {
+            throw new IllegalArgumentException("Primitive field " + field.getName() + " cannot be @Nullable.");
+        }
+
+        String suffix;
+        Object[] args = new Object[0];
+        if (varInt != null) {
+            suffix = type == int.class ? "VarInt" : type == long.class ? "VarLong" : null;
+        } else if (zigZag != null) {
+            suffix = type == int.class ? "ZigZagInt" : type == long.class ? "ZigZagLong" : null;
+        } else if (unsigned != null) {
+            if (unsigned.bits() != 8 && unsigned.bits() != 16 && unsigned.bits() != 24) {
+                throw new IllegalArgumentException("@Unsigned bits of field " + field.getName() + " must be 8, 16 or 24, but is " + unsigned.bits());
+            }
+            suffix = type == int.class ? "UnsignedInt" : null;
+            args = new Object[]{unsigned.bits()};
+        } else if (quantized != null) {
+            if (quantized.bits() < 1 || quantized.bits() > 32) {
+                throw new IllegalArgumentException("@Quantized bits of field " + field.getName() + " must be between 1 and 32, but is " + quantized.bits());
+            }
+            if (!(quantized.min() < quantized.max())) {
+                throw new IllegalArgumentException("@Quantized min of field " + field.getName() + " must be less than max.");
+            }
+            suffix = type == float.class ? "QuantizedFloat" : type == double.class ? "QuantizedDouble" : null;
+            args = new Object[]{quantized.bits(), quantized.min(), quantized.max()};
+        } else if (dictionary != null) {
+            suffix = type == String.class ? "DictionaryString" : type == ResourceLocation.class ? "DictionaryResourceLocation" : null;
+            if (suffix == null) {
+                throw new IllegalArgumentException("@Dictionary on field " + field.getName() + " requires a String or ResourceLocation field, but is " + type.getName());
+            }
+        } else {
+            suffix = suffixOf(type);
+            if (suffix == null) {
+                // 不是标量类型，按泛型类型组合编解码器；不受支持的类型会在这里抛出异常。
+                return new FieldEncoding(null, null, args, EasyValueCodecs.forType(field.getGenericType()), nullable);
+            }
+        }
+        if (suffix == null) {
+            throw new IllegalArgumentException("The encoding annotation on field " + field.getName() + " is not supported for type " + type.getName()
+                    + ", compact encodings require a primitive field.");
+        }
+
+        Class<?>[] argTypes = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            argTypes[i] = args[i] instanceof Integer ? int.class : double.class;
+        }
+        Class<?>[] writerParams = new Class<?>[args.length + 2];
+        writerParams[0] = FriendlyByteBuf.class;
+        writerParams[1] = type;
+        System.arraycopy(argTypes, 0, writerParams, 2, args.length);
+        Class<?>[] readerParams = new Class<?>[args.length + 1];
+        readerParams[0] = FriendlyByteBuf.class;
+        System.arraycopy(argTypes, 0, readerParams, 1, args.length);
+        try {
+            return new FieldEncoding(
+                    EasyFieldSerializers.class.getMethod("write" + suffix, writerParams),
+                    EasyFieldSerializers.class.getMethod("read" + suffix, readerParams),
+                    args, null, nullable);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Missing serializer methods for suffix " + suffix, e);
+        }
+    }
+
+    /**
+     * 获取某个字段类型对应的读写方法名后缀。
+     *
+     * @param type 字段类型
+     * @return 方法名后缀，如果该类型不受支持则返回 {@code null}
+     */
+    public static String suffixOf(Class<?> type) {
+        return SUFFIXES.get(type);
+    }
+
+    public static void writeInt(FriendlyByteBuf buf, int value) { buf.writeInt(value); }
+    public static int readInt(FriendlyByteBuf buf) { return buf.readInt(); }
+
+    public static void writeBoxedInt(FriendlyByteBuf buf, Integer value) { buf.writeInt(value); }
+    public static Integer readBoxedInt(FriendlyByteBuf buf) { return buf.readInt(); }
+
+    public static void writeString(FriendlyByteBuf buf, String value) { buf.writeUtf(value); }
+    public static String readString(FriendlyByteBuf buf) { return buf.readUtf(); }
+
+    public static void writeBoolean(FriendlyByteBuf buf, boolean value) { buf.writeBoolean(value); }
+    public static boolean readBoolean(FriendlyByteBuf buf) { return buf.readBoolean(); }
+
+    public static void writeBoxedBoolean(FriendlyByteBuf buf, Boolean value) { buf.writeBoolean(value); }
+    public static Boolean readBoxedBoolean(FriendlyByteBuf buf) { return buf.readBoolean(); }
+
+    public static void writeLong(FriendlyByteBuf buf, long value) { buf.writeLong(value); }
+    public static long readLong(FriendlyByteBuf buf) { return buf.readLong(); }
+
+    public static void writeBoxedLong(FriendlyByteBuf buf, Long value) { buf.writeLong(value); }
+    public static Long readBoxedLong(FriendlyByteBuf buf) { return buf.readLong(); }
+
+    public static void writeFloat(FriendlyByteBuf buf, float value) { buf.writeFloat(value); }
+    public static float readFloat(FriendlyByteBuf buf) { return buf.readFloat(); }
+
+    public static void writeBoxedFloat(FriendlyByteBuf buf, Float value) { buf.writeFloat(value); }
+    public static Float readBoxedFloat(FriendlyByteBuf buf) { return buf.readFloat(); }
+
+    public static void writeDouble(FriendlyByteBuf buf, double value) { buf.writeDouble(value); }
+    public static double readDouble(FriendlyByteBuf buf) { return buf.readDouble(); }
+
+    public static void writeBoxedDouble(FriendlyByteBuf buf, Double value) { buf.writeDouble(value); }
+    public static Double readBoxedDouble(FriendlyByteBuf buf) { return buf.readDouble(); }
+
+    public static void writeByteArray(FriendlyByteBuf buf, byte[] value) { buf.writeByteArray(value); }
+    public static byte[] readByteArray(FriendlyByteBuf buf) { return buf.readByteArray(); }
+
+    public static void writeNbt(FriendlyByteBuf buf, CompoundTag value) { buf.writeNbt(value); }
+    public static CompoundTag readNbt(FriendlyByteBuf buf) { return buf.readNbt(); }
+
+    public static void writeItem(FriendlyByteBuf buf, ItemStack value) { buf.writeItem(value); }
+    public static ItemStack readItem(FriendlyByteBuf buf) { return buf.readItem(); }
+
+    public static void writeLazyPayload(FriendlyByteBuf buf, LazyPayload value) { LazyPayload.write(buf, value); }
+    public static LazyPayload readLazyPayload(FriendlyByteBuf buf) { return LazyPayload.read(buf); }
+
+    public static void writeBlockPos(FriendlyByteBuf buf, BlockPos value) { buf.writeBlockPos(value); }
+    public static BlockPos readBlockPos(FriendlyByteBuf buf) { return buf.readBlockPos(); }
+
+    public static void writeResourceLocation(FriendlyByteBuf buf, ResourceLocation value) { buf.writeResourceLocation(value); }
+    public static ResourceLocation readResourceLocation(FriendlyByteBuf buf) { return buf.readResourceLocation(); }
+
+    public static void writeDictionaryString(FriendlyByteBuf buf, String value) { StringDictionary.writeString(buf, value); }
+    public static String readDictionaryString(FriendlyByteBuf buf) { return StringDictionary.readString(buf); }
+
+    public static void writeDictionaryResourceLocation(FriendlyByteBuf buf, ResourceLocation value) { StringDictionary.writeResourceLocation(buf, value); }
+    public static ResourceLocation readDictionaryResourceLocation(FriendlyByteBuf buf) { return StringDictionary.readResourceLocation(buf); }
+
+    public static void writeComponent(FriendlyByteBuf buf, Component value) { buf.writeComponent(value); }
+    public static Component readComponent(FriendlyByteBuf buf) { return buf.readComponent(); }
+
+    public static void writeUUID(FriendlyByteBuf buf, UUID value) { buf.writeUUID(value); }
+    public static UUID readUUID(FriendlyByteBuf buf) { return buf.readUUID(); }
+
+    public static void writeNullBits(FriendlyByteBuf buf, long value) { buf.writeVarLong(value); }
+    public static long readNullBits(FriendlyByteBuf buf) { return buf.readVarLong(); }
+
+    // --- 基本类型数组 ---
+    // 有底层数组时整块复制，否则（例如直接内存缓冲区）逐个元素写入。
+
+    public static void writeIntArray(FriendlyByteBuf buf, int[] value) {
+        int bytes = beginArray(buf, value.length, Integer.BYTES);
+        if (buf.hasArray()) {
+            ByteBuffer.wrap(buf.array(), buf.arrayOffset() + buf.writerIndex(), bytes).asIntBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                buf.setInt(buf.writerIndex() + i * Integer.BYTES, value[i]);
+            }
+        }
+        buf.writerIndex(buf.writerIndex() + bytes);
+    }
+
+    public static int[] readIntArray(FriendlyByteBuf buf) {
+        int[] value = new int[readArrayLength(buf, Integer.BYTES)];
+        int bytes = value.length * Integer.BYTES;
+        buf.nioBuffer(buf.readerIndex(), bytes).asIntBuffer().get(value);
+        buf.skipBytes(bytes);
+        return value;
+    }
+
+    public static void writeLongArray(FriendlyByteBuf buf, long[] value) {
+        int bytes = beginArray(buf, value.length, Long.BYTES);
+        if (buf.hasArray()) {
+            ByteBuffer.wrap(buf.array(), buf.arrayOffset() + buf.writerIndex(), bytes).asLongBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                buf.setLong(buf.writerIndex() + i * Long.BYTES, value[i]);
+            }
+        }
+        buf.writerIndex(buf.writerIndex() + bytes);
+    }
+
+    public static long[] readLongArray(FriendlyByteBuf buf) {
+        long[] value = new long[readArrayLength(buf, Long.BYTES)];
+        int bytes = value.length * Long.BYTES;
+        buf.nioBuffer(buf.readerIndex(), bytes).asLongBuffer().get(value);
+        buf.skipBytes(bytes);
+        return value;
+    }
+
+    public static void writeFloatArray(FriendlyByteBuf buf, float[] value) {
+        int bytes = beginArray(buf, value.length, Float.BYTES);
+        if (buf.hasArray()) {
+            ByteBuffer.wrap(buf.array(), buf.arrayOffset() + buf.writerIndex(), bytes).asFloatBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                buf.setFloat(buf.writerIndex() + i * Float.BYTES, value[i]);
+            }
+        }
+        buf.writerIndex(buf.writerIndex() + bytes);
+    }
+
+    public static float[] readFloatArray(FriendlyByteBuf buf) {
+        float[] value = new float[readArrayLength(buf, Float.BYTES)];
+        int bytes = value.length * Float.BYTES;
+        buf.nioBuffer(buf.readerIndex(), bytes).asFloatBuffer().get(value);
+        buf.skipBytes(bytes);
+        return value;
+    }
+
+    public static void writeShortArray(FriendlyByteBuf buf, short[] value) {
+        int bytes = beginArray(buf, value.length, Short.BYTES);
+        if (buf.hasArray()) {
+            ByteBuffer.wrap(buf.array(), buf.arrayOffset() + buf.writerIndex(), bytes).asShortBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                buf.setShort(buf.writerIndex() + i * Short.BYTES, value[i]);
+            }
+        }
+        buf.writerIndex(buf.writerIndex() + bytes);
+    }
+
+    public static short[] readShortArray(FriendlyByteBuf buf) {
+        short[] value = new short[readArrayLength(buf, Short.BYTES)];
+        int bytes = value.length * Short.BYTES;
+        buf.nioBuffer(buf.readerIndex(), bytes).asShortBuffer().get(value);
+        buf.skipBytes(bytes);
+        return value;
+    }
+
+    /**
+     * 写入数组长度并预留空间，返回数组内容的字节数。
+     */
+    private static int beginArray(FriendlyByteBuf buf, int length, int elementBytes) {
+        buf.writeVarInt(length);
+        int bytes = length * elementBytes;
+        buf.ensureWritable(bytes);
+        return bytes;
+    }
+
+    /**
+     * 读取数组长度，并在分配数组之前确认剩余的字节足够，防止伪造的长度导致巨大的分配。
+     */
+    private static int readArrayLength(FriendlyByteBuf buf, int elementBytes) {
+        int length = buf.readVarInt();
+        if (length < 0 || (long) length * elementBytes > buf.readableBytes()) {
+            throw new IllegalStateException("Invalid array length " + length + ", only " + buf.readableBytes() + " bytes remaining");
+        }
+        return length;
+    }
+
+    // --- 紧凑编码 ---
+
+    public static void writeVarInt(FriendlyByteBuf buf, int value) { buf.writeVarInt(value); }
+    public static int readVarInt(FriendlyByteBuf buf) { return buf.readVarInt(); }
+
+    public static void writeVarLong(FriendlyByteBuf buf, long value) { buf.writeVarLong(value); }
+    public static long readVarLong(FriendlyByteBuf buf) { return buf.readVarLong(); }
+
+    public static void writeZigZagInt(FriendlyByteBuf buf, int value) { buf.writeVarInt((value << 1) ^ (value >> 31)); }
+    public static int readZigZagInt(FriendlyByteBuf buf) {
+        int raw = buf.readVarInt();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public static void writeZigZagLong(FriendlyByteBuf buf, long value) { buf.writeVarLong((value << 1) ^ (value >> 63)); }
+    public static long readZigZagLong(FriendlyByteBuf buf) {
+        long raw = buf.readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public static void writeUnsignedInt(FriendlyByteBuf buf, int value, int bits) {
+        if (value < 0 || value >= 1 << bits) {
+            throw new IllegalArgumentException("Value " + value + " does not fit into " + bits + " unsigned bits");
+        }
+        writeBits(buf, value, bits);
+    }
+    public static int readUnsignedInt(FriendlyByteBuf buf, int bits) { return (int) readBits(buf, bits); }
+
+    public static void writeQuantizedFloat(FriendlyByteBuf buf, float value, int bits, double min, double max) { writeBits(buf, quantize(value, bits, min, max), bits); }
+    public static float readQuantizedFloat(FriendlyByteBuf buf, int bits, double min, double max) { return (float) dequantize(readBits(buf, bits), bits, min, max); }
+
+    public static void writeQuantizedDouble(FriendlyByteBuf buf, double value, int bits, double min, double max) { writeBits(buf, quantize(value, bits, min, max), bits); }
+    public static double readQuantizedDouble(FriendlyByteBuf buf, int bits, double min, double max) { return dequantize(readBits(buf, bits), bits, min, max); }
+
+    private static long quantize(double value, int bits, double min, double max) {
+        long steps = (1L << bits) - 1;
+        if (!(value > min)) {
+            // 包括 NaN
+            return 0;
+        }
+        if (value >= max) {
+            return steps;
+        }
+        return Math.round((value - min) / (max - min) * steps);
+    }
+
+    private static double dequantize(long quantized, int bits, double min, double max) {
+        long steps = (1L << bits) - 1;
+        return quantized == steps ? max : min + (max - min) * quantized / steps;
+    }
+
+    /**
+     * 用 {@code bits} 向上取整到字节的长度写入一个无符号整数。
+     */
+    private static void writeBits(FriendlyByteBuf buf, long value, int bits) {
+        switch ((bits + 7) >> 3) {
+            case 1 -> buf.writeByte((int) value);
+            case 2 -> buf.writeShort((int) value);
+            case 3 -> buf.writeMedium((int) value);
+            default -> buf.writeInt((int) value);
+        }
+    }
+
+    private static long readBits(FriendlyByteBuf buf, int bits) {
+        long value = switch ((bits + 7) >> 3) {
+            case 1 -> buf.readUnsignedByte();
+            case 2 -> buf.readUnsignedShort();
+            case 3 -> buf.readUnsignedMedium();
+            default -> buf.readUnsignedInt();
+        };
+        // 不信任对方发来的高位，超出范围的刻度按最大值处理。
+        return Math.min(value, (1L << bits) - 1);
+    }
+}
@@ -1,8 +1,10 @@
 package com.mx_wj.networkHelper.network.easy;
 
-import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.ASMUtil;
+import com.mx_wj.networkHelper.network.core.info.IPooledPacket;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.Connection;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
@@ -16,38 +18,87 @@ import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * 一个“懒人包”基类，通过反射自动处理字段的序列化和反序列化。
+ * 一个“懒人包”基类，自动处理字段的序列化和反序列化。
+ * 注册时会通过 {@link ASMUtil#createEasyCodec} 为每个子类生成专用的编解码器；只有生成失败时才回退到基于 VarHandle 的反射实现。
  * 继承此类后，您只需要在子类中定义要同步的字段，并实现 {@link #process(NetworkEvent.Context)} 方法来处理数据包逻辑即可。
  * <p>
  * <b>支持的字段类型:</b>
  * <ul>
  * <li>int, String, boolean, long, float, double, byte[]</li>
  * <li>{@link CompoundTag}, {@link ItemStack}, {@link BlockPos}, {@link ResourceLocation}, {@link Component}, {@link UUID}</li>
+ * <li>{@link LazyPayload}：不复制、延迟解码的二进制负载，在 {@link #process} 返回后自动释放</li>
+ * <li>int[], long[], float[], short[]，以及 List、Set、Map、Optional、枚举、记录和 {@link EasyValue} 嵌套对象（见 {@link EasyValueCodecs}）</li>
  * </ul>
+ * 数值字段默认按固定长度编码，可以用 {@link VarInt}、{@link ZigZag}、{@link Unsigned}、{@link Quantized} 注解选择更紧凑的编码。
+ * 反复出现的 String 和 ResourceLocation 字段可以用 {@link Dictionary} 注解按每个连接的字典编码。
+ * <p>
  * <b>注意:</b>
  * <ul>
  * <li>字段<b>不能</b>是 {@code final} 的。</li>
  * <li>{@code static} 和 {@code transient} 修饰的字段会被自动忽略。</li>
+ * <li>字段默认不能为 {@code null}，允许为空的引用类型字段需要标注 {@link Nullable}。</li>
  * </ul>
+ * 对于频繁发送、但每次只有少数字段变化的状态同步数据包，可以用 {@link DeltaSync} 启用增量同步。
  */
-public abstract class EasyPacket implements IPacket {
+public abstract class EasyPacket implements IPooledPacket {
     private static final Logger LOGGER = LogManager.getLogger();
     /**
-     * 缓存每个数据包类的 VarHandle 列表，避免每次都通过反射获取，提高性能。
+     * 缓存每个数据包类的编解码器。优先使用 ASM 生成的实现，失败时回退到 {@link ReflectiveCodec}。
      */
-    private static final Map<Class<?>, List<VarHandle>> varHandleCache = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, EasyPacketCodec> codecCache = new ConcurrentHashMap<>();
 
     /**
      * 一个拥有最高权限的 MethodHandles.Lookup 实例，可以绕过 Java 的所有可见性和安全检查。
      * 这使得我们可以直接访问私有字段，而无需调用 setAccessible(true)，效率更高。
      */
-    private static final MethodHandles.Lookup IMPL_LOOKUP;
+    static final MethodHandles.Lookup IMPL_LOOKUP;
+
+    /**
+     * 每个数据包类中标注了 {@link DeltaKey} 的字段，用于计算 {@link #coalescingKey()}。
+     */
+    private static final ClassValue<VarHandle[]> keyFields = new ClassValue<>() {
+        @Override
+        protected VarHandle[] computeValue(Class<?> type) {
+            List<VarHandle> handles = new ArrayList<>();
+            for (Field field : getSerializableFields(type)) {
+                if (field.isAnnotationPresent(DeltaKey.class)) {
+                    try {
+                        handles.add(IMPL_LOOKUP.unreflectVarHandle(field));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("Cannot access key field " + field.getName() + " of " + type.getSimpleName(), e);
+                    }
+                }
+            }
+            return handles.toArray(new VarHandle[0]);
+        }
+    };
+
+    /**
+     * 每个数据包类中类型为 {@link LazyPayload} 的字段，执行完毕后由 {@link #releasePayloads()} 释放。
+     */
+    private static final ClassValue<VarHandle[]> payloadFields = new ClassValue<>() {
+        @Override
+        protected VarHandle[] computeValue(Class<?> type) {
+            List<VarHandle> handles = new ArrayList<>();
+            for (Field field : getSerializableFields(type)) {
+                if (field.getType() == LazyPayload.class) {
+                    try {
+                        handles.add(IMPL_LOOKUP.unreflectVarHandle(field));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("Cannot access payload field " + field.getName() + " of " + type.getSimpleName(), e);
+                    }
+                }
+            }
+            return handles.toArray(new VarHandle[0]);
+        }
+    };
 
     static {
         MethodHandles.Lookup found;
@@ -79,13 +130,24 @@ public abstract class EasyPacket implements IPacket {
      * @param buf 包含数据包数据的字节缓冲区。
      */
     public EasyPacket(FriendlyByteBuf buf) {
+        decode(buf);
+    }
+
+    /**
+     * 从字节缓冲区中读取数据，覆盖子类中定义的所有字段。
+     * 解码构造函数和 {@link com.mx_wj.networkHelper.network.core.info.Pooled 实例池} 都通过这个方法填充实例。
+     * 这是一个 final 方法，子类不应覆盖。
+     *
+     * @param buf 包含数据包数据的字节缓冲区。
+     */
+    @Override
+    public final void decode(FriendlyByteBuf buf) {
         try {
-            List<VarHandle> varHandles = getVarHandles(this.getClass());
-            for (VarHandle varHandle : varHandles) {
-                // 根据字段类型从缓冲区读取数据
-                Object value = readField(buf, varHandle.varType());
-                // 将读取到的值设置到当前对象的对应字段上
-                varHandle.set(this, value);
+            EasyPacketCodec codec = getCodec(this.getClass());
+            if (DeltaSyncState.isDelta(this.getClass())) {
+                DeltaSyncState.decode(this, codec, buf);
+            } else {
+                codec.decode(this, buf);
             }
         } catch (Throwable e) {
             LOGGER.error("Failed to deserialize EasyPacket " + this.getClass().getSimpleName(), e);
@@ -100,21 +162,57 @@ public abstract class EasyPacket implements IPacket {
      */
     @Override
     public final void encode(FriendlyByteBuf buf) {
+        if (DeltaSyncState.isDelta(this.getClass())) {
+            // 增量数据包的编码结果取决于接收方，必须通过 encodeDelta 编码。
+            throw new IllegalStateException("@DeltaSync packet " + this.getClass().getSimpleName() + " must be sent through PacketManager.");
+        }
         try {
-            List<VarHandle> varHandles = getVarHandles(this.getClass());
-            for (VarHandle varHandle : varHandles) {
-                // 从当前对象的字段中获取值，并写入到缓冲区
-                writeField(buf, varHandle.get(this));
-            }
+            getCodec(this.getClass()).encode(this, buf);
+        } catch (Throwable e) {
+            LOGGER.error("Failed to serialize EasyPacket " + this.getClass().getSimpleName(), e);
+            throw new RuntimeException("Packet Serialization failed for " + this.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * 按发往目标连接的上一次快照，将数据包编码为增量格式。仅用于标注了 {@link DeltaSync} 的数据包，
+     * 由 PacketManager 在发送时为每个接收方分别调用。
+     *
+     * @param buf    要写入数据的字节缓冲区。
+     * @param target 接收方连接。
+     */
+    public final void encodeDelta(FriendlyByteBuf buf, Connection target) {
+        try {
+            DeltaSyncState.encode(this, getCodec(this.getClass()), buf, target);
         } catch (Throwable e) {
             LOGGER.error("Failed to serialize EasyPacket " + this.getClass().getSimpleName(), e);
             throw new RuntimeException("Packet Serialization failed for " + this.getClass().getSimpleName(), e);
         }
     }
 
+    /**
+     * 由所有标注了 {@link DeltaKey} 的字段的值组成的合并键：没有键字段时为 {@code null}，只有一个时就是它的值，
+     * 否则是按字段顺序排列的值列表。子类可以覆盖这个方法。
+     */
+    @Override
+    public Object coalescingKey() {
+        VarHandle[] handles = keyFields.get(this.getClass());
+        if (handles.length == 0) {
+            return null;
+        }
+        if (handles.length == 1) {
+            return handles[0].get(this);
+        }
+        Object[] values = new Object[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            values[i] = handles[i].get(this);
+        }
+        return Arrays.asList(values);
+    }
+
     /**
      * 执行数据包的核心入口点。
-     * 它会在主游戏线程上调用子类实现的 {@link #process} 方法。
+     * 它会在 {@link com.mx_wj.networkHelper.network.core.info.PacketInfo#execution()} 指定的线程上调用子类实现的 {@link #process} 方法。
      * 这是一个 final 方法，子类不应覆盖。
      * @param context 网络事件的上下文。
      */
@@ -123,91 +221,116 @@ public abstract class EasyPacket implements IPacket {
         this.process(context);
     }
 
+    /**
+     * 释放所有 {@link LazyPayload} 字段持有的接收缓冲区。由 PacketManager 在 {@link #process} 返回后（或数据包被丢弃时）调用，
+     * 子类不需要手动调用。
+     */
+    public final void releasePayloads() {
+        for (VarHandle handle : payloadFields.get(this.getClass())) {
+            LazyPayload payload = (LazyPayload) handle.get(this);
+            if (payload != null) {
+                payload.release();
+            }
+        }
+    }
+
     /**
      * 数据包的核心处理逻辑，由子类实现。
      * 当这个方法被调用时，数据包的所有字段都已经被自动反序列化并填充完毕。
-     * 这个方法保证在主游戏线程上执行，因此可以安全地与游戏世界进行交互。
+     * 默认情况下这个方法在主游戏线程上执行，因此可以安全地与游戏世界进行交互；
+     * 如果 {@link com.mx_wj.networkHelper.network.core.info.PacketInfo#execution()} 指定了其他线程，实现必须是线程安全的。
      *
      * @param context 网络事件的上下文，可以用来获取玩家实体等信息。
      */
     public abstract void process(NetworkEvent.Context context);
 
     /**
-     * 获取并缓存一个类的所有可序列化字段的 VarHandle。
-     * VarHandle 是对字段的强类型引用，比传统的反射性能更好。
+     * 为一个数据包类预先创建编解码器。由 PacketManager 在注册数据包时调用，
+     * 这样字节码生成的开销发生在加载阶段，而不是第一次收发数据包时。
      *
-     * @param clazz 要分析的数据包类。
-     * @return 该类的 VarHandle 列表。
+     * @param clazz 数据包类。
      */
-    private static List<VarHandle> getVarHandles(Class<?> clazz) {
-        return varHandleCache.computeIfAbsent(clazz, key -> {
-            List<VarHandle> handles = new ArrayList<>();
-            for (Field field : key.getDeclaredFields()) {
-                // 忽略 transient (瞬态) 和 static (静态) 字段
-                if (Modifier.isTransient(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) {
-                    continue;
-                }
-                try {
-                    // 使用万能的 IMPL_LOOKUP 来创建 VarHandle，它可以无视 private 等访问修饰符。
-                    // 这比在每个字段上调用 field.setAccessible(true) 更高效、更直接。
-                    handles.add(IMPL_LOOKUP.unreflectVarHandle(field));
-                } catch (IllegalAccessException e) {
-                    // 理论上，使用 IMPL_LOOKUP 时这几乎不可能发生，但为了代码健壮性我们还是处理它。
-                    LOGGER.error("Failed to create VarHandle for field {} using IMPL_LOOKUP", field.getName(), e);
-                    throw new RuntimeException("Failed to create VarHandle for field: " + field.getName(), e);
-                }
-            }
-            return handles;
-        });
+    public static void prepareCodec(Class<? extends EasyPacket> clazz) {
+        getCodec(clazz);
+        // 同时检查增量同步的字段布局，让不合法的 @DeltaSync 数据包在加载阶段就报错。
+        DeltaSyncState.isDelta(clazz);
+    }
+
+    /**
+     * 获取并缓存一个类的编解码器。
+     *
+     * @param clazz 数据包类。
+     * @return 该类的编解码器。
+     */
+    static EasyPacketCodec getCodec(Class<?> clazz) {
+        return codecCache.computeIfAbsent(clazz, EasyPacket::createCodec);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EasyPacketCodec createCodec(Class<?> clazz) {
+        List<Field> fields = getSerializableFields(clazz);
+        try {
+            // IMPL_LOOKUP.in(clazz) 拥有对数据包类的完全访问权限，可以在其嵌套组中定义隐藏类。
+            return ASMUtil.createEasyCodec((Class<? extends EasyPacket>) clazz, IMPL_LOOKUP.in(clazz), fields);
+        } catch (Throwable t) {
+            LOGGER.warn("Could not generate codec for EasyPacket {}, falling back to reflective serialization.", clazz.getName(), t);
+            return new ReflectiveCodec(fields);
+        }
+    }
+
+    /**
+     * 创建一个不经过 ASM 生成的反射编解码器，用于和生成的编解码器做对比（例如基准测试）。
+     *
+     * @param clazz 数据包类。
+     * @return 该类的反射编解码器，数据格式与 {@link #getCodec} 返回的编解码器相同。
+     */
+    static EasyPacketCodec createReflectiveCodec(Class<?> clazz) {
+        return new ReflectiveCodec(getSerializableFields(clazz));
     }
 
     /**
-     * 根据值的类型，将其写入到字节缓冲区。
-     * @param buf   字节缓冲区。
-     * @param value 要写入的对象值。
-     */
-    private static void writeField(FriendlyByteBuf buf, Object value) {
-        if (value instanceof Integer) buf.writeInt((Integer) value);
-        else if (value instanceof String) buf.writeUtf((String) value);
-        else if (value instanceof Boolean) buf.writeBoolean((Boolean) value);
-        else if (value instanceof Long) buf.writeLong((Long) value);
-        else if (value instanceof Float) buf.writeFloat((Float) value);
-        else if (value instanceof Double) buf.writeDouble((Double) value);
-        else if (value instanceof byte[]) buf.writeByteArray((byte[]) value);
-        else if (value instanceof CompoundTag) buf.writeNbt((CompoundTag) value);
-        else if (value instanceof ItemStack) buf.writeItem((ItemStack) value);
-        else if (value instanceof BlockPos) buf.writeBlockPos((BlockPos) value);
-        else if (value instanceof ResourceLocation) buf.writeResourceLocation((ResourceLocation) value);
-        else if (value instanceof Component) buf.writeComponent((Component) value);
-        else if (value instanceof UUID) buf.writeUUID((UUID) value);
-        else {
-            throw new IllegalArgumentException("EasyPacket does not support automatic serialization for this field type: " + (value != null ? value.getClass().getName() : "null"));
+     * 获取一个类的所有可序列化字段，顺序即为线上的字段顺序。
+     * 生成的编解码器和反射编解码器都使用这个方法，以保证两者的数据格式一致。
+     *
+     * @param clazz 要分析的数据包类。
+     * @return 可序列化字段列表。
+     */
+    static List<Field> getSerializableFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            // 忽略 transient (瞬态) 和 static (静态) 字段
+            if (Modifier.isTransient(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            fields.add(field);
         }
+        return fields;
     }
 
     /**
-     * 根据字段类型，从字节缓冲区中读取相应的数据。
-     * @param buf  字节缓冲区。
-     * @param type 目标字段的 Class 类型。
-     * @return 从缓冲区读取并转换后的对象。
-     */
-    private static Object readField(FriendlyByteBuf buf, Class<?> type) {
-        if (type == int.class || type == Integer.class) return buf.readInt();
-        if (type == String.class) return buf.readUtf();
-        if (type == boolean.class || type == Boolean.class) return buf.readBoolean();
-        if (type == long.class || type == Long.class) return buf.readLong();
-        if (type == float.class || type == Float.class) return buf.readFloat();
-        if (type == double.class || type == Double.class) return buf.readDouble();
-        if (type == byte[].class) return buf.readByteArray();
-        if (type == CompoundTag.class) return buf.readNbt();
-        if (type == ItemStack.class) return buf.readItem();
-        if (type == BlockPos.class) return buf.readBlockPos();
-        if (type == ResourceLocation.class) return buf.readResourceLocation();
-        if (type == Component.class) return buf.readComponent();
-        if (type == UUID.class) return buf.readUUID();
-        else {
-            throw new IllegalArgumentException("EasyPacket does not support automatic deserialization for this field type: " + type.getName());
+     * 基于 VarHandle 和方法句柄的反射编解码器，仅在 ASM 生成失败时作为后备使用。
+     * 它通过 {@link EasyValueCodecs.FieldsCodec} 调用与生成的编解码器相同的读写方法，因此数据格式完全一致。
+     */
+    private static final class ReflectiveCodec implements EasyPacketCodec {
+        private final EasyValueCodecs.FieldsCodec fields;
+
+        private ReflectiveCodec(List<Field> fields) {
+            this.fields = new EasyValueCodecs.FieldsCodec(fields);
+        }
+
+        @Override
+        public void encode(EasyPacket packet, FriendlyByteBuf buf) {
+            fields.encode(packet, buf, null);
+        }
+
+        @Override
+        public void encode(EasyPacket packet, FriendlyByteBuf buf, int[] fieldEnds) {
+            fields.encode(packet, buf, fieldEnds);
+        }
+
+        @Override
+        public void decode(EasyPacket packet, FriendlyByteBuf buf) {
+            fields.decode(packet, buf);
         }
     }
 }
-
@@ -0,0 +1,39 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import net.minecraft.network.FriendlyByteBuf;
+
+/**
+ * {@link EasyPacket} 的字段编解码器。
+ * <p>
+ * 每个 EasyPacket 子类对应一个编解码器实例。默认由 {@link com.mx_wj.networkHelper.network.core.ASMUtil}
+ * 在注册时生成直线式的字节码实现；当生成失败时，回退到基于 VarHandle 的反射实现。
+ */
+public interface EasyPacketCodec {
+
+    /**
+     * 将数据包的所有可序列化字段写入缓冲区。
+     *
+     * @param packet 要编码的数据包实例
+     * @param buf    目标缓冲区
+     */
+    void encode(EasyPacket packet, FriendlyByteBuf buf);
+
+    /**
+     * 与 {@link #encode(EasyPacket, FriendlyByteBuf)} 相同，同时在 {@code fieldEnds[0]} 中记录空值位图（如果有）之后的写索引，
+     * 在 {@code fieldEnds[i + 1]} 中记录写完第 i 个字段后的写索引。
+     * 增量同步（见 {@link DeltaSync}）据此把编码结果拆分为逐字段的字节。
+     *
+     * @param packet    要编码的数据包实例
+     * @param buf       目标缓冲区
+     * @param fieldEnds 长度至少为字段数量加一的数组
+     */
+    void encode(EasyPacket packet, FriendlyByteBuf buf, int[] fieldEnds);
+
+    /**
+     * 从缓冲区读取数据，并填充到数据包的字段中。
+     *
+     * @param packet 要填充的数据包实例
+     * @param buf    来源缓冲区
+     */
+    void decode(EasyPacket packet, FriendlyByteBuf buf);
+}
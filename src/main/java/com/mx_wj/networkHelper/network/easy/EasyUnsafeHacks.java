@@ -4,6 +4,7 @@ import com.mx_wj.networkHelper.NetworkHelperMod;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 
 public class EasyUnsafeHacks {
     private static final Unsafe UNSAFE;
@@ -27,4 +28,22 @@ public class EasyUnsafeHacks {
         }
         return (T)UNSAFE.getObject(UNSAFE.staticFieldBase(field), UNSAFE.staticFieldOffset(field));
     }
+
+    /**
+     * 立即释放一个直接缓冲区或内存映射缓冲区，之后不能再访问它或它的任何视图。
+     * 内存映射的文件在释放之前无法在 Windows 上删除。
+     *
+     * @return 是否已经释放；Unsafe 不可用时返回 {@code false}，缓冲区要等到被 GC 回收时才会释放。
+     */
+    public static boolean invokeCleaner(ByteBuffer buffer){
+        if (UNSAFE == null){
+            return false;
+        }
+        try {
+            UNSAFE.invokeCleaner(buffer);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
 }
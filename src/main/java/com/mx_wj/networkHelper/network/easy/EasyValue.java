@@ -0,0 +1,19 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记一个可以作为 {@link EasyPacket} 字段（或集合元素）的嵌套值类型。
+ * <p>
+ * 与 EasyPacket 相同，它的所有非 {@code static}、非 {@code transient} 字段会按声明顺序被序列化，
+ * 字段上同样可以使用紧凑编码注解和 {@link Nullable}。被标记的类必须有一个无参构造函数（可以是私有的），字段不能是 {@code final} 的。
+ * <p>
+ * Java 记录（record）不需要这个注解，会自动按组件顺序序列化并通过规范构造函数创建。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface EasyValue {
+}
@@ -0,0 +1,30 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import net.minecraft.network.FriendlyByteBuf;
+
+/**
+ * 单个值的编解码器。
+ * <p>
+ * 用于集合、枚举、记录、{@link java.util.Optional}、嵌套的 {@link EasyValue} 对象等无法展开为一次
+ * {@link EasyFieldSerializers} 静态方法调用的字段类型，由 {@link EasyValueCodecs} 按字段的泛型类型组合而成。
+ *
+ * @param <T> 值的类型
+ */
+public interface EasyValueCodec<T> {
+
+    /**
+     * 将一个非空的值写入缓冲区。
+     *
+     * @param buf   目标缓冲区
+     * @param value 要写入的值
+     */
+    void write(FriendlyByteBuf buf, T value);
+
+    /**
+     * 从缓冲区读取一个值。
+     *
+     * @param buf 来源缓冲区
+     * @return 读取到的值
+     */
+    T read(FriendlyByteBuf buf);
+}
@@ -0,0 +1,658 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * 按字段的泛型类型组合出 {@link EasyValueCodec}。
+ * <p>
+ * 支持的类型：
+ * <ul>
+ * <li>{@link EasyFieldSerializers} 支持的所有标量类型（作为集合元素时使用装箱类型）</li>
+ * <li>{@code int[]}、{@code long[]}、{@code float[]}、{@code short[]}（整块复制）以及其他受支持类型的数组</li>
+ * <li>{@link List}、{@link Set}、{@link Collection}、{@link Map}，先写 VarInt 长度，再逐个写元素</li>
+ * <li>{@link Optional}，先写一个布尔值表示是否存在</li>
+ * <li>枚举，写为 VarInt 序号</li>
+ * <li>记录（record）和标注了 {@link EasyValue} 的类，按字段顺序嵌套序列化</li>
+ * </ul>
+ * 组合出的编解码器按类型缓存，可以安全地处理自引用的类型（例如包含自身列表的记录）。
+ */
+final class EasyValueCodecs {
+
+    /**
+     * 集合、映射和对象数组的最大长度。
+     */
+    static final int MAX_COLLECTION_SIZE = 1 << 20;
+
+    private static final Map<Class<?>, EasyValueCodec<?>> SCALARS = new HashMap<>();
+
+    private static final Map<Type, EasyValueCodec<?>> cache = new HashMap<>();
+    private static final Set<Type> creating = new HashSet<>();
+
+    private static final MethodHandle CODEC_WRITE;
+    private static final MethodHandle CODEC_READ;
+
+    static {
+        scalar(Integer.class, EasyFieldSerializers::writeBoxedInt, EasyFieldSerializers::readBoxedInt);
+        scalar(Long.class, EasyFieldSerializers::writeBoxedLong, EasyFieldSerializers::readBoxedLong);
+        scalar(Float.class, EasyFieldSerializers::writeBoxedFloat, EasyFieldSerializers::readBoxedFloat);
+        scalar(Double.class, EasyFieldSerializers::writeBoxedDouble, EasyFieldSerializers::readBoxedDouble);
+        scalar(Boolean.class, EasyFieldSerializers::writeBoxedBoolean, EasyFieldSerializers::readBoxedBoolean);
+        scalar(String.class, EasyFieldSerializers::writeString, EasyFieldSerializers::readString);
+        scalar(byte[].class, EasyFieldSerializers::writeByteArray, EasyFieldSerializers::readByteArray);
+        scalar(int[].class, EasyFieldSerializers::writeIntArray, EasyFieldSerializers::readIntArray);
+        scalar(long[].class, EasyFieldSerializers::writeLongArray, EasyFieldSerializers::readLongArray);
+        scalar(float[].class, EasyFieldSerializers::writeFloatArray, EasyFieldSerializers::readFloatArray);
+        scalar(short[].class, EasyFieldSerializers::writeShortArray, EasyFieldSerializers::readShortArray);
+        scalar(CompoundTag.class, EasyFieldSerializers::writeNbt, EasyFieldSerializers::readNbt);
+        scalar(ItemStack.class, EasyFieldSerializers::writeItem, EasyFieldSerializers::readItem);
+        scalar(BlockPos.class, EasyFieldSerializers::writeBlockPos, EasyFieldSerializers::readBlockPos);
+        scalar(ResourceLocation.class, EasyFieldSerializers::writeResourceLocation, EasyFieldSerializers::readResourceLocation);
+        scalar(Component.class, EasyFieldSerializers::writeComponent, EasyFieldSerializers::readComponent);
+        scalar(UUID.class, EasyFieldSerializers::writeUUID, EasyFieldSerializers::readUUID);
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            CODEC_WRITE = lookup.findVirtual(EasyValueCodec.class, "write", MethodType.methodType(void.class, FriendlyByteBuf.class, Object.class));
+            CODEC_READ = lookup.findVirtual(EasyValueCodec.class, "read", MethodType.methodType(Object.class, FriendlyByteBuf.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private EasyValueCodecs() {}
+
+    private static <T> void scalar(Class<T> type, BiConsumer<FriendlyByteBuf, T> writer, Function<FriendlyByteBuf, T> reader) {
+        SCALARS.put(type, new EasyValueCodec<T>() {
+            @Override
+            public void write(FriendlyByteBuf buf, T value) {
+                writer.accept(buf, value);
+            }
+
+            @Override
+            public T read(FriendlyByteBuf buf) {
+                return reader.apply(buf);
+            }
+        });
+    }
+
+    /**
+     * 获取（必要时创建）一个类型的编解码器。
+     *
+     * @param type 字段或元素的泛型类型
+     * @return 该类型的编解码器
+     * @throws IllegalArgumentException 如果该类型不受支持
+     */
+    static synchronized EasyValueCodec<?> forType(Type type) {
+        EasyValueCodec<?> codec = cache.get(type);
+        if (codec != null) {
+            return codec;
+        }
+        if (!creating.add(type)) {
+            // 自引用的类型：返回一个在使用时才去缓存中查找的代理，此时外层的编解码器已经创建完毕。
+            return new LazyCodec(type);
+        }
+        try {
+            codec = create(type);
+            cache.put(type, codec);
+            return codec;
+        } finally {
+            creating.remove(type);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static EasyValueCodec<?> create(Type type) {
+        if (type instanceof WildcardType wildcard) {
+            return forType(wildcard.getUpperBounds()[0]);
+        }
+        if (type instanceof GenericArrayType array) {
+            Type component = array.getGenericComponentType();
+            return new ArrayCodec(rawClass(component), forType(component));
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type[] args = parameterized.getActualTypeArguments();
+            if (raw == Optional.class) {
+                return new OptionalCodec(forType(args[0]));
+            }
+            if (Map.class.isAssignableFrom(raw)) {
+                IntFunction<Map<Object, Object>> factory;
+                if (raw.isAssignableFrom(HashMap.class)) {
+                    factory = size -> new HashMap<>(capacity(size));
+                } else if (raw.isAssignableFrom(LinkedHashMap.class)) {
+                    factory = size -> new LinkedHashMap<>(capacity(size));
+                } else {
+                    throw new IllegalArgumentException("EasyPacket does not support map type " + raw.getName() + ", declare the field as Map, HashMap or LinkedHashMap.");
+                }
+                return new MapCodec(forType(args[0]), forType(args[1]), factory);
+            }
+            if (Collection.class.isAssignableFrom(raw)) {
+                IntFunction<Collection<Object>> factory;
+                if (raw.isAssignableFrom(ArrayList.class)) {
+                    factory = ArrayList::new;
+                } else if (raw.isAssignableFrom(HashSet.class)) {
+                    factory = size -> new HashSet<>(capacity(size));
+                } else if (raw.isAssignableFrom(LinkedHashSet.class)) {
+                    factory = size -> new LinkedHashSet<>(capacity(size));
+                } else {
+                    throw new IllegalArgumentException("EasyPacket does not support collection type " + raw.getName() + ", declare the field as List, Set, Collection, ArrayList, HashSet or LinkedHashSet.");
+                }
+                return new CollectionCodec(forType(args[0]), factory);
+            }
+            // 其他参数化类型（例如泛型记录）按原始类型处理。
+            return forType(raw);
+        }
+        if (type instanceof Class<?> clazz) {
+            EasyValueCodec<?> scalar = SCALARS.get(boxed(clazz));
+            if (scalar != null) {
+                return scalar;
+            }
+            if (clazz.isArray()) {
+                return new ArrayCodec(clazz.getComponentType(), forType(clazz.getComponentType()));
+            }
+            if (clazz.isEnum()) {
+                return new EnumCodec(clazz);
+            }
+            if (clazz.isRecord()) {
+                return new RecordCodec(clazz);
+            }
+            if (clazz.isAnnotationPresent(EasyValue.class)) {
+                return new ObjectCodec(clazz);
+            }
+            if (Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz) || clazz == Optional.class) {
+                throw new IllegalArgumentException("EasyPacket needs the type arguments of " + clazz.getName() + " fields, raw types are not supported.");
+            }
+        }
+        throw new IllegalArgumentException("EasyPacket does not support automatic serialization for this field type: " + type.getTypeName());
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class<?> clazz) {
+            return clazz;
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            return (Class<?>) parameterized.getRawType();
+        }
+        if (type instanceof GenericArrayType array) {
+            return Array.newInstance(rawClass(array.getGenericComponentType()), 0).getClass();
+        }
+        if (type instanceof WildcardType wildcard) {
+            return rawClass(wildcard.getUpperBounds()[0]);
+        }
+        throw new IllegalArgumentException("EasyPacket does not support automatic serialization for this field type: " + type.getTypeName());
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    /**
+     * 写入集合或数组的长度。
+     *
+     * @throws IllegalArgumentException 如果长度超过了 {@link #MAX_COLLECTION_SIZE}，这样的数据接收方无法解码。
+     */
+    static void writeSize(FriendlyByteBuf buf, int size) {
+        if (size > MAX_COLLECTION_SIZE) {
+            throw new IllegalArgumentException("Collection of " + size + " elements exceeds the maximum of " + MAX_COLLECTION_SIZE);
+        }
+        buf.writeVarInt(size);
+    }
+
+    /**
+     * 读取集合或数组的长度，以 {@link #MAX_COLLECTION_SIZE} 拒绝伪造的超大长度。
+     * 没有字段的记录和对象编码后不占任何字节，因此不能用剩余的字节数来限制长度。
+     */
+    static int readSize(FriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        if (size < 0 || size > MAX_COLLECTION_SIZE) {
+            throw new IllegalStateException("Invalid collection size " + size + ", at most " + MAX_COLLECTION_SIZE + " elements are supported");
+        }
+        return size;
+    }
+
+    /**
+     * 为一个字段创建 {@code (FriendlyByteBuf, Object) -> void} 形式的写方法句柄，常量参数已经绑定。
+     */
+    static MethodHandle writerHandle(EasyFieldSerializers.FieldEncoding encoding) throws IllegalAccessException {
+        if (encoding.codec() != null) {
+            return CODEC_WRITE.bindTo(encoding.codec());
+        }
+        return MethodHandles.insertArguments(MethodHandles.publicLookup().unreflect(encoding.writer()), 2, encoding.args())
+                .asType(MethodType.methodType(void.class, FriendlyByteBuf.class, Object.class));
+    }
+
+    /**
+     * 为一个字段创建 {@code (FriendlyByteBuf) -> Object} 形式的读方法句柄，常量参数已经绑定。
+     */
+    static MethodHandle readerHandle(EasyFieldSerializers.FieldEncoding encoding) throws IllegalAccessException {
+        if (encoding.codec() != null) {
+            return CODEC_READ.bindTo(encoding.codec());
+        }
+        return MethodHandles.insertArguments(MethodHandles.publicLookup().unreflect(encoding.reader()), 1, encoding.args())
+                .asType(MethodType.methodType(Object.class, FriendlyByteBuf.class));
+    }
+
+    /**
+     * 一组字段的反射编解码逻辑：先写空值位图（如果有可空字段），再按顺序写每个非空字段。
+     * EasyPacket 的反射后备实现、{@link EasyValue} 对象和记录都使用它，因此它们与生成的编解码器的数据格式一致。
+     */
+    static final class FieldsCodec {
+        private final String[] names;
+        private final VarHandle[] handles;
+        private final MethodHandle[] writers;
+        private final MethodHandle[] readers;
+        /**
+         * 每个字段在空值位图中的位置，不可空的字段为 -1。
+         */
+        private final int[] nullBits;
+        private final boolean hasNullable;
+
+        FieldsCodec(List<Field> fields) {
+            int size = fields.size();
+            names = new String[size];
+            handles = new VarHandle[size];
+            writers = new MethodHandle[size];
+            readers = new MethodHandle[size];
+            nullBits = new int[size];
+            int nullable = 0;
+            for (int i = 0; i < size; i++) {
+                Field field = fields.get(i);
+                EasyFieldSerializers.FieldEncoding encoding = EasyFieldSerializers.encodingOf(field);
+                names[i] = field.getName();
+                try {
+                    // 使用万能的 IMPL_LOOKUP 来创建 VarHandle，它可以无视 private 等访问修饰符。
+                    handles[i] = EasyPacket.IMPL_LOOKUP.unreflectVarHandle(field);
+                    writers[i] = writerHandle(encoding);
+                    readers[i] = readerHandle(encoding);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException("Failed to create VarHandle for field: " + field.getName(), e);
+                }
+                nullBits[i] = encoding.nullable() ? nullable++ : -1;
+            }
+            if (nullable > EasyFieldSerializers.MAX_NULLABLE_FIELDS) {
+                throw new IllegalArgumentException("At most " + EasyFieldSerializers.MAX_NULLABLE_FIELDS + " @Nullable fields are supported per object, but " + fields.get(0).getDeclaringClass().getName() + " has " + nullable);
+            }
+            hasNullable = nullable > 0;
+        }
+
+        int size() {
+            return handles.length;
+        }
+
+        /**
+         * 写入 {@code target} 的所有字段。
+         *
+         * @param fieldEnds 可以为 {@code null}；否则 {@code fieldEnds[0]} 记录空值位图之后的写索引，{@code fieldEnds[i + 1]} 记录第 i 个字段之后的写索引。
+         */
+        void encode(Object target, FriendlyByteBuf buf, int[] fieldEnds) {
+            Object[] values = new Object[handles.length];
+            long nulls = 0L;
+            for (int i = 0; i < handles.length; i++) {
+                values[i] = handles[i].get(target);
+                if (values[i] == null) {
+                    if (nullBits[i] < 0) {
+                        throw new NullPointerException("Field " + names[i] + " is null, but it is not marked @Nullable");
+                    }
+                    nulls |= 1L << nullBits[i];
+                }
+            }
+            if (hasNullable) {
+                EasyFieldSerializers.writeNullBits(buf, nulls);
+            }
+            if (fieldEnds != null) {
+                fieldEnds[0] = buf.writerIndex();
+            }
+            for (int i = 0; i < handles.length; i++) {
+                if (values[i] != null) {
+                    try {
+                        writers[i].invokeExact(buf, values[i]);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable t) {
+                        throw new RuntimeException(t);
+                    }
+                }
+                if (fieldEnds != null) {
+                    fieldEnds[i + 1] = buf.writerIndex();
+                }
+            }
+        }
+
+        /**
+         * 按字段顺序读取所有字段的值，为 {@code null} 的字段对应 {@code null}。
+         */
+        Object[] read(FriendlyByteBuf buf) {
+            long nulls = hasNullable ? EasyFieldSerializers.readNullBits(buf) : 0L;
+            Object[] values = new Object[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                if (nullBits[i] >= 0 && (nulls & (1L << nullBits[i])) != 0) {
+                    continue;
+                }
+                try {
+                    values[i] = readers[i].invokeExact(buf);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new RuntimeException(t);
+                }
+            }
+            return values;
+        }
+
+        /**
+         * 读取所有字段的值，并设置到 {@code target} 上。
+         */
+        void decode(Object target, FriendlyByteBuf buf) {
+            Object[] values = read(buf);
+            for (int i = 0; i < handles.length; i++) {
+                handles[i].set(target, values[i]);
+            }
+        }
+    }
+
+    /**
+     * {@link EasyValue} 对象：通过无参构造函数创建，再逐个设置字段。
+     */
+    private static final class ObjectCodec implements EasyValueCodec<Object> {
+        private final FieldsCodec fields;
+        private final MethodHandle constructor;
+
+        private ObjectCodec(Class<?> type) {
+            List<Field> serializable = EasyPacket.getSerializableFields(type);
+            for (Field field : serializable) {
+                if (Modifier.isFinal(field.getModifiers())) {
+                    throw new IllegalArgumentException("Field " + field.getName() + " of " + type.getSimpleName() + " must not be final.");
+                }
+            }
+            this.fields = new FieldsCodec(serializable);
+            try {
+                this.constructor = EasyPacket.IMPL_LOOKUP.findConstructor(type, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("@EasyValue class " + type.getName() + " must have a no-argument constructor.", e);
+            }
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Object value) {
+            fields.encode(value, buf, null);
+        }
+
+        @Override
+        public Object read(FriendlyByteBuf buf) {
+            Object value;
+            try {
+                value = constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+            fields.decode(value, buf);
+            return value;
+        }
+    }
+
+    /**
+     * 记录：按组件顺序读取所有值，再调用规范构造函数。
+     */
+    private static final class RecordCodec implements EasyValueCodec<Object> {
+        private final FieldsCodec fields;
+        private final MethodHandle constructor;
+
+        private RecordCodec(Class<?> type) {
+            RecordComponent[] components = type.getRecordComponents();
+            List<Field> componentFields = new ArrayList<>(components.length);
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            try {
+                for (int i = 0; i < components.length; i++) {
+                    // 组件上的注解会传递到同名的私有字段上，因此紧凑编码注解和 @Nullable 同样有效。
+                    componentFields.add(type.getDeclaredField(components[i].getName()));
+                    parameterTypes[i] = components[i].getType();
+                }
+                this.constructor = EasyPacket.IMPL_LOOKUP.findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                        .asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Could not access the canonical constructor of record " + type.getName(), e);
+            }
+            this.fields = new FieldsCodec(componentFields);
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Object value) {
+            fields.encode(value, buf, null);
+        }
+
+        @Override
+        public Object read(FriendlyByteBuf buf) {
+            Object[] values = fields.read(buf);
+            try {
+                return constructor.invokeExact(values);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    /**
+     * 枚举：写为 VarInt 序号。
+     */
+    private static final class EnumCodec implements EasyValueCodec<Enum<?>> {
+        private final Enum<?>[] constants;
+
+        private EnumCodec(Class<?> type) {
+            this.constants = (Enum<?>[]) type.getEnumConstants();
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Enum<?> value) {
+            buf.writeVarInt(value.ordinal());
+        }
+
+        @Override
+        public Enum<?> read(FriendlyByteBuf buf) {
+            int ordinal = buf.readVarInt();
+            if (ordinal < 0 || ordinal >= constants.length) {
+                throw new IllegalStateException("Invalid ordinal " + ordinal + " for enum " + constants.getClass().getComponentType().getName());
+            }
+            return constants[ordinal];
+        }
+    }
+
+    /**
+     * 引用类型的数组：VarInt 长度 + 逐个元素。元素不能为 {@code null}。
+     */
+    private static final class ArrayCodec implements EasyValueCodec<Object> {
+        private final Class<?> componentType;
+        private final EasyValueCodec<Object> element;
+
+        @SuppressWarnings("unchecked")
+        private ArrayCodec(Class<?> componentType, EasyValueCodec<?> element) {
+            this.componentType = componentType;
+            this.element = (EasyValueCodec<Object>) element;
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Object value) {
+            int length = Array.getLength(value);
+            writeSize(buf, length);
+            for (int i = 0; i < length; i++) {
+                element.write(buf, Array.get(value, i));
+            }
+        }
+
+        @Override
+        public Object read(FriendlyByteBuf buf) {
+            int length = readSize(buf);
+            Object array = Array.newInstance(componentType, length);
+            for (int i = 0; i < length; i++) {
+                Array.set(array, i, element.read(buf));
+            }
+            return array;
+        }
+    }
+
+    /**
+     * 集合：VarInt 长度 + 逐个元素。元素不能为 {@code null}。
+     */
+    private static final class CollectionCodec implements EasyValueCodec<Collection<Object>> {
+        private final EasyValueCodec<Object> element;
+        private final IntFunction<Collection<Object>> factory;
+
+        @SuppressWarnings("unchecked")
+        private CollectionCodec(EasyValueCodec<?> element, IntFunction<Collection<Object>> factory) {
+            this.element = (EasyValueCodec<Object>) element;
+            this.factory = factory;
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Collection<Object> value) {
+            writeSize(buf, value.size());
+            for (Object item : value) {
+                element.write(buf, item);
+            }
+        }
+
+        @Override
+        public Collection<Object> read(FriendlyByteBuf buf) {
+            int size = readSize(buf);
+            Collection<Object> collection = factory.apply(size);
+            for (int i = 0; i < size; i++) {
+                collection.add(element.read(buf));
+            }
+            return collection;
+        }
+    }
+
+    /**
+     * 映射：VarInt 长度 + 逐个键值对。键和值都不能为 {@code null}。
+     */
+    private static final class MapCodec implements EasyValueCodec<Map<Object, Object>> {
+        private final EasyValueCodec<Object> key;
+        private final EasyValueCodec<Object> value;
+        private final IntFunction<Map<Object, Object>> factory;
+
+        @SuppressWarnings("unchecked")
+        private MapCodec(EasyValueCodec<?> key, EasyValueCodec<?> value, IntFunction<Map<Object, Object>> factory) {
+            this.key = (EasyValueCodec<Object>) key;
+            this.value = (EasyValueCodec<Object>) value;
+            this.factory = factory;
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Map<Object, Object> map) {
+            writeSize(buf, map.size());
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                key.write(buf, entry.getKey());
+                value.write(buf, entry.getValue());
+            }
+        }
+
+        @Override
+        public Map<Object, Object> read(FriendlyByteBuf buf) {
+            int size = readSize(buf);
+            Map<Object, Object> map = factory.apply(size);
+            for (int i = 0; i < size; i++) {
+                map.put(key.read(buf), value.read(buf));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * {@link Optional}：一个布尔值表示是否存在，存在时紧跟值本身。
+     */
+    private static final class OptionalCodec implements EasyValueCodec<Optional<Object>> {
+        private final EasyValueCodec<Object> element;
+
+        @SuppressWarnings("unchecked")
+        private OptionalCodec(EasyValueCodec<?> element) {
+            this.element = (EasyValueCodec<Object>) element;
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Optional<Object> value) {
+            buf.writeBoolean(value.isPresent());
+            value.ifPresent(v -> element.write(buf, v));
+        }
+
+        @Override
+        public Optional<Object> read(FriendlyByteBuf buf) {
+            return buf.readBoolean() ? Optional.of(element.read(buf)) : Optional.empty();
+        }
+    }
+
+    /**
+     * 自引用类型的代理，在第一次使用时从缓存中取出真正的编解码器。
+     */
+    private static final class LazyCodec implements EasyValueCodec<Object> {
+        private final Type type;
+        private volatile EasyValueCodec<Object> delegate;
+
+        private LazyCodec(Type type) {
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        private EasyValueCodec<Object> delegate() {
+            EasyValueCodec<Object> codec = delegate;
+            if (codec == null) {
+                codec = (EasyValueCodec<Object>) forType(type);
+                delegate = codec;
+            }
+            return codec;
+        }
+
+        @Override
+        public void write(FriendlyByteBuf buf, Object value) {
+            delegate().write(buf, value);
+        }
+
+        @Override
+        public Object read(FriendlyByteBuf buf) {
+            return delegate().read(buf);
+        }
+    }
+}
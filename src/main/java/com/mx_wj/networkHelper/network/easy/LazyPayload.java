@@ -0,0 +1,153 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * 一段延迟解码的二进制负载，可以作为 {@link EasyPacket} 的字段类型。
+ * <p>
+ * 收到数据包时，这个字段不会被复制或解析，而是持有接收缓冲区中对应字节的一个保留切片（retained slice）。
+ * 只有调用 {@link #toByteArray()}、{@link #toNbt()} 或 {@link #toItem()} 时才会真正复制或解析。
+ * 原样转发负载的处理逻辑（例如跨服转发、缓存二进制数据）可以把收到的实例直接放进另一个要发送的数据包中，
+ * 编码时它的字节会被直接写入目标缓冲区，中间没有任何额外的复制。
+ * <p>
+ * 线上格式与 {@code byte[]} 字段相同：{@code [VarInt 长度][字节]}，因此可以把已有的 {@code byte[]} 字段改为这个类型而不影响协议。
+ * 用 {@link #of(CompoundTag)} 或 {@link #of(ItemStack)} 创建的负载，内容就是它们在网络上的编码。
+ * <p>
+ * <b>生命周期:</b> 收到的负载在数据包的 {@link EasyPacket#process} 返回后会被自动释放，之后再访问它会抛出 {@link IllegalStateException}。
+ * 需要在处理逻辑之外保留它时，调用 {@link #share()} 得到一个共享同一段内存、但不会被自动释放的实例，并在用完后调用 {@link #release()}。
+ * 转发时如果数据包不会在处理逻辑中立即编码（异步发送或启用了 {@code coalesce} 的数据包），同样需要先调用 {@link #share()}。
+ * 作为请求的响应收到的数据包不会被执行，其中的负载由调用方负责释放。
+ * <p>
+ * 这个类型只能直接作为数据包的字段，不能出现在集合、记录或 {@link EasyValue} 中。实例不是线程安全的。
+ */
+public final class LazyPayload {
+
+    private ByteBuf data;
+
+    private LazyPayload(ByteBuf data) {
+        this.data = data;
+    }
+
+    /**
+     * 包装一个字节数组，不会复制它。
+     */
+    public static LazyPayload wrap(byte[] bytes) {
+        return new LazyPayload(Unpooled.wrappedBuffer(bytes));
+    }
+
+    /**
+     * 包装一个缓冲区中所有可读的字节，不会复制它们，也不会修改它的读写索引。
+     * 返回的实例持有缓冲区的一个保留切片，需要在用完后调用 {@link #release()}。
+     */
+    public static LazyPayload wrap(ByteBuf buf) {
+        return new LazyPayload(buf.retainedSlice());
+    }
+
+    /**
+     * 把一个 NBT 标签编码为负载，接收方可以用 {@link #toNbt()} 读出。
+     */
+    public static LazyPayload of(CompoundTag tag) {
+        ByteBuf data = Unpooled.buffer();
+        new FriendlyByteBuf(data).writeNbt(tag);
+        return new LazyPayload(data);
+    }
+
+    /**
+     * 把一个物品堆编码为负载，接收方可以用 {@link #toItem()} 读出。
+     */
+    public static LazyPayload of(ItemStack stack) {
+        ByteBuf data = Unpooled.buffer();
+        new FriendlyByteBuf(data).writeItem(stack);
+        return new LazyPayload(data);
+    }
+
+    /**
+     * @return 负载的字节数。
+     */
+    public int length() {
+        return content().readableBytes();
+    }
+
+    /**
+     * @return 负载内容的一个只读视图，不会复制数据，只在这个实例被释放之前有效。
+     */
+    public ByteBuf content() {
+        if (data == null) {
+            throw new IllegalStateException("LazyPayload has already been released, call share() to keep it after the packet is handled");
+        }
+        return data.asReadOnly();
+    }
+
+    /**
+     * @return 负载内容的一份副本。
+     */
+    public byte[] toByteArray() {
+        ByteBuf content = content();
+        byte[] bytes = new byte[content.readableBytes()];
+        content.getBytes(content.readerIndex(), bytes);
+        return bytes;
+    }
+
+    /**
+     * 把负载解析为 NBT 标签。每次调用都会重新解析，因此可以修改返回的标签。
+     */
+    public CompoundTag toNbt() {
+        return new FriendlyByteBuf(content()).readNbt();
+    }
+
+    /**
+     * 把负载解析为物品堆。每次调用都会重新解析，因此可以修改返回的物品堆。
+     */
+    public ItemStack toItem() {
+        return new FriendlyByteBuf(content()).readItem();
+    }
+
+    /**
+     * @return 一个共享同一段内存的新实例。它不会随数据包一起被释放，调用方需要在用完后调用 {@link #release()}。
+     */
+    public LazyPayload share() {
+        return new LazyPayload(content().retainedDuplicate());
+    }
+
+    /**
+     * 释放这个实例持有的缓冲区。重复调用不会有任何效果。
+     */
+    public void release() {
+        if (data != null) {
+            data.release();
+            data = null;
+        }
+    }
+
+    /**
+     * @return 是否已经被释放。
+     */
+    public boolean isReleased() {
+        return data == null;
+    }
+
+    /**
+     * 写入 {@code [VarInt 长度][字节]}。字节从负载中直接写入目标缓冲区，不会修改负载的读索引。
+     */
+    static void write(FriendlyByteBuf buf, LazyPayload value) {
+        ByteBuf content = value.content();
+        buf.writeVarInt(content.readableBytes());
+        buf.writeBytes(content, content.readerIndex(), content.readableBytes());
+    }
+
+    /**
+     * 读取一个负载，返回的实例持有 buf 的一个保留切片。
+     */
+    static LazyPayload read(FriendlyByteBuf buf) {
+        int length = buf.readVarInt();
+        if (length < 0 || length > buf.readableBytes()) {
+            throw new DecoderException("LazyPayload length " + length + " exceeds the " + buf.readableBytes() + " readable bytes");
+        }
+        return new LazyPayload(buf.readRetainedSlice(length));
+    }
+}
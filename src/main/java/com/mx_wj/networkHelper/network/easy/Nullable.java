@@ -0,0 +1,18 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记一个允许为 {@code null} 的引用类型字段。
+ * <p>
+ * 一个对象中所有可空字段的空值状态会被合并为一个位图写在最前面，为 {@code null} 的字段本身不占用任何字节。
+ * 只有这个注解会被识别，其他库的同名注解（例如 {@code javax.annotation.Nullable}）不会改变字段的编码。
+ * 没有标记的字段不允许为 {@code null}。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Nullable {
+}
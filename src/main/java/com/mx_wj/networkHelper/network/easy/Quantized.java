@@ -0,0 +1,33 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 把 {@code float} 或 {@code double} 字段量化为 {@link #bits()} 位的整数。
+ * <p>
+ * 取值会被限制在 {@code [min, max]} 内，并均匀地映射到 {@code 2^bits} 个刻度上，
+ * 精度为 {@code (max - min) / (2^bits - 1)}。例如进度条可以用 {@code @Quantized(bits = 8, min = 0, max = 1)}，
+ * 只占 1 个字节。量化是有损的，接收方拿到的是最接近的刻度值。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Quantized {
+
+    /**
+     * 位数，范围为 1~32。实际占用的字节数为 {@code bits} 向上取整到字节。
+     */
+    int bits();
+
+    /**
+     * 可表示的最小值。
+     */
+    double min();
+
+    /**
+     * 可表示的最大值。
+     */
+    double max();
+}
@@ -0,0 +1,283 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import com.mx_wj.networkHelper.NetworkHelperConfig;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Dictionary} 字段的每连接字符串字典。
+ * <p>
+ * 发送方为每个连接、每个作用域维护一个有上限的 LRU 表，记录字符串和分配给它的序号；接收方为每个作用域维护一个按序号索引的数组。
+ * 每个字符串编码为：
+ * <pre>
+ * [VarInt 0][UTF 字符串]                    原样发送，不进入字典
+ * [VarInt 1][VarInt 序号][UTF 字符串]       定义：接收方把字符串记在这个序号下
+ * [VarInt 序号 + 2]                         引用一个已经定义的序号
+ * </pre>
+ * 表满了以后，发送方淘汰最久没有用到的字符串，把它的序号重新定义为新的字符串。接收方不需要知道淘汰的规则，
+ * 它只按收到的定义覆盖对应的序号，因此只要同一作用域内的帧按编码顺序送达，两端的字典就始终一致。
+ * 作用域由 PacketManager 给出，对应一个通道上的一个发送优先级，因为只有在它之内帧的顺序才有保证。
+ * <p>
+ * 编码失败，或者编码出的帧最终没有发出时，发送方丢弃这个作用域的整个字典重新开始：之后的每个序号在被引用之前都会先被重新定义，所以不需要通知接收方。
+ * 不在逐个接收方编码期间（例如编码请求的响应时），字符串总是原样发送。
+ */
+public final class StringDictionary {
+
+    /**
+     * 接收方接受的最大序号，与配置中字典大小的上限相同。
+     */
+    static final int MAX_ENTRIES = 65536;
+
+    /**
+     * 更长的字符串不进入字典，避免一个很少重复的长字符串把常用的注册名挤出去。
+     */
+    private static final int MAX_CACHED_LENGTH = 256;
+
+    private static final int LITERAL = 0;
+    private static final int DEFINITION = 1;
+    private static final int FIRST_REFERENCE = 2;
+
+    private static final Map<Connection, Map<Object, Encoder>> sent = new ConcurrentHashMap<>();
+    private static final Map<Object, Decoder> received = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Encoder> encoding = new ThreadLocal<>();
+    private static final ThreadLocal<Decoder> decoding = new ThreadLocal<>();
+
+    /**
+     * 每个类是否有标注了 {@link Dictionary} 的字段。
+     */
+    private static final ClassValue<Boolean> users = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Field field : EasyPacket.getSerializableFields(type)) {
+                if (field.isAnnotationPresent(Dictionary.class)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    };
+
+    private StringDictionary() {}
+
+    /**
+     * @return 这个数据包类是否有直接标注了 {@link Dictionary} 的字段，即它的编码结果是否取决于接收方。
+     */
+    public static boolean uses(Class<?> type) {
+        return users.get(type);
+    }
+
+    /**
+     * 开始为一个接收方编码数据包，之后当前线程上的 {@link Dictionary} 字段都使用这个接收方在该作用域内的字典。
+     * 必须与 {@link #finishEncoding(boolean)} 成对调用。由 PacketManager 调用。
+     *
+     * @param target 接收方连接。
+     * @param scope  字典的作用域。
+     */
+    public static void startEncoding(Connection target, Object scope) {
+        Encoder encoder;
+        if (target.isConnected()) {
+            encoder = sent.computeIfAbsent(target, c -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(scope, s -> new Encoder(target, scope, NetworkHelperConfig.DICTIONARY_SIZE.get()));
+        } else {
+            // 已经断开的连接不再记录字典，否则它会一直留在表中；这样的帧也不会被发出。
+            encoder = new Encoder(target, scope, 0);
+        }
+        encoding.set(encoder);
+    }
+
+    /**
+     * @param success 编码是否成功。失败时帧不会被发出，这个作用域的字典会被丢弃。
+     */
+    public static void finishEncoding(boolean success) {
+        Encoder encoder = encoding.get();
+        encoding.remove();
+        if (!success && encoder != null) {
+            discard(encoder.target, encoder.scope);
+        }
+    }
+
+    /**
+     * 丢弃发往一个连接的某个作用域的字典。已经编码、但最终没有发出的帧中可能有接收方永远收不到的定义，
+     * 由 PacketManager 在这种情况下调用；之后的每个序号在被引用之前都会先被重新定义。
+     *
+     * @param target 接收方连接。
+     * @param scope  字典的作用域。
+     */
+    public static void discard(Connection target, Object scope) {
+        Map<Object, Encoder> encoders = sent.get(target);
+        if (encoders != null) {
+            encoders.remove(scope);
+        }
+    }
+
+    /**
+     * 开始解码一个数据包，之后当前线程上的 {@link Dictionary} 字段都使用该作用域内收到的字典。
+     * 必须与 {@link #finishDecoding()} 成对调用。由 PacketManager 调用。
+     *
+     * @param scope 字典的作用域，与发送方编码时的作用域相同。
+     */
+    public static void startDecoding(Object scope) {
+        decoding.set(received.computeIfAbsent(scope, s -> new Decoder()));
+    }
+
+    public static void finishDecoding() {
+        decoding.remove();
+    }
+
+    static void writeString(FriendlyByteBuf buf, String value) {
+        Encoder encoder = encoding.get();
+        if (encoder == null || encoder.capacity == 0 || value.length() > MAX_CACHED_LENGTH) {
+            buf.writeVarInt(LITERAL);
+            buf.writeUtf(value);
+        } else {
+            encoder.write(buf, value);
+        }
+    }
+
+    static String readString(FriendlyByteBuf buf) {
+        int tag = buf.readVarInt();
+        if (tag == LITERAL) {
+            return buf.readUtf();
+        }
+        return decoder().read(buf, tag).value;
+    }
+
+    static void writeResourceLocation(FriendlyByteBuf buf, ResourceLocation value) {
+        writeString(buf, value.toString());
+    }
+
+    static ResourceLocation readResourceLocation(FriendlyByteBuf buf) {
+        int tag = buf.readVarInt();
+        if (tag == LITERAL) {
+            return buf.readResourceLocation();
+        }
+        Entry entry = decoder().read(buf, tag);
+        if (entry.location == null) {
+            entry.location = new ResourceLocation(entry.value);
+        }
+        return entry.location;
+    }
+
+    private static Decoder decoder() {
+        Decoder decoder = decoding.get();
+        if (decoder == null) {
+            throw new IllegalStateException("Received a dictionary-encoded string outside of a dictionary scope");
+        }
+        return decoder;
+    }
+
+    /**
+     * 发送方的一个字典。{@code indices} 按访问顺序排列，最前面的就是最久没有用到的字符串。
+     */
+    static final class Encoder {
+        private final Connection target;
+        private final Object scope;
+        private final int capacity;
+        private final LinkedHashMap<String, Integer> indices = new LinkedHashMap<>(16, 0.75f, true);
+
+        Encoder(Connection target, Object scope, int capacity) {
+            this.target = target;
+            this.scope = scope;
+            this.capacity = capacity;
+        }
+
+        synchronized void write(FriendlyByteBuf buf, String value) {
+            Integer index = indices.get(value);
+            if (index != null) {
+                buf.writeVarInt(FIRST_REFERENCE + index);
+                return;
+            }
+            if (indices.size() < capacity) {
+                index = indices.size();
+            } else {
+                Iterator<Integer> eldest = indices.values().iterator();
+                index = eldest.next();
+                eldest.remove();
+            }
+            indices.put(value, index);
+            buf.writeVarInt(DEFINITION);
+            buf.writeVarInt(index);
+            buf.writeUtf(value);
+        }
+    }
+
+    /**
+     * 接收方字典中的一项。解析出的 {@link ResourceLocation} 也缓存在这里。
+     */
+    static final class Entry {
+        final String value;
+        private ResourceLocation location;
+
+        private Entry(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 接收方的一个字典，只在网络线程上访问。
+     */
+    static final class Decoder {
+        private Entry[] entries = new Entry[64];
+
+        /**
+         * 读取一个定义或引用，{@code tag} 是已经读出的第一个 VarInt，不能是原样发送的标记。
+         */
+        Entry read(FriendlyByteBuf buf, int tag) {
+            if (tag == DEFINITION) {
+                int index = buf.readVarInt();
+                if (index < 0 || index >= MAX_ENTRIES) {
+                    throw new IllegalStateException("Dictionary index " + index + " is out of range");
+                }
+                if (index >= entries.length) {
+                    entries = Arrays.copyOf(entries, Math.min(MAX_ENTRIES, Math.max(index + 1, entries.length * 2)));
+                }
+                Entry entry = new Entry(buf.readUtf());
+                entries[index] = entry;
+                return entry;
+            }
+            int index = tag - FIRST_REFERENCE;
+            Entry entry = index < entries.length ? entries[index] : null;
+            if (entry == null) {
+                throw new IllegalStateException("Reference to undefined dictionary index " + index);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * 清除发往某个玩家的所有字典，之后发给这个玩家的每个字符串都会先重新定义。
+     *
+     * @param player 目标玩家。
+     */
+    public static void reset(ServerPlayer player) {
+        sent.remove(player.connection.connection);
+    }
+
+    /**
+     * 玩家退出时清除发往它的字典。
+     */
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            reset(player);
+        }
+    }
+
+    /**
+     * 客户端断开连接时清除接收到的字典。只会在客户端注册。
+     */
+    public static void onClientLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+        received.clear();
+    }
+}
@@ -0,0 +1,21 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 把 {@code int} 字段编码为 {@link #bits()} 位的无符号整数，适合取值范围已知的小计数器和枚举值。
+ * <p>
+ * 编码时如果值超出 {@code [0, 2^bits)} 会抛出异常，而不是静默截断。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Unsigned {
+
+    /**
+     * 位数，只能是 8、16 或 24。
+     */
+    int bits() default 8;
+}
@@ -0,0 +1,16 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 把 {@code int} 或 {@code long} 字段编码为变长整数（VarInt / VarLong），小的非负数只占 1~2 个字节。
+ * <p>
+ * 负数总是占用最大长度（5 或 10 个字节），可能为负的字段应使用 {@link ZigZag}。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface VarInt {
+}
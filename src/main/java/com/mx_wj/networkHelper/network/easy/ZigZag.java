@@ -0,0 +1,15 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 把 {@code int} 或 {@code long} 字段先做 ZigZag 变换再编码为变长整数，绝对值小的正数和负数都只占 1~2 个字节。
+ * 适合坐标差、速度等有正有负的小整数。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ZigZag {
+}
@@ -0,0 +1,124 @@
+package com.mx_wj.networkHelper.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译期数据包索引生成器。
+ * <p>
+ * 收集所有带有 {@code @PacketInfo} 注解的类，并在编译输出中写入 {@link #INDEX_PATH}。
+ * 运行时 NetworkHelper 会优先读取这个索引，从而跳过对整个 JAR 的类扫描。
+ * <p>
+ * 索引是一个 UTF-8 文本文件，每行格式为 {@code <稳定ID>\t<类的二进制名>\t<方向>}。
+ * 稳定ID 是该类在按类名排序后的列表中的位置，只要数据包集合不变，它在不同的构建之间就保持不变。
+ * <p>
+ * 这个处理器运行在编译器中，不能依赖 Minecraft 或模组本身的类，因此所有类型都通过名称来匹配。
+ */
+@SupportedAnnotationTypes(PacketIndexProcessor.PACKET_INFO)
+public class PacketIndexProcessor extends AbstractProcessor {
+
+    /**
+     * 索引文件在 JAR 中的路径。必须与运行时的 {@code PacketIndex.INDEX_PATH} 保持一致。
+     */
+    static final String INDEX_PATH = "META-INF/networkhelper/packets.idx";
+
+    static final String PACKET_INFO = "com.mx_wj.networkHelper.network.core.info.PacketInfo";
+    private static final String I_PACKET = "com.mx_wj.networkHelper.network.core.info.IPacket";
+
+    /**
+     * 收集到的数据包，键为类的二进制名，值为方向。使用 TreeMap 以保证输出顺序稳定。
+     */
+    private final Map<String, String> packets = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                collect(element);
+            }
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void collect(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Abstract class annotated with @PacketInfo will not be indexed.", type);
+            return;
+        }
+        TypeElement packetInterface = processingEnv.getElementUtils().getTypeElement(I_PACKET);
+        if (packetInterface != null && !processingEnv.getTypeUtils().isAssignable(type.asType(), packetInterface.asType())) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Class annotated with @PacketInfo must implement IPacket.", type);
+            return;
+        }
+        String direction = readDirection(type);
+        if (direction == null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not read the direction of @PacketInfo.", type);
+            return;
+        }
+        packets.put(processingEnv.getElementUtils().getBinaryName(type).toString(), direction);
+    }
+
+    private static String readDirection(TypeElement type) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(PACKET_INFO)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("direction") && entry.getValue().getValue() instanceof VariableElement constant) {
+                    return constant.getSimpleName().toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeIndex() {
+        if (packets.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_PATH);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# NetworkHelper packet index, generated at compile time. Do not edit.\n");
+                int id = 0;
+                for (Map.Entry<String, String> entry : packets.entrySet()) {
+                    writer.write(id++ + "\t" + entry.getKey() + "\t" + entry.getValue() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write packet index: " + e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.mx_wj.networkHelper.network.core;
+
+import com.mx_wj.networkHelper.NetworkHelperMod;
+import com.mx_wj.networkHelper.network.core.info.IPacket;
+import com.mx_wj.networkHelper.network.core.info.PacketDirection;
+import com.mx_wj.networkHelper.network.core.info.PacketInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.network.NetworkEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 用 {@link PacketFragment#toPayload} 拆分帧、再用 {@link PacketFragment#decode} 拼装的往返测试，不需要连接。
+ */
+class PacketFragmentTest {
+
+    private static final int FRAGMENT_SIZE = 4096;
+
+    /**
+     * 只携带一段字节的数据包。
+     */
+    @PacketInfo(direction = PacketDirection.SERVER_TO_CLIENT)
+    static final class BlobPacket implements IPacket {
+        private final byte[] data;
+
+        BlobPacket(byte[] data) {
+            this.data = data;
+        }
+
+        BlobPacket(FriendlyByteBuf buf) {
+            this.data = buf.readByteArray(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void encode(FriendlyByteBuf buf) {
+            buf.writeByteArray(data);
+        }
+
+        @Override
+        public void execute(NetworkEvent.Context context) {
+        }
+    }
+
+    private final ModChannel channel = createChannel("fragment_test");
+    private final Random random = new Random(42);
+
+    private static ModChannel createChannel(String path) {
+        ModChannel channel = new ModChannel(path, new ResourceLocation(NetworkHelperMod.MODID, path), null);
+        channel.add(new RegisteredPacket<>(path, BlobPacket.class, ModChannel.FIRST_PACKET_ID, BlobPacket.class.getAnnotation(PacketInfo.class), BlobPacket::new));
+        return channel;
+    }
+
+    @AfterEach
+    void clear() {
+        PacketFragment.clearIncoming();
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * 与 {@link PacketStreamer} 一样按顺序把帧拆分为分片负载。
+     */
+    private static List<ByteBuf> split(ByteBuf frame, int fragmentSize) {
+        List<ByteBuf> payloads = new ArrayList<>();
+        for (int offset = 0, index = 0; offset < frame.readableBytes(); offset += fragmentSize, index++) {
+            int length = Math.min(fragmentSize, frame.readableBytes() - offset);
+            payloads.add(PacketFragment.toPayload(index, frame.readableBytes(), frame.slice(frame.readerIndex() + offset, length)));
+        }
+        return payloads;
+    }
+
+    /**
+     * 像 {@link ModChannel#receive} 一样读出保留ID，再交给 {@link PacketFragment#decode}。
+     */
+    private static ByteBuf deliver(ModChannel channel, ByteBuf payload) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(payload);
+        assertEquals(PacketFragment.FRAGMENT_ID, buf.readVarInt());
+        return PacketFragment.decode(buf, channel);
+    }
+
+    /**
+     * 像 {@link ModChannel#receive} 一样解码拼装出的负载中的数据包，并释放负载。
+     */
+    private byte[] dataOf(ByteBuf reassembled) {
+        try {
+            FriendlyByteBuf frame = new FriendlyByteBuf(reassembled);
+            RegisteredPacket<?> type = channel.get(frame.readVarInt());
+            assertSame(BlobPacket.class, type.packetClass());
+            return ((BlobPacket) type.decode(frame)).data;
+        } finally {
+            reassembled.release();
+        }
+    }
+
+    @Test
+    void splitFrameIsReassembled() {
+        byte[] data = randomBytes(100_000);
+        List<ByteBuf> payloads = split(channel.encodeFrame(new BlobPacket(data)), FRAGMENT_SIZE);
+        assertEquals(25, payloads.size());
+        for (int i = 0; i < payloads.size() - 1; i++) {
+            assertNull(deliver(channel, payloads.get(i)));
+        }
+        assertArrayEquals(data, dataOf(deliver(channel, payloads.get(payloads.size() - 1))));
+    }
+
+    @Test
+    void wholeFramesAndOtherChannelsInterleaveWithReassembly() {
+        ModChannel other = createChannel("fragment_test_other");
+        byte[] data = randomBytes(50_000);
+        byte[] otherData = randomBytes(30_000);
+        List<ByteBuf> payloads = split(channel.encodeFrame(new BlobPacket(data)), FRAGMENT_SIZE);
+        List<ByteBuf> otherPayloads = split(other.encodeFrame(new BlobPacket(otherData)), FRAGMENT_SIZE);
+
+        ByteBuf last = null;
+        ByteBuf otherLast = null;
+        for (int i = 0; i < payloads.size(); i++) {
+            last = deliver(channel, payloads.get(i));
+            // 同一通道上不经过分片的帧不会打断正在拼装的帧。
+            byte[] small = randomBytes(100);
+            FriendlyByteBuf frame = channel.encodeFrame(new BlobPacket(small));
+            assertEquals(ModChannel.FIRST_PACKET_ID, frame.readVarInt());
+            assertArrayEquals(small, ((BlobPacket) channel.get(ModChannel.FIRST_PACKET_ID).decode(frame)).data);
+            if (i < otherPayloads.size()) {
+                otherLast = deliver(other, otherPayloads.get(i));
+            }
+        }
+        assertArrayEquals(data, dataOf(last));
+        assertArrayEquals(otherData, dataOf(otherLast));
+    }
+
+    @Test
+    void requestPayloadIsReassembledVerbatim() {
+        // 请求和响应与普通帧一样被拆分，拼装出的负载原样交回 ModChannel 分发。
+        FriendlyByteBuf payload = new FriendlyByteBuf(Unpooled.buffer());
+        payload.writeVarInt(PacketRequests.REQUEST_ID);
+        payload.writeVarInt(7);
+        payload.writeBytes(channel.encodeFrame(new BlobPacket(randomBytes(30_000))));
+        ByteBuf last = null;
+        for (ByteBuf fragment : split(payload, FRAGMENT_SIZE)) {
+            last = deliver(channel, fragment);
+        }
+        try {
+            assertEquals(payload, last);
+        } finally {
+            last.release();
+        }
+    }
+
+    @Test
+    void fragmentOutOfSequenceIsRejected() {
+        List<ByteBuf> payloads = split(channel.encodeFrame(new BlobPacket(randomBytes(20_000))), FRAGMENT_SIZE);
+        assertThrows(IllegalStateException.class, () -> deliver(channel, payloads.get(1)));
+        deliver(channel, payloads.get(0));
+        assertThrows(IllegalStateException.class, () -> deliver(channel, payloads.get(2)));
+    }
+
+    @Test
+    void newFrameDiscardsIncompleteOne() {
+        List<ByteBuf> abandoned = split(channel.encodeFrame(new BlobPacket(randomBytes(20_000))), FRAGMENT_SIZE);
+        deliver(channel, abandoned.get(0));
+        deliver(channel, abandoned.get(1));
+
+        byte[] data = randomBytes(10_000);
+        ByteBuf last = null;
+        for (ByteBuf payload : split(channel.encodeFrame(new BlobPacket(data)), FRAGMENT_SIZE)) {
+            last = deliver(channel, payload);
+        }
+        assertArrayEquals(data, dataOf(last));
+        assertThrows(IllegalStateException.class, () -> deliver(channel, abandoned.get(2)));
+    }
+
+    @Test
+    void fragmentOverflowingItsFrameIsRejected() {
+        deliver(channel, PacketFragment.toPayload(0, 10, Unpooled.wrappedBuffer(new byte[8])));
+        assertThrows(IllegalStateException.class, () -> deliver(channel, PacketFragment.toPayload(1, 10, Unpooled.wrappedBuffer(new byte[5]))));
+        // 溢出后拼装被放弃，之后的分片不能再接上。
+        assertThrows(IllegalStateException.class, () -> deliver(channel, PacketFragment.toPayload(2, 10, Unpooled.wrappedBuffer(new byte[2]))));
+    }
+
+    @Test
+    void frameLengthIsBounded() {
+        ByteBuf data = Unpooled.wrappedBuffer(new byte[16]);
+        assertThrows(IllegalStateException.class, () -> deliver(channel, PacketFragment.toPayload(0, PacketFragment.MAX_FRAME_BYTES + 1, data)));
+        assertThrows(IllegalStateException.class, () -> deliver(channel, PacketFragment.toPayload(0, 0, Unpooled.EMPTY_BUFFER)));
+        assertThrows(IllegalStateException.class, () -> deliver(channel, PacketFragment.toPayload(0, -1, data)));
+        // 上限本身是允许的，帧在之后的分片到达之前保持未完成。
+        assertNull(deliver(channel, PacketFragment.toPayload(0, PacketFragment.MAX_FRAME_BYTES, data)));
+    }
+}
@@ -0,0 +1,158 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.PacketFlow;
+import net.minecraftforge.network.NetworkEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link DeltaSyncState} 增量格式的往返测试。发送方的快照记在一个真实但不需要网络的连接上，接收方的快照是全局的，每个测试后清除。
+ */
+class DeltaSyncStateTest {
+
+    /**
+     * 除键字段外所有字段都被标记时的变更掩码：energy、label、running 分别是第 1、2、3 位。
+     */
+    private static final long ALL = 0b1110;
+
+    @DeltaSync(maxKeys = 4)
+    static final class MachinePacket extends EasyPacket {
+        @DeltaKey
+        private int id;
+        private int energy;
+        @Nullable
+        private String label;
+        private boolean running;
+
+        MachinePacket() {
+        }
+
+        MachinePacket(int id, int energy, String label, boolean running) {
+            this.id = id;
+            this.energy = energy;
+            this.label = label;
+            this.running = running;
+        }
+
+        @Override
+        public void process(NetworkEvent.Context context) {
+        }
+    }
+
+    private final Connection target = new Connection(PacketFlow.CLIENTBOUND);
+    private final EmbeddedChannel wire = new EmbeddedChannel(target);
+    private final EasyPacketCodec codec = EasyPacket.getCodec(MachinePacket.class);
+
+    @AfterEach
+    void clear() {
+        DeltaSyncState.discard(target, MachinePacket.class);
+        DeltaSyncState.onClientLoggingOut(null);
+        wire.finishAndReleaseAll();
+    }
+
+    private FriendlyByteBuf encode(MachinePacket packet) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        DeltaSyncState.encode(packet, codec, buf, target);
+        return buf;
+    }
+
+    private MachinePacket decode(FriendlyByteBuf buf) {
+        MachinePacket packet = new MachinePacket();
+        DeltaSyncState.decode(packet, codec, buf);
+        assertEquals(0, buf.readableBytes(), "trailing bytes after the delta");
+        return packet;
+    }
+
+    /**
+     * 读出帧中的变更掩码：它在空值位图和键字段之后。
+     */
+    private static long maskOf(FriendlyByteBuf buf) {
+        FriendlyByteBuf peek = new FriendlyByteBuf(buf.duplicate());
+        peek.readVarLong();
+        peek.readByteArray();
+        return peek.readVarLong();
+    }
+
+    private MachinePacket send(MachinePacket packet, long expectedMask) {
+        FriendlyByteBuf buf = encode(packet);
+        assertEquals(expectedMask, maskOf(buf));
+        MachinePacket decoded = decode(buf);
+        assertEquals(packet.id, decoded.id);
+        assertEquals(packet.energy, decoded.energy);
+        assertEquals(packet.label, decoded.label);
+        assertEquals(packet.running, decoded.running);
+        return decoded;
+    }
+
+    @Test
+    void onlyChangedFieldsAreSent() {
+        send(new MachinePacket(1, 100, "idle", false), ALL);
+        send(new MachinePacket(1, 100, "idle", false), 0);
+        send(new MachinePacket(1, 250, "idle", false), 0b0010);
+        send(new MachinePacket(1, 250, "busy", true), 0b1100);
+    }
+
+    @Test
+    void nullTransitionsAreCarriedByTheHeader() {
+        send(new MachinePacket(1, 100, "idle", false), ALL);
+        assertNull(send(new MachinePacket(1, 100, null, false), 0b0100).label);
+        // 仍然为空时字段没有变化，空值状态由每帧都完整发送的位图给出。
+        assertNull(send(new MachinePacket(1, 100, null, false), 0).label);
+        assertEquals("busy", send(new MachinePacket(1, 100, "busy", false), 0b0100).label);
+    }
+
+    @Test
+    void keysHaveSeparateSnapshots() {
+        send(new MachinePacket(1, 100, "a", false), ALL);
+        send(new MachinePacket(2, 200, "b", true), ALL);
+        send(new MachinePacket(1, 101, "a", false), 0b0010);
+        send(new MachinePacket(2, 200, "b", true), 0);
+    }
+
+    @Test
+    void deltaWithoutSnapshotIsRejected() {
+        encode(new MachinePacket(1, 100, "idle", false));
+        FriendlyByteBuf delta = encode(new MachinePacket(1, 100, "idle", true));
+        assertEquals(0b1000, maskOf(delta));
+        assertThrows(IllegalStateException.class, () -> decode(delta));
+    }
+
+    @Test
+    void invalidMasksAreRejected() {
+        for (long mask : new long[]{0b0001, 1L << 4, -1L}) {
+            FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+            buf.writeVarLong(0);
+            buf.writeByteArray(new byte[]{0, 0, 0, 1});
+            buf.writeVarLong(mask);
+            assertThrows(IllegalStateException.class, () -> decode(buf), "mask " + Long.toBinaryString(mask));
+        }
+    }
+
+    @Test
+    void evictedKeysAreSentInFull() {
+        for (int id = 0; id < 5; id++) {
+            send(new MachinePacket(id, id, "m", false), ALL);
+        }
+        // 上限为 4，两端都淘汰了最久没有用到的键 0。
+        send(new MachinePacket(0, 0, "m", false), ALL);
+        // 重新发送键 0 又淘汰了键 1，其余的键仍然只发送变化。
+        send(new MachinePacket(1, 1, "m", false), ALL);
+        send(new MachinePacket(4, 4, "m", true), 0b1000);
+    }
+
+    @Test
+    void discardedSnapshotsAreSentInFull() {
+        send(new MachinePacket(1, 100, "idle", false), ALL);
+        DeltaSyncState.discard(target, MachinePacket.class);
+        send(new MachinePacket(1, 100, "idle", false), ALL);
+        send(new MachinePacket(1, 100, "idle", false), 0);
+    }
+}
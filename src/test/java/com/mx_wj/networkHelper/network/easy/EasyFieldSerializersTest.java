@@ -0,0 +1,177 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link EasyFieldSerializers} 中紧凑编码（量化、ZigZag、无符号整数）的往返测试。
+ */
+class EasyFieldSerializersTest {
+
+    private final FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+
+    private double quantizedRoundTrip(double value, int bits, double min, double max) {
+        buf.clear();
+        EasyFieldSerializers.writeQuantizedDouble(buf, value, bits, min, max);
+        assertEquals((bits + 7) >> 3, buf.readableBytes(), "bytes for " + bits + " bits");
+        return EasyFieldSerializers.readQuantizedDouble(buf, bits, min, max);
+    }
+
+    private float quantizedRoundTrip(float value, int bits, double min, double max) {
+        buf.clear();
+        EasyFieldSerializers.writeQuantizedFloat(buf, value, bits, min, max);
+        assertEquals((bits + 7) >> 3, buf.readableBytes(), "bytes for " + bits + " bits");
+        return EasyFieldSerializers.readQuantizedFloat(buf, bits, min, max);
+    }
+
+    @Test
+    void quantizedValuesAreWithinHalfAStep() {
+        for (int bits : new int[]{1, 7, 8, 12, 16, 24, 31, 32}) {
+            double step = 200.0 / ((1L << bits) - 1);
+            for (double value = -100; value <= 100; value += 3.7) {
+                assertEquals(value, quantizedRoundTrip(value, bits, -100, 100), step / 2 + 1e-9);
+            }
+        }
+        assertEquals(0.5f, quantizedRoundTrip(0.5f, 8, 0, 1), 0.5 / 255 + 1e-6);
+    }
+
+    @Test
+    void quantizedBoundsAreExact() {
+        for (int bits : new int[]{1, 8, 24, 32}) {
+            assertEquals(-3.25, quantizedRoundTrip(-3.25, bits, -3.25, 7.5));
+            assertEquals(7.5, quantizedRoundTrip(7.5, bits, -3.25, 7.5));
+        }
+    }
+
+    @Test
+    void quantizedValuesAreClamped() {
+        assertEquals(0.0, quantizedRoundTrip(-0.5, 8, 0, 1));
+        assertEquals(1.0, quantizedRoundTrip(1.5, 8, 0, 1));
+        assertEquals(0.0, quantizedRoundTrip(Double.NEGATIVE_INFINITY, 8, 0, 1));
+        assertEquals(1.0, quantizedRoundTrip(Double.POSITIVE_INFINITY, 8, 0, 1));
+        assertEquals(1.0f, quantizedRoundTrip(Float.MAX_VALUE, 32, 0, 1));
+    }
+
+    @Test
+    void nanIsSentAsMin() {
+        assertEquals(-1.0, quantizedRoundTrip(Double.NaN, 16, -1, 1));
+        assertEquals(-1.0f, quantizedRoundTrip(Float.NaN, 32, -1, 1));
+    }
+
+    @Test
+    void thirtyTwoBitsUseTheWholeUnsignedRange() {
+        buf.clear();
+        EasyFieldSerializers.writeQuantizedDouble(buf, 1, 32, 0, 1);
+        assertEquals(0xFFFFFFFFL, buf.getUnsignedInt(0));
+        assertEquals(1.0, EasyFieldSerializers.readQuantizedDouble(buf, 32, 0, 1));
+    }
+
+    @Test
+    void outOfRangeStepsAreReadAsMax() {
+        // 12 位占 2 个字节，对方发来的多余高位不应让结果超出 max。
+        buf.clear();
+        buf.writeShort(0xFFFF);
+        assertEquals(1.0, EasyFieldSerializers.readQuantizedDouble(buf, 12, 0, 1));
+    }
+
+    private int zigZagRoundTrip(int value) {
+        buf.clear();
+        EasyFieldSerializers.writeZigZagInt(buf, value);
+        int decoded = EasyFieldSerializers.readZigZagInt(buf);
+        assertEquals(0, buf.readableBytes(), "trailing bytes after " + value);
+        return decoded;
+    }
+
+    private long zigZagRoundTrip(long value) {
+        buf.clear();
+        EasyFieldSerializers.writeZigZagLong(buf, value);
+        long decoded = EasyFieldSerializers.readZigZagLong(buf);
+        assertEquals(0, buf.readableBytes(), "trailing bytes after " + value);
+        return decoded;
+    }
+
+    @Test
+    void zigZagRoundTripsExtremes() {
+        for (int value : new int[]{0, 1, -1, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1}) {
+            assertEquals(value, zigZagRoundTrip(value));
+        }
+        for (long value : new long[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1}) {
+            assertEquals(value, zigZagRoundTrip(value));
+        }
+    }
+
+    @Test
+    void zigZagKeepsSmallNegativesShort() {
+        zigZagRoundTrip(-64);
+        assertEquals(1, buf.writerIndex());
+        zigZagRoundTrip(-65);
+        assertEquals(2, buf.writerIndex());
+        zigZagRoundTrip(Integer.MIN_VALUE);
+        assertEquals(5, buf.writerIndex());
+        zigZagRoundTrip(Long.MIN_VALUE);
+        assertEquals(10, buf.writerIndex());
+    }
+
+    private int unsignedRoundTrip(int value, int bits) {
+        buf.clear();
+        EasyFieldSerializers.writeUnsignedInt(buf, value, bits);
+        assertEquals(bits / 8, buf.readableBytes(), "bytes for " + bits + " bits");
+        return EasyFieldSerializers.readUnsignedInt(buf, bits);
+    }
+
+    @Test
+    void unsignedRoundTripsFullRange() {
+        for (int bits : new int[]{8, 16, 24}) {
+            int max = (1 << bits) - 1;
+            for (int value : new int[]{0, 1, max >> 1, (max >> 1) + 1, max}) {
+                assertEquals(value, unsignedRoundTrip(value, bits));
+            }
+        }
+    }
+
+    @Test
+    void unsignedRejectsValuesOutOfRange() {
+        for (int bits : new int[]{8, 16, 24}) {
+            assertThrows(IllegalArgumentException.class, () -> unsignedRoundTrip(-1, bits));
+            assertThrows(IllegalArgumentException.class, () -> unsignedRoundTrip(1 << bits, bits));
+        }
+        assertThrows(IllegalArgumentException.class, () -> unsignedRoundTrip(Integer.MIN_VALUE, 24));
+        assertThrows(IllegalArgumentException.class, () -> unsignedRoundTrip(Integer.MAX_VALUE, 24));
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Annotated {
+        @Unsigned(bits = 24) int medium;
+        @Unsigned(bits = 12) int odd;
+        @Quantized(bits = 32, min = 0, max = 1) double full;
+        @Quantized(bits = 33, min = 0, max = 1) double tooWide;
+        @Quantized(bits = 8, min = 1, max = 1) float empty;
+        @ZigZag long delta;
+        @ZigZag float notInteger;
+    }
+
+    private static Field field(String name) {
+        try {
+            return Annotated.class.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void annotationParametersAreValidated() {
+        assertNotNull(EasyFieldSerializers.encodingOf(field("medium")).writer());
+        assertNotNull(EasyFieldSerializers.encodingOf(field("full")).writer());
+        assertNotNull(EasyFieldSerializers.encodingOf(field("delta")).writer());
+        for (String name : new String[]{"odd", "tooWide", "empty", "notInteger"}) {
+            assertThrows(IllegalArgumentException.class, () -> EasyFieldSerializers.encodingOf(field(name)), name);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mx_wj.networkHelper.network.easy;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link StringDictionary} 发送方与接收方的往返测试，不需要连接。
+ */
+class StringDictionaryTest {
+
+    private static final int CAPACITY = 16;
+
+    private final StringDictionary.Encoder encoder = new StringDictionary.Encoder(null, "test", CAPACITY);
+    private final StringDictionary.Decoder decoder = new StringDictionary.Decoder();
+    private final FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+
+    private String roundTrip(String value) {
+        buf.clear();
+        encoder.write(buf, value);
+        String decoded = decoder.read(buf, buf.readVarInt()).value;
+        assertEquals(0, buf.readableBytes(), "trailing bytes after " + value);
+        return decoded;
+    }
+
+    @Test
+    void repeatedStringIsSentAsReference() {
+        assertEquals("minecraft:stone", roundTrip("minecraft:stone"));
+        int definitionBytes = buf.writerIndex();
+        assertEquals("minecraft:stone", roundTrip("minecraft:stone"));
+        assertEquals(1, buf.writerIndex());
+        assertTrue(definitionBytes > buf.writerIndex());
+    }
+
+    @Test
+    void bothSidesAgreePastCapacity() {
+        // 取值范围大于容量，反复触发淘汰和序号的重新定义。
+        Random random = new Random(42);
+        Set<Integer> indices = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            String value = "mod:item_" + random.nextInt(CAPACITY * 3);
+            assertEquals(value, roundTrip(value));
+            int tag = buf.getByte(0);
+            if (tag == 1) {
+                indices.add((int) buf.getByte(1));
+            }
+        }
+        // 发送方只会使用 [0, capacity) 内的序号，而且每个序号都被用到过。
+        assertEquals(CAPACITY, indices.size());
+        for (int index : indices) {
+            assertTrue(index >= 0 && index < CAPACITY);
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedStringIsEvicted() {
+        for (int i = 0; i < CAPACITY; i++) {
+            roundTrip("mod:item_" + i);
+        }
+        // 访问第 0 项，使第 1 项成为最久没有用到的。
+        roundTrip("mod:item_0");
+        roundTrip("mod:new");
+        assertEquals(1, buf.getByte(0));
+        assertEquals(1, buf.getByte(1));
+
+        assertEquals("mod:item_0", roundTrip("mod:item_0"));
+        assertEquals(1, buf.writerIndex());
+        assertEquals("mod:item_1", roundTrip("mod:item_1"));
+        assertTrue(buf.writerIndex() > 1);
+    }
+
+    @Test
+    void literalsNeedNoScope() {
+        buf.clear();
+        StringDictionary.writeString(buf, "minecraft:dirt");
+        assertEquals("minecraft:dirt", StringDictionary.readString(buf));
+        StringDictionary.writeResourceLocation(buf, new ResourceLocation("minecraft", "dirt"));
+        assertEquals(new ResourceLocation("minecraft", "dirt"), StringDictionary.readResourceLocation(buf));
+    }
+
+    @Test
+    void referenceOutsideScopeIsRejected() {
+        buf.clear();
+        encoder.write(buf, "mod:item");
+        encoder.write(buf, "mod:item");
+        assertThrows(IllegalStateException.class, () -> StringDictionary.readString(buf));
+    }
+
+    @Test
+    void undefinedReferenceIsRejected() {
+        buf.clear();
+        buf.writeVarInt(2 + 5);
+        assertThrows(IllegalStateException.class, () -> decoder.read(buf, buf.readVarInt()));
+    }
+}